@@ -0,0 +1,133 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.DanmuClient;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.codec.PacketDecoder;
+import com.rain.danmu.model.Packet;
+import com.rain.danmu.replay.ReplayServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 数据包解码与分发热路径基准测试
+ * 使用fixtures目录下的WebSocket二进制消息：
+ * 1. single：单个DANMU_MSG数据包
+ * 2. batched：人气值回复加8个未压缩的命令包（弹幕、礼物、进场、在线人数等）
+ * 3. zlib：版本2压缩包，内含24个命令包
+ * 4. brotli：将zlib中的命令包改用版本3（未压缩元块的brotli流）包装，衡量每个数据包新建brotli解码器的开销
+ * 建议加上-prof gc查看每次操作的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"single", "batched", "zlib", "brotli"})
+    public String fixture;
+
+    // 录制的WebSocket消息
+    private ByteBuffer frame;
+
+    // 复用的解码器
+    private final PacketDecoder decoder = new PacketDecoder();
+
+    // 只订阅弹幕的客户端，不建立连接
+    private DanmuClient client;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        byte[] bytes = fixture.equals("brotli") ? brotli(load("zlib")) : load(fixture);
+        frame = ByteBuffer.wrap(bytes);
+        client = new DanmuClient(new HandlerRegistry().on(Command.DANMU_MSG, blackhole::consume));
+    }
+
+    /**
+     * 解包为独立的Packet列表
+     */
+    @Benchmark
+    public ArrayList<Packet> unPack() {
+        return Packet.unPack(frame.duplicate());
+    }
+
+    /**
+     * 使用复用的解码器遍历数据包视图，不复制数据体
+     */
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        decoder.decode(frame.duplicate(), packet -> blackhole.consume(packet.length()));
+    }
+
+    /**
+     * 完整接收流程：解码、提取命令字、解析弹幕JSON并回调
+     */
+    @Benchmark
+    public void onPacket() {
+        client.receive(frame.duplicate());
+    }
+
+    /**
+     * 解压版本2数据包，再以版本3重新包装
+     */
+    private static byte[] brotli(byte[] zlib) {
+        ByteBuffer packet = ByteBuffer.wrap(zlib);
+        int headerLength = packet.getShort(4);
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib, headerLength, packet.getInt(0) - headerLength);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                raw.write(chunk, 0, inflater.inflate(chunk));
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+        byte[] body = ReplayServer.brotliStored(raw.toByteArray());
+        return ByteBuffer.allocate(Packet.HEADER_LENGTH + body.length)
+                .putInt(Packet.HEADER_LENGTH + body.length)
+                .putShort(Packet.HEADER_LENGTH)
+                .putShort((short) 3)
+                .putInt(packet.getInt(8))
+                .putInt(packet.getInt(12))
+                .put(body)
+                .array();
+    }
+
+    /**
+     * 读取fixtures目录下的消息
+     */
+    static byte[] load(String name) {
+        try (InputStream in = DecodeBenchmark.class.getResourceAsStream("/fixtures/" + name + ".bin")) {
+            return Objects.requireNonNull(in, name).readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
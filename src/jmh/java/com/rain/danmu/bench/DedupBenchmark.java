@@ -0,0 +1,109 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.DanmuClient;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.filter.DedupFilter;
+import com.rain.danmu.filter.RotatingBloomFilter;
+import com.rain.danmu.util.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 弹幕去重基准测试
+ * 1. unfiltered：不去重，解析弹幕并回调
+ * 2. duplicate：同一条DANMU_MSG反复接收，第一次之后都按id_str判定为重复并丢弃
+ * 3. fresh：向轮转Bloom过滤器插入从未出现过的键，每代满capacity个键后轮转
+ * main方法测量不同填充程度下的实际误判率，与估算值和目标值对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DedupBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int capacity;
+
+    // 录制的WebSocket消息
+    private ByteBuffer frame;
+
+    // 不去重的客户端
+    private DanmuClient unfiltered;
+
+    // 安装去重过滤器的客户端
+    private DanmuClient deduplicated;
+
+    // 单独测试插入的过滤器
+    private RotatingBloomFilter bloom;
+
+    // 下一个插入的键
+    private long next;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        frame = ByteBuffer.wrap(DecodeBenchmark.load("single"));
+        unfiltered = new DanmuClient(new HandlerRegistry().on(Command.DANMU_MSG, blackhole::consume));
+        DedupFilter filter = DedupFilter.of(capacity, 60_000);
+        deduplicated = new DanmuClient(filter.installOn(new HandlerRegistry().on(Command.DANMU_MSG, blackhole::consume)));
+        bloom = new RotatingBloomFilter(capacity, Long.MAX_VALUE, 1e-4);
+    }
+
+    @Benchmark
+    public void unfiltered() {
+        unfiltered.receive(frame.duplicate());
+    }
+
+    @Benchmark
+    public void duplicate() {
+        deduplicated.receive(frame.duplicate());
+    }
+
+    @Benchmark
+    public boolean fresh() {
+        return bloom.add(HashUtil.mix(next++));
+    }
+
+    /**
+     * 测量实际误判率：先插入一定比例的键，再查询从未插入过的键
+     */
+    public static void main(String[] args) {
+        int probes = 10_000_000;
+        System.out.printf("%10s %8s %6s %12s %12s %12s %10s%n", "capacity", "fpp", "fill", "measured", "estimated", "target", "memory");
+        for (int capacity : new int[]{100_000, 1_000_000}) {
+            for (double fpp : new double[]{1e-3, 1e-4}) {
+                for (double fill : new double[]{0.5, 1.0, 2.0}) {
+                    // 插入超过capacity后轮转，2.0时两代均已写满
+                    RotatingBloomFilter bloom = new RotatingBloomFilter(capacity, Long.MAX_VALUE, fpp);
+                    long inserted = (long) (capacity * fill);
+                    for (long i = 0; i < inserted; i++) {
+                        bloom.add(HashUtil.mix(i));
+                    }
+                    long falsePositives = 0;
+                    for (long i = 0; i < probes; i++) {
+                        if (bloom.contains(HashUtil.mix(-1 - i))) {
+                            falsePositives++;
+                        }
+                    }
+                    System.out.printf("%10d %8.0e %6.1f %12.3e %12.3e %12.0e %9dK%n", capacity, fpp, fill,
+                            (double) falsePositives / probes, bloom.falsePositiveRate(), fpp, bloom.memoryBytes() / 1024);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.codec.EventCodec;
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.model.User;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件二进制编解码与JSON序列化对比基准测试
+ * 使用-prof gc查看每次操作的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCodecBenchmark {
+
+    // 编解码器
+    private final EventCodec codec = new EventCodec();
+
+    // 待编码的弹幕
+    private final Danmu danmu = new Danmu();
+
+    // 解码复用的弹幕
+    private final Danmu reuse = new Danmu();
+
+    // 编码输出缓冲区
+    private final ByteBuffer out = ByteBuffer.allocate(1024);
+
+    // 已编码的记录
+    private ByteBuffer encoded;
+
+    // 已序列化的JSON
+    private String json;
+
+    @Setup
+    public void setup() {
+        danmu.roomId = 21452505;
+        danmu.user = new User(123456789, "某个用户的昵称");
+        danmu.body = "主播今天的状态真不错，加油！";
+        danmu.timestamp = 1700000000000L;
+        encoded = ByteBuffer.allocate(1024);
+        codec.encode(danmu, encoded);
+        encoded.flip();
+        json = jsonEncode();
+    }
+
+    /**
+     * 二进制编码
+     */
+    @Benchmark
+    public int encode() {
+        out.clear();
+        return codec.encode(danmu, out);
+    }
+
+    /**
+     * 二进制解码到复用对象
+     */
+    @Benchmark
+    public Danmu decode() {
+        return codec.decode(encoded, 0, encoded.limit(), reuse);
+    }
+
+    /**
+     * JSON序列化
+     */
+    @Benchmark
+    public String jsonEncode() {
+        return new JSONObject()
+                .put("roomId", danmu.roomId)
+                .put("uid", danmu.user.uid)
+                .put("name", danmu.user.name)
+                .put("body", danmu.body)
+                .put("timestamp", danmu.timestamp)
+                .toString();
+    }
+
+    /**
+     * JSON反序列化
+     */
+    @Benchmark
+    public Danmu jsonDecode() {
+        JSONObject object = new JSONObject(json);
+        Danmu result = new Danmu();
+        result.roomId = object.getLong("roomId");
+        result.user = new User(object.getLong("uid"), object.getString("name"));
+        result.body = object.getString("body");
+        result.timestamp = object.getLong("timestamp");
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.DanmuClient;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.filter.AhoCorasick;
+import com.rain.danmu.filter.DanmuFilter;
+import com.rain.danmu.filter.FloodDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 弹幕过滤基准测试
+ * 使用fixtures/single.bin中的DANMU_MSG，关键词为随机生成的2~6个汉字，弹幕不命中任何关键词：
+ * 1. unfiltered：不过滤，解析弹幕并回调
+ * 2. filtered：在字节上做关键词和刷屏过滤后再解析回调
+ * 3. regex：解析弹幕后在回调中用正则表达式匹配关键词
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    // 生成关键词用的常用汉字
+    private static final String CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经";
+
+    @Param({"1000", "10000"})
+    public int keywords;
+
+    // 录制的WebSocket消息
+    private ByteBuffer frame;
+
+    // 不过滤的客户端
+    private DanmuClient unfiltered;
+
+    // 安装过滤器的客户端
+    private DanmuClient filtered;
+
+    // 在回调中用正则过滤的客户端
+    private DanmuClient regex;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        frame = ByteBuffer.wrap(DecodeBenchmark.load("single"));
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>(keywords);
+        for (int i = 0; i < keywords; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 2 + random.nextInt(5); j > 0; j--) {
+                word.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            words.add(word.toString());
+        }
+        unfiltered = new DanmuClient(new HandlerRegistry().on(Command.DANMU_MSG, blackhole::consume));
+        // 刷屏检测的窗口足够短，同一条弹幕重复接收不会被判定为刷屏
+        DanmuFilter filter = new DanmuFilter(AhoCorasick.compile(words, true), new FloodDetector(1 << 16, 1, Integer.MAX_VALUE));
+        filtered = new DanmuClient(filter.installOn(new HandlerRegistry().on(Command.DANMU_MSG, blackhole::consume)));
+        Pattern pattern = Pattern.compile(words.stream().map(Pattern::quote).collect(Collectors.joining("|")));
+        regex = new DanmuClient(new HandlerRegistry().on(Command.DANMU_MSG, danmu -> {
+            if (!pattern.matcher(danmu.body).find()) {
+                blackhole.consume(danmu);
+            }
+        }));
+    }
+
+    @Benchmark
+    public void unfiltered() {
+        unfiltered.receive(frame.duplicate());
+    }
+
+    @Benchmark
+    public void filtered() {
+        filtered.receive(frame.duplicate());
+    }
+
+    @Benchmark
+    public void regex() {
+        regex.receive(frame.duplicate());
+    }
+}
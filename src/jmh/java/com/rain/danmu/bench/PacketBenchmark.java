@@ -0,0 +1,109 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.codec.PacketEncoder;
+import com.rain.danmu.enums.Operation;
+import com.rain.danmu.model.Auth;
+import com.rain.danmu.model.Packet;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据包打包与解压基准测试
+ * 解压使用fixtures/zlib.bin的数据体
+ * 使用-prof gc对比Packet.pack与PacketEncoder每次操作的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBenchmark {
+
+    // 认证包数据体，长度与真实认证包相近
+    private byte[] authBody;
+
+    // 认证信息
+    private Auth auth;
+
+    // zlib压缩的数据体
+    private byte[] compressedBody;
+
+    @Setup
+    public void setup() {
+        authBody = ("{\"uid\":12345678,\"roomid\":400730,\"protover\":3,\"buvid\":\"0A1B2C3D-4E5F-6789-ABCD-EF0123456789infoc\","
+                + "\"platform\":\"web\",\"type\":2,\"key\":\"" + "k".repeat(180) + "\"}").getBytes(StandardCharsets.UTF_8);
+        auth = new Auth(400730, 12345678, "0A1B2C3D-4E5F-6789-ABCD-EF0123456789infoc", "k".repeat(180));
+        byte[] frame = DecodeBenchmark.load("zlib");
+        compressedBody = new byte[frame.length - Packet.HEADER_LENGTH];
+        System.arraycopy(frame, Packet.HEADER_LENGTH, compressedBody, 0, compressedBody.length);
+    }
+
+    /**
+     * 打包心跳包
+     */
+    @Benchmark
+    public ByteBuffer packHeartbeat() {
+        return new Packet(Operation.HEARTBEAT, new byte[0]).pack();
+    }
+
+    /**
+     * 打包认证包
+     */
+    @Benchmark
+    public ByteBuffer packAuth() {
+        return new Packet(Operation.AUTH, authBody).pack();
+    }
+
+    /**
+     * 预编码的心跳包视图
+     */
+    @Benchmark
+    public ByteBuffer encodeHeartbeat() {
+        return PacketEncoder.heartbeat();
+    }
+
+    /**
+     * 原有方式编码认证包：JSONObject序列化、转字节数组、打包
+     */
+    @Benchmark
+    public ByteBuffer packAuthJson() {
+        JSONObject json = new JSONObject();
+        json.put("uid", auth.uid);
+        json.put("roomid", auth.roomid);
+        json.put("buvid", auth.buvid);
+        json.put("key", auth.key);
+        json.put("protover", auth.protover);
+        return new Packet(Operation.AUTH, json.toString().getBytes(StandardCharsets.UTF_8)).pack();
+    }
+
+    /**
+     * 直接写入线程复用的直接缓冲区
+     */
+    @Benchmark
+    public ByteBuffer encodeAuth() {
+        return PacketEncoder.local().encodeAuth(auth);
+    }
+
+    /**
+     * 解压zlib数据体
+     */
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        return Packet.decompress(compressedBody);
+    }
+}
@@ -0,0 +1,111 @@
+package com.rain.danmu.bench;
+
+import com.rain.danmu.util.HttpUtil;
+import com.rain.danmu.util.WbiSignUtil;
+import com.rain.danmu.util.WbiSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WBI签名基准测试
+ * 对比原有的Map+TreeMap实现与可复用签名器，参数与getDanmuInfo请求一致
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WbiSignBenchmark {
+
+    // 与原实现相同的混淆表
+    private static final int[] MIXIN_KEY_ENC_TAB = {46, 47, 18, 2, 53, 8, 23, 32, 15, 50, 10, 31, 58, 3, 45, 35, 27, 43, 5, 49, 33, 9, 42, 19, 29, 28, 14, 39, 12, 38, 41, 13, 37, 48, 7, 16, 24, 55, 40, 61, 26, 17, 0, 1, 60, 51, 30, 4, 22, 25, 54, 21, 56, 59, 6, 63, 57, 62, 11, 36, 20, 34, 44, 52};
+
+    private static final String IMG_KEY = "7cd084941338484aae1ad9425b84077c";
+    private static final String SUB_KEY = "4932caff0ff746eab6f01bf08b70ac45";
+    private static final long ROOM_ID = 400730;
+
+    private final WbiSigner signer = new WbiSigner(IMG_KEY, SUB_KEY);
+    private final WbiSigner.Params reused = WbiSigner.params();
+
+    /**
+     * 原实现：每次计算Mixin Key、TreeMap排序、String.format十六进制
+     */
+    @Benchmark
+    public String legacy() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", ROOM_ID);
+        params.put("type", "0");
+        return legacyEncWbi(params, IMG_KEY, SUB_KEY);
+    }
+
+    /**
+     * 当前的WbiSignUtil.encWbi，每次创建签名器
+     */
+    @Benchmark
+    public String encWbi() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", ROOM_ID);
+        params.put("type", "0");
+        return WbiSignUtil.encWbi(params, IMG_KEY, SUB_KEY);
+    }
+
+    /**
+     * 签名器，每次新建参数表
+     */
+    @Benchmark
+    public String signer() {
+        return signer.sign(WbiSigner.params().put("id", ROOM_ID).put("type", 0));
+    }
+
+    /**
+     * 签名器，复用参数表
+     */
+    @Benchmark
+    public String signerReusedParams() {
+        return signer.sign(reused.clear().put("id", ROOM_ID).put("type", 0));
+    }
+
+    /**
+     * 原实现的副本，作为对照
+     */
+    private static String legacyEncWbi(Map<String, Object> p, String imgKey, String subKey) {
+        StringBuilder mixin = new StringBuilder();
+        String orig = imgKey + subKey;
+        for (int index : MIXIN_KEY_ENC_TAB) {
+            if (index < orig.length()) {
+                mixin.append(orig.charAt(index));
+            }
+        }
+        String mixinKey = mixin.substring(0, 32);
+        p.put("wts", System.currentTimeMillis() / 1000);
+        Map<String, String> encodedParams = new TreeMap<>();
+        p.forEach((k, v) -> encodedParams.put(HttpUtil.encodeParam(k), HttpUtil.encodeParam(v.toString())));
+        String q = HttpUtil.toQueryStr(encodedParams);
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest((q + mixinKey).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return q + "&w_rid=" + sb;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.rain.danmu.replay;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.DanmuClientPool;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.client.HeartbeatScheduler;
+import com.rain.danmu.client.JavaWebSocketTransport;
+import com.rain.danmu.client.NioTransport;
+import com.rain.danmu.model.Auth;
+import com.rain.danmu.model.Danmu;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 端到端压测工具
+ * 在本进程内启动{@link ReplayServer}，通过{@link DanmuClientPool}连接N个房间，统计：
+ * 1. 客户端回调的总吞吐（条/秒）
+ * 2. 从服务器发出到回调执行的延迟p50/p99/max
+ * 3. 读线程的CPU占用和分配速率（NIO传输层多个房间共用线程，按线程汇总后平摊到房间），以及每个房间常驻的堆内存
+ * 参数：--rooms 房间数 --rate 每房间每秒消息数 --batch 单条消息最多合并数 --protover 0/2/3
+ * --seconds 测量时长 --warmup 预热时长 --fixture 录制消息文件（回放录制消息时不统计延迟）
+ * --transport nio/java-websocket 传输层 --selectors NIO选择器线程数
+ */
+public class LoadGenerator {
+
+    // 起始房间号
+    private static final long BASE_ROOM_ID = 1_000_000;
+
+    // 每个房间保留的最近延迟样本数
+    private static final int SAMPLES = 1 << 14;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int rooms = Integer.parseInt(options.getOrDefault("rooms", "50"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "32"));
+        int protover = Integer.parseInt(options.getOrDefault("protover", "2"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        String transport = options.getOrDefault("transport", "nio");
+        int selectors = Integer.parseInt(options.getOrDefault("selectors", "1"));
+        List<byte[]> recorded = options.containsKey("fixture") ? List.of(Files.readAllBytes(Path.of(options.get("fixture")))) : null;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        ReplayServer server = new ReplayServer(new InetSocketAddress("127.0.0.1", 0), rate, batch, recorded);
+        int port = server.startAndWait();
+        List<String> hosts = List.of("ws://127.0.0.1:" + port + "/sub");
+
+        RoomStats[] stats = new RoomStats[rooms];
+        for (int i = 0; i < rooms; i++) {
+            stats[i] = new RoomStats();
+        }
+        HandlerRegistry registry = new HandlerRegistry()
+                .on(Command.DANMU_MSG, danmu -> stats[(int) (danmu.roomId - BASE_ROOM_ID)].record(danmu, recorded == null));
+        NioTransport nio = transport.equals("nio") ? new NioTransport(selectors) : null;
+        ExecutorService ioExecutor = Executors.newCachedThreadPool();
+        try (DanmuClientPool pool = new DanmuClientPool(registry, HeartbeatScheduler.shared(), ioExecutor)) {
+            // Java-WebSocket传输层的读循环运行在连接池的执行器上
+            pool.transport(nio != null ? nio : new JavaWebSocketTransport(ioExecutor));
+            for (int i = 0; i < rooms; i++) {
+                pool.addRoom(new Auth(BASE_ROOM_ID + i, 0, "replay", "replay", protover, hosts));
+            }
+            System.out.printf("房间=%d 速率=%d/s/房间 合并=%d protover=%d 传输层=%s 服务器=%s%n",
+                    rooms, rate, batch, protover, transport, hosts.get(0));
+            Thread.sleep(warmup * 1000L);
+
+            long[] countStart = new long[rooms];
+            Set<Long> threads = new LinkedHashSet<>();
+            for (int i = 0; i < rooms; i++) {
+                countStart[i] = stats[i].count;
+                threads.add(stats[i].threadId);
+                stats[i].resetSamples();
+            }
+            threads.remove(-1L);
+            Map<Long, long[]> threadStart = new HashMap<>();
+            for (long id : threads) {
+                threadStart.put(id, new long[]{cpuTime(id), allocatedBytes(id)});
+            }
+            long begin = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            double elapsed = (System.nanoTime() - begin) / 1e9;
+
+            long received = 0;
+            double cpuTotal = 0, cpuMax = 0, allocTotal = 0, allocMax = 0;
+            List<Long> latencies = new ArrayList<>();
+            for (int i = 0; i < rooms; i++) {
+                received += stats[i].count - countStart[i];
+                stats[i].drainSamples(latencies);
+            }
+            for (Map.Entry<Long, long[]> entry : threadStart.entrySet()) {
+                double cpu = (cpuTime(entry.getKey()) - entry.getValue()[0]) / 1e9 / elapsed;
+                double alloc = (allocatedBytes(entry.getKey()) - entry.getValue()[1]) / elapsed / (1 << 20);
+                cpuTotal += cpu;
+                cpuMax = Math.max(cpuMax, cpu);
+                allocTotal += alloc;
+                allocMax = Math.max(allocMax, alloc);
+            }
+            System.gc();
+            long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+            System.out.printf("吞吐: %.0f 条/秒（期望 %d，服务器已发送 %d）%n", received / elapsed, (long) rooms * rate, server.sent());
+            if (!latencies.isEmpty()) {
+                long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+                Arrays.sort(sorted);
+                System.out.printf("回调延迟: p50=%.3fms p99=%.3fms max=%.3fms（样本 %d）%n",
+                        percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6, sorted.length);
+            }
+            System.out.printf("读线程: %d 个，单线程CPU最高 %.2f%%，分配速率最高 %.2f MB/s%n", threads.size(), cpuMax * 100, allocMax);
+            System.out.printf("每房间平摊: CPU %.2f%% 分配速率 %.2f MB/s%n", cpuTotal / rooms * 100, allocTotal / rooms);
+            System.out.printf("每房间常驻堆: %.1f KB%n", (heapAfter - heapBefore) / 1024.0 / rooms);
+        } finally {
+            if (nio != null) {
+                nio.close();
+            }
+            server.shutdown();
+        }
+    }
+
+    /**
+     * 线程CPU时间（纳秒）
+     */
+    private static long cpuTime(long threadId) {
+        return ManagementFactory.getThreadMXBean().getThreadCpuTime(threadId);
+    }
+
+    /**
+     * 线程累计分配字节数
+     */
+    private static long allocatedBytes(long threadId) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)) {
+            return 0;
+        }
+        return bean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * 取百分位数
+     */
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    /**
+     * 解析--key value形式的参数
+     */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * 单个房间的统计，只由该房间的读线程写入
+     */
+    private static final class RoomStats {
+
+        // 收到的弹幕数
+        volatile long count;
+
+        // 读线程ID
+        volatile long threadId = -1;
+
+        // 最近的延迟样本（纳秒）
+        final long[] samples = new long[SAMPLES];
+
+        // 样本写入位置
+        volatile int sampleIndex;
+
+        void record(Danmu danmu, boolean synthetic) {
+            if (threadId < 0) {
+                threadId = Thread.currentThread().getId();
+            }
+            if (synthetic) {
+                // 合成弹幕的timestamp为服务器发送时刻的System.nanoTime()
+                int index = sampleIndex;
+                samples[index & (SAMPLES - 1)] = System.nanoTime() - danmu.timestamp;
+                sampleIndex = index + 1;
+            }
+            count = count + 1;
+        }
+
+        void resetSamples() {
+            sampleIndex = 0;
+        }
+
+        void drainSamples(List<Long> out) {
+            int n = Math.min(sampleIndex, SAMPLES);
+            for (int i = 0; i < n; i++) {
+                out.add(samples[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.rain.danmu.replay;
+
+import com.rain.danmu.codec.PacketDecoder;
+import com.rain.danmu.codec.PacketView;
+import com.rain.danmu.enums.Operation;
+import com.rain.danmu.model.Packet;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * 本地回放弹幕服务器
+ * 模拟B站弹幕服务器的协议行为，用于端到端压测：
+ * 1. 收到AUTH后回复AUTH_REPLY，并按认证包中的protover（0/2/3）开始推送
+ * 2. 收到HEARTBEAT后回复HEARTBEAT_REPLY
+ * 3. 按固定速率推送SEND_SMS_REPLY，每个tick把到期的消息合并为一条WebSocket消息
+ * 合成消息为DANMU_MSG，info[0][4]写入发送时刻的System.nanoTime()，同进程内可据此计算回调延迟；
+ * 指定录制的消息时按原样循环回放，此时速率单位为WebSocket消息数
+ */
+public class ReplayServer extends WebSocketServer {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(ReplayServer.class);
+
+    // 推送间隔（毫秒）
+    private static final long TICK_MILLIS = 10;
+
+    // 每个房间每秒推送的消息数
+    private final int rate;
+
+    // 单条WebSocket消息最多合并的数据包数
+    private final int maxBatch;
+
+    // 录制的WebSocket消息，为空时推送合成弹幕
+    private final List<byte[]> recorded;
+
+    // 已认证的连接
+    private final Map<WebSocket, Room> rooms = new ConcurrentHashMap<>();
+
+    // 推送线程
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replay-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 服务器启动完成
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    // 已推送的消息数
+    private final LongAdder sent = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param address  监听地址，端口为0时自动分配
+     * @param rate     每个房间每秒推送的消息数
+     * @param maxBatch 单条WebSocket消息最多合并的数据包数
+     * @param recorded 录制的WebSocket消息，为空时推送合成弹幕
+     */
+    public ReplayServer(InetSocketAddress address, int rate, int maxBatch, List<byte[]> recorded) {
+        super(address);
+        if (rate <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.rate = rate;
+        this.maxBatch = maxBatch;
+        this.recorded = recorded == null || recorded.isEmpty() ? null : recorded;
+        setReuseAddr(true);
+        setDaemon(true);
+    }
+
+    /**
+     * 启动服务器并等待端口绑定完成
+     *
+     * @return 实际监听端口
+     */
+    public int startAndWait() throws InterruptedException {
+        start();
+        started.await();
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return getPort();
+    }
+
+    /**
+     * @return 已推送的消息数
+     */
+    public long sent() {
+        return sent.sum();
+    }
+
+    /**
+     * 停止推送并关闭服务器
+     */
+    public void shutdown() throws InterruptedException {
+        ticker.shutdownNow();
+        stop(1000);
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        conn.setAttachment(new PacketDecoder());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        rooms.remove(conn);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        // 协议只使用二进制消息
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        PacketDecoder decoder = conn.getAttachment();
+        synchronized (decoder) {
+            decoder.decode(message, packet -> onPacket(conn, packet));
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        LOGGER.warn("回放连接出错", ex);
+    }
+
+    /**
+     * 处理客户端数据包
+     */
+    private void onPacket(WebSocket conn, PacketView packet) {
+        int op = packet.operationCode();
+        if (op == Operation.AUTH.code) {
+            JSONObject auth = new JSONObject(packet.bodyAsString());
+            conn.send(new Packet(Operation.AUTH_REPLY, "{\"code\":0}".getBytes(StandardCharsets.UTF_8)).pack());
+            rooms.put(conn, new Room(auth.optLong("roomid"), auth.optInt("protover")));
+        } else if (op == Operation.HEARTBEAT.code) {
+            // 人气值
+            ByteBuffer popularity = ByteBuffer.allocate(4).putInt(0, rooms.size());
+            conn.send(new Packet(Operation.HEARTBEAT_REPLY, popularity.array()).pack());
+        }
+    }
+
+    /**
+     * 为每个房间推送到期的消息
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        rooms.forEach((conn, room) -> {
+            if (!conn.isOpen()) {
+                return;
+            }
+            long due = (now - room.startedAt) * rate / 1_000_000_000L - room.sent;
+            if (due <= 0) {
+                return;
+            }
+            int count = (int) Math.min(due, maxBatch);
+            try {
+                conn.send(recorded != null ? nextRecorded(room, count) : synthetic(room, count, now));
+                room.sent += count;
+                sent.add(count);
+            } catch (Exception e) {
+                LOGGER.debug("推送失败", e);
+            }
+        });
+    }
+
+    /**
+     * 按顺序取出录制的消息，多条消息直接拼接
+     */
+    private ByteBuffer nextRecorded(Room room, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            out.writeBytes(recorded.get((int) (room.sent + i) % recorded.size()));
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * 合成count条弹幕，按房间的协议版本打包
+     */
+    private static ByteBuffer synthetic(Room room, int count, long sentAt) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(count * 320);
+        for (int i = 0; i < count; i++) {
+            long seq = room.sent + i;
+            String body = "{\"cmd\":\"DANMU_MSG\",\"info\":[[0,1,25,16777215," + sentAt + "," + seq + ",0,\"replay\",0,0,0,\"\",0,\"{}\",\"{}\"],"
+                    + "\"回放弹幕" + seq + "\",[" + (10000000 + seq % 5000) + ",\"观众" + seq % 5000 + "\",0,0,0,10000,1,\"\"],"
+                    + "[21,\"粉丝牌\",\"主播\"," + room.roomId + ",6067854,\"\",0],[12,0,6406234,\">50000\",0],[\"\",\"\"],0,0,null,{\"ts\":0,\"ct\":\"0\"},0,0,null,null,0,105]}";
+            raw.writeBytes(new Packet(Operation.SEND_SMS_REPLY, body.getBytes(StandardCharsets.UTF_8)).pack().array());
+        }
+        byte[] packets = raw.toByteArray();
+        return switch (room.protover) {
+            case 2 -> wrap(2, zlib(packets));
+            case 3 -> wrap(3, brotliStored(packets));
+            default -> ByteBuffer.wrap(packets);
+        };
+    }
+
+    /**
+     * 将压缩后的数据体包装为指定协议版本的数据包
+     */
+    private static ByteBuffer wrap(int version, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(Packet.HEADER_LENGTH + body.length);
+        buffer.putInt(Packet.HEADER_LENGTH + body.length)
+                .putShort(Packet.HEADER_LENGTH)
+                .putShort((short) version)
+                .putInt(Operation.SEND_SMS_REPLY.code)
+                .putInt(Packet.SEQUENCE_ID)
+                .put(body)
+                .flip();
+        return buffer;
+    }
+
+    /**
+     * zlib压缩
+     */
+    private static byte[] zlib(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * 以未压缩元块生成合法的brotli流
+     * 类路径上只有brotli解码器，回放只需验证客户端的brotli解码路径，不追求压缩率：
+     * 1. 流头部WBITS取1个0比特（窗口16）
+     * 2. 每个元块：ISLAST=0、MNIBBLES=4、MLEN-1（16比特）、ISUNCOMPRESSED=1，补齐到字节后接原始数据
+     * 3. 结尾为ISLAST=1、ISLASTEMPTY=1
+     */
+    public static byte[] brotliStored(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + data.length / 65536 * 3 + 8);
+        boolean first = true;
+        for (int offset = 0; offset < data.length; offset += 65536) {
+            int length = Math.min(65536, data.length - offset);
+            // 流头部占用第0比特，元块头部随之后移
+            int shift = first ? 1 : 0;
+            long bits = ((long) (length - 1) << (3 + shift)) | (1L << (19 + shift));
+            out.write((int) bits);
+            out.write((int) (bits >>> 8));
+            out.write((int) (bits >>> 16));
+            out.write(data, offset, length);
+            first = false;
+        }
+        // 空数据时流头部与结尾元块共用一个字节
+        out.write(first ? 0b110 : 0b11);
+        return out.toByteArray();
+    }
+
+    /**
+     * 单独启动回放服务器
+     * 参数：端口 每房间每秒消息数 单条消息最多合并的数据包数
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2245;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxBatch = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        ReplayServer server = new ReplayServer(new InetSocketAddress(port), rate, maxBatch, null);
+        server.setDaemon(false);
+        System.out.println("回放服务器已启动: ws://127.0.0.1:" + server.startAndWait() + "/sub");
+    }
+
+    /**
+     * 已认证的房间连接
+     */
+    private static final class Room {
+
+        // 房间号
+        final long roomId;
+
+        // 协议版本
+        final int protover;
+
+        // 开始推送的时间（纳秒）
+        final long startedAt = System.nanoTime();
+
+        // 已推送的消息数，仅推送线程读写
+        long sent;
+
+        Room(long roomId, int protover) {
+            this.roomId = roomId;
+            this.protover = protover;
+        }
+    }
+}
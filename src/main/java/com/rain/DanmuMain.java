@@ -1,7 +1,9 @@
 package com.rain;
 
+import com.rain.danmu.client.AuthProvider;
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.HandlerRegistry;
 import com.rain.danmu.client.SimpleDanmuClient;
-import com.rain.danmu.model.Auth;
 import com.rain.danmu.model.Danmu;
 import org.slf4j.LoggerFactory;
 
@@ -18,12 +20,15 @@ public class DanmuMain {
     private static final int roomId = 400730;
 
     public static void main(String[] args) {
+        // 多个客户端共用认证信息提供者，同一房间只请求一次getDanmuInfo
+        AuthProvider authProvider = new AuthProvider(cookie);
+
         // 1.第一种实现
         SimpleDanmuClient.with(danmu -> {
             // 收到弹幕消息时的回调
             System.out.println("[" + danmu.user.name + "]: " + danmu.body);
-            // 使用房间号和Cookie连接到直播间
-        }).connect(roomId, cookie);
+            // 使用房间号和认证信息提供者连接到直播间
+        }).connect(roomId, authProvider);
 
         // 2.第二种实现
         SimpleDanmuClient client2 = SimpleDanmuClient.with(handler());
@@ -33,7 +38,14 @@ public class DanmuMain {
         // 3.第三种实现
         SimpleDanmuClient client3 = SimpleDanmuClient.with(handler());
         // 使用自定义Auth创建连接
-        client3.connect(Auth.create(roomId, cookie));
+        client3.connect(authProvider.getNow(roomId));
+
+        // 4.第四种实现：按命令注册处理函数
+        SimpleDanmuClient.with(new HandlerRegistry()
+                .on(Command.DANMU_MSG, danmu -> System.out.println("[" + danmu.user.name + "]: " + danmu.body))
+                .on(Command.SEND_GIFT, gift -> System.out.println(gift.user.name + " " + gift.action + " " + gift.giftName + " x" + gift.num))
+                .on(Command.SUPER_CHAT_MESSAGE, sc -> System.out.println("[SC " + sc.price + "元] " + sc.user.name + ": " + sc.message))
+        ).connect(roomId, authProvider);
         // 以上可任意组合
     }
 
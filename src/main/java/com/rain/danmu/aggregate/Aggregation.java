@@ -0,0 +1,423 @@
+package com.rain.danmu.aggregate;
+
+import com.rain.danmu.model.LiveEvent;
+import com.rain.danmu.util.HashUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按房间划分的流式窗口聚合
+ * 可直接作为事件处理函数注册，例如：
+ * 1. 每个房间每秒弹幕数：count(WindowConfig.sliding(10_000, 1_000), danmu -> 0)
+ * 2. 发言最多的用户：count(config, danmu -> danmu.user.uid, danmu -> danmu.user.name)
+ * 3. 热门弹幕：count(config, danmu -> hash(danmu.body), danmu -> danmu.body)
+ * 4. 每分钟礼物价值：sum(WindowConfig.tumbling(60_000), gift -> gift.user.uid, gift -> gift.price * gift.num, gift -> gift.user.name)
+ * 每个窗格内用Space-Saving跟踪高频项、用Count-Min Sketch估计任意键的计数，计数器均为原始类型，写入不加锁
+ * 窗格结束后的第一个事件触发快照发布，快照发布后不再修改，查询只读取volatile引用
+ * 线程约束：同一房间的事件必须由同一线程写入，按房间分通道的{@link com.rain.danmu.dispatch.Dispatcher}
+ * 和同步回调时的连接线程都满足该条件；不同房间可并发写入，查询可在任意线程进行
+ *
+ * @param <T> 事件类型
+ */
+public class Aggregation<T> implements Consumer<T> {
+
+    // 窗口配置
+    private final WindowConfig config;
+
+    // 房间号提取函数
+    private final ToLongFunction<? super T> room;
+
+    // 键提取函数
+    private final ToLongFunction<? super T> key;
+
+    // 值提取函数
+    private final ToLongFunction<? super T> value;
+
+    // 标签提取函数，只在键首次进入窗格时调用，可为空
+    private final Function<? super T, ?> label;
+
+    // 时钟（毫秒）
+    private final LongSupplier clock;
+
+    // 房间号 -> 窗口，开放寻址，新增房间时整体替换；内部类不能创建泛型数组，使用Object[]
+    private volatile Object[] windows = new Object[16];
+
+    // 房间数
+    private int size;
+
+    /**
+     * 构造函数，使用系统时钟
+     *
+     * @param config 窗口配置
+     * @param room   房间号提取函数
+     * @param key    键提取函数
+     * @param value  值提取函数，值不能为负
+     * @param label  标签提取函数，可为空
+     */
+    public Aggregation(WindowConfig config, ToLongFunction<? super T> room, ToLongFunction<? super T> key,
+                       ToLongFunction<? super T> value, Function<? super T, ?> label) {
+        this(config, room, key, value, label, System::currentTimeMillis);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param config 窗口配置
+     * @param room   房间号提取函数
+     * @param key    键提取函数
+     * @param value  值提取函数，值不能为负
+     * @param label  标签提取函数，可为空
+     * @param clock  时钟（毫秒）
+     */
+    public Aggregation(WindowConfig config, ToLongFunction<? super T> room, ToLongFunction<? super T> key,
+                       ToLongFunction<? super T> value, Function<? super T, ?> label, LongSupplier clock) {
+        this.config = config;
+        this.room = room;
+        this.key = key;
+        this.value = value;
+        this.label = label;
+        this.clock = clock;
+    }
+
+    /**
+     * 按键计数
+     *
+     * @param config 窗口配置
+     * @param key    键提取函数
+     * @return 聚合
+     */
+    public static <T extends LiveEvent> Aggregation<T> count(WindowConfig config, ToLongFunction<? super T> key) {
+        return count(config, key, null);
+    }
+
+    /**
+     * 按键计数
+     *
+     * @param config 窗口配置
+     * @param key    键提取函数
+     * @param label  标签提取函数，可为空
+     * @return 聚合
+     */
+    public static <T extends LiveEvent> Aggregation<T> count(WindowConfig config, ToLongFunction<? super T> key, Function<? super T, ?> label) {
+        return new Aggregation<>(config, event -> event.roomId, key, event -> 1, label);
+    }
+
+    /**
+     * 按键求和
+     *
+     * @param config 窗口配置
+     * @param key    键提取函数
+     * @param value  值提取函数，值不能为负
+     * @param label  标签提取函数，可为空
+     * @return 聚合
+     */
+    public static <T extends LiveEvent> Aggregation<T> sum(WindowConfig config, ToLongFunction<? super T> key,
+                                                           ToLongFunction<? super T> value, Function<? super T, ?> label) {
+        return new Aggregation<>(config, event -> event.roomId, key, value, label);
+    }
+
+    /**
+     * 字符串键的64位FNV-1a哈希，用于按弹幕内容、命令字等聚合
+     *
+     * @param text 字符串
+     * @return 哈希值
+     */
+    public static long hash(CharSequence text) {
+        return HashUtil.fnv1a(text);
+    }
+
+    /**
+     * 写入一个事件
+     *
+     * @param event 事件
+     */
+    @Override
+    public void accept(T event) {
+        window(room.applyAsLong(event)).add(clock.getAsLong(), key.applyAsLong(event), value.applyAsLong(event), event);
+    }
+
+    /**
+     * 查询房间最近发布的快照
+     * 快照在窗格结束后的第一个事件到达时才发布，房间停止写入后最后一个窗格不会发布，
+     * 返回的快照可能滞后于当前时间，最多滞后一个窗口加一个窗格，可用{@link WindowSnapshot#end()}判断；
+     * 房间在整个窗口内都没有事件时返回空快照
+     *
+     * @param roomId 房间号
+     * @return 快照，不为空
+     */
+    public WindowSnapshot snapshot(long roomId) {
+        long now = clock.getAsLong();
+        Window window = find(roomId);
+        WindowSnapshot snapshot = window == null ? null : window.snapshot;
+        // 未发布的数据都在快照结束后的一个窗格内，窗口完全越过该窗格时窗口内没有任何事件
+        if (snapshot == null || snapshot.end() + config.paneMillis + config.windowMillis <= now) {
+            return WindowSnapshot.empty(now - config.windowMillis, now);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return 有过事件的房间号
+     */
+    @SuppressWarnings("unchecked")
+    public long[] rooms() {
+        Object[] current = windows;
+        long[] rooms = new long[current.length];
+        int count = 0;
+        for (Object window : current) {
+            if (window != null) {
+                rooms[count++] = ((Window) window).roomId;
+            }
+        }
+        return Arrays.copyOf(rooms, count);
+    }
+
+    /**
+     * @return 窗口配置
+     */
+    public WindowConfig config() {
+        return config;
+    }
+
+    /**
+     * 查找房间的窗口
+     */
+    @SuppressWarnings("unchecked")
+    private Window find(long roomId) {
+        Object[] table = windows;
+        int mask = table.length - 1;
+        int slot = LongCountMap.hash(roomId) & mask;
+        Object window;
+        while ((window = table[slot]) != null) {
+            if (((Window) window).roomId == roomId) {
+                return (Window) window;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 获取房间的窗口，不存在时创建
+     */
+    private Window window(long roomId) {
+        Window window = find(roomId);
+        return window != null ? window : create(roomId);
+    }
+
+    /**
+     * 创建房间的窗口，复制并替换整个表
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized Window create(long roomId) {
+        Window window = find(roomId);
+        if (window != null) {
+            return window;
+        }
+        Object[] old = windows;
+        Object[] table = new Object[(size + 1) * 2 > old.length ? old.length * 2 : old.length];
+        for (Object existing : old) {
+            if (existing != null) {
+                insert(table, ((Window) existing).roomId, existing);
+            }
+        }
+        window = new Window(roomId);
+        insert(table, roomId, window);
+        size++;
+        windows = table;
+        return window;
+    }
+
+    /**
+     * 插入开放寻址表
+     */
+    private static void insert(Object[] table, long roomId, Object window) {
+        int mask = table.length - 1;
+        int slot = LongCountMap.hash(roomId) & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = window;
+    }
+
+    /**
+     * 单个房间的窗口，只由一个线程写入
+     */
+    private final class Window {
+
+        // 房间号
+        final long roomId;
+
+        // 窗格环，按窗格编号取模
+        final Pane[] panes;
+
+        // 当前窗格编号
+        long current = Long.MIN_VALUE;
+
+        // 第一个事件所在的窗格编号
+        long first = Long.MIN_VALUE;
+
+        // 最近发布的快照
+        volatile WindowSnapshot snapshot;
+
+        Window(long roomId) {
+            this.roomId = roomId;
+            this.panes = new Pane[config.panes()];
+            for (int i = 0; i < panes.length; i++) {
+                panes[i] = new Pane(config);
+            }
+        }
+
+        /**
+         * 写入一个事件，进入新窗格时先发布上一个窗格结束时的快照
+         */
+        void add(long now, long key, long value, T event) {
+            long id = Math.floorDiv(now, config.paneMillis);
+            if (id > current) {
+                if (current != Long.MIN_VALUE) {
+                    snapshot = publish(current);
+                } else {
+                    first = id;
+                }
+                current = id;
+            } else {
+                // 时钟回拨时计入当前窗格
+                id = current;
+            }
+            Pane pane = panes[(int) Math.floorMod(id, (long) panes.length)];
+            if (pane.id != id) {
+                pane.reset(id);
+            }
+            pane.count++;
+            pane.sum += value;
+            int slot = pane.top.offer(key, value);
+            if (label != null && pane.top.label(slot) == null) {
+                pane.top.label(slot, label.apply(event));
+            }
+            if (pane.sketch != null) {
+                pane.sketch.add(key, value);
+            }
+        }
+
+        /**
+         * 合并以last结尾的各窗格生成快照
+         */
+        WindowSnapshot publish(long last) {
+            long from = last - panes.length + 1;
+            long count = 0;
+            long sum = 0;
+            // 键在某个窗格中未被跟踪时，其计数不超过该窗格的min()，先按所有窗格都未跟踪累加，
+            // 再对跟踪到该键的窗格用实际计数替换min()，合并结果仍不低于真实值
+            long untracked = 0;
+            LongCountMap counts = new LongCountMap(config.capacity);
+            LongCountMap errors = new LongCountMap(config.capacity);
+            CountMinSketch sketch = config.sketchWidth > 0 ? new CountMinSketch(config.sketchWidth, config.sketchDepth) : null;
+            for (Pane pane : panes) {
+                if (pane.id < from || pane.id > last) {
+                    continue;
+                }
+                count += pane.count;
+                sum += pane.sum;
+                SpaceSaving top = pane.top;
+                long min = top.min();
+                untracked += min;
+                for (int slot = 0; slot < top.size(); slot++) {
+                    counts.add(top.key(slot), top.count(slot) - min);
+                    errors.add(top.key(slot), top.error(slot) - min);
+                }
+                if (sketch != null) {
+                    sketch.merge(pane.sketch);
+                }
+            }
+            long bound = untracked;
+            List<WindowSnapshot.Entry> entries = new ArrayList<>(counts.size());
+            counts.forEach((key, value) -> {
+                long estimate = value + bound;
+                long error = errors.get(key) + bound;
+                if (sketch != null) {
+                    // 两者都不低于真实值，取较小者，下界不变
+                    long other = sketch.estimate(key);
+                    if (other < estimate) {
+                        error = Math.max(0, error - (estimate - other));
+                        estimate = other;
+                    }
+                }
+                entries.add(new WindowSnapshot.Entry(key, null, estimate, error));
+            });
+            LongCountMap merged = new LongCountMap(entries.size());
+            for (WindowSnapshot.Entry entry : entries) {
+                merged.put(entry.key, entry.count);
+            }
+            entries.sort(Comparator.comparingLong((WindowSnapshot.Entry entry) -> entry.count).reversed());
+            List<WindowSnapshot.Entry> top = new ArrayList<>(Math.min(entries.size(), config.capacity));
+            for (int i = 0; i < entries.size() && i < config.capacity; i++) {
+                WindowSnapshot.Entry entry = entries.get(i);
+                top.add(label == null ? entry : new WindowSnapshot.Entry(entry.key, label(entry.key, from, last), entry.count, entry.error));
+            }
+            long start = Math.max(from, first) * config.paneMillis;
+            return new WindowSnapshot(start, (last + 1) * config.paneMillis, count, sum, List.copyOf(top), merged, untracked, sketch);
+        }
+
+        /**
+         * 从最新的窗格开始查找键的标签
+         */
+        Object label(long key, long from, long last) {
+            for (long id = last; id >= from; id--) {
+                Pane pane = panes[(int) Math.floorMod(id, (long) panes.length)];
+                if (pane.id == id) {
+                    int slot = pane.top.indexOf(key);
+                    if (slot >= 0 && pane.top.label(slot) != null) {
+                        return pane.top.label(slot);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 窗格
+     */
+    private static final class Pane {
+
+        // 窗格编号（起始时间 / 窗格长度）
+        long id = Long.MIN_VALUE;
+
+        // 事件数
+        long count;
+
+        // 值之和
+        long sum;
+
+        // 高频项
+        final SpaceSaving top;
+
+        // 计数草图
+        final CountMinSketch sketch;
+
+        Pane(WindowConfig config) {
+            this.top = new SpaceSaving(config.capacity);
+            this.sketch = config.sketchWidth > 0 ? new CountMinSketch(config.sketchWidth, config.sketchDepth) : null;
+        }
+
+        /**
+         * 清空并重新使用
+         */
+        void reset(long id) {
+            this.id = id;
+            count = 0;
+            sum = 0;
+            top.clear();
+            if (sketch != null) {
+                sketch.clear();
+            }
+        }
+    }
+}
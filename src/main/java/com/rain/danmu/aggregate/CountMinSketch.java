@@ -0,0 +1,111 @@
+package com.rain.danmu.aggregate;
+
+import com.rain.danmu.util.HashUtil;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch
+ * depth行、每行width个计数器，每行用不同的种子散列；估计值取各行最小值，只会高估不会低估
+ * 高估量不超过 总计数 × e / width 的概率为 1 - e^-depth
+ * 非线程安全
+ */
+public final class CountMinSketch {
+
+    // 各行散列种子
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    // 每行计数器数
+    private final int width;
+
+    // 行数
+    private final int depth;
+
+    // 计数器，按行连续存放
+    private final long[] table;
+
+    // 总计数
+    private long total;
+
+    /**
+     * 构造函数
+     *
+     * @param width 每行计数器数，向上取整为2的幂
+     * @param depth 行数（1~8）
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.width = Integer.highestOneBit(width * 2 - 1);
+        this.depth = depth;
+        this.table = new long[this.width * depth];
+    }
+
+    /**
+     * 累加键的计数
+     *
+     * @param key   键
+     * @param count 增量
+     */
+    public void add(long key, long count) {
+        for (int row = 0; row < depth; row++) {
+            table[row * width + index(key, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * 估计键的计数
+     *
+     * @param key 键
+     * @return 估计值，不小于真实值
+     */
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[row * width + index(key, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * 合并另一个相同尺寸的草图
+     *
+     * @param other 草图
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("草图尺寸不同");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * @return 总计数
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        total = 0;
+    }
+
+    /**
+     * 第row行的列号
+     */
+    private int index(long key, int row) {
+        return (int) HashUtil.mix(key ^ SEEDS[row]) & (width - 1);
+    }
+}
@@ -0,0 +1,238 @@
+package com.rain.danmu.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * 以long为键、long为值的开放寻址哈希表
+ * 线性探测，删除时回移后续项而不留墓碑，读写都不装箱、不分配对象
+ * 非线程安全
+ */
+public final class LongCountMap {
+
+    // 最大负载因子
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 键
+    private long[] keys;
+
+    // 值
+    private long[] values;
+
+    // 槽位是否被占用
+    private boolean[] used;
+
+    // 项数
+    private int size;
+
+    // 槽位数减一，用于取模
+    private int mask;
+
+    // 扩容阈值
+    private int threshold;
+
+    public LongCountMap() {
+        this(16);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param expected 预计项数
+     */
+    public LongCountMap(int expected) {
+        allocate(Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) * 2 - 1));
+    }
+
+    /**
+     * 累加键的值
+     *
+     * @param key   键
+     * @param delta 增量
+     * @return 累加后的值
+     */
+    public long add(long key, long delta) {
+        int slot = slot(key);
+        if (used[slot]) {
+            return values[slot] += delta;
+        }
+        insert(slot, key, delta);
+        return delta;
+    }
+
+    /**
+     * 设置键的值
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(long key, long value) {
+        int slot = slot(key);
+        if (used[slot]) {
+            values[slot] = value;
+        } else {
+            insert(slot, key, value);
+        }
+    }
+
+    /**
+     * 获取键的值
+     *
+     * @param key 键
+     * @return 值，不存在返回0
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * 获取键的值
+     *
+     * @param key          键
+     * @param defaultValue 不存在时返回的值
+     * @return 值
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        int slot = slot(key);
+        return used[slot] ? values[slot] : defaultValue;
+    }
+
+    /**
+     * @param key 键
+     * @return 是否包含该键
+     */
+    public boolean containsKey(long key) {
+        return used[slot(key)];
+    }
+
+    /**
+     * 删除键
+     *
+     * @param key 键
+     * @return 是否存在
+     */
+    public boolean remove(long key) {
+        int slot = slot(key);
+        if (!used[slot]) {
+            return false;
+        }
+        // 回移后续项，保持探测链连续
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            // home不在(hole, next]之间时可以移入hole
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return 项数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清空，保留已分配的空间
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    /**
+     * 遍历所有项，顺序不确定
+     *
+     * @param visitor 访问函数
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * 查找键所在或应插入的槽位
+     */
+    private int slot(long key) {
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 在空槽位插入，必要时扩容
+     */
+    private void insert(int slot, long key, long value) {
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        if (++size > threshold) {
+            rehash();
+        }
+    }
+
+    /**
+     * 扩容为两倍
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    /**
+     * 分配槽位
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * 混合高低位，避免连续的ID聚集
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 遍历函数
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * @param key   键
+         * @param value 值
+         */
+        void visit(long key, long value);
+    }
+}
@@ -0,0 +1,215 @@
+package com.rain.danmu.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * Space-Saving高频项统计
+ * 固定capacity个计数器：已跟踪的键直接累加；未跟踪的键替换当前计数最小的项，
+ * 继承其计数并把该计数记为误差。计数大于 总计数 / capacity 的键一定会被跟踪，
+ * 估计值减去误差是真实值的下界
+ * 计数器按最小堆组织，每次更新O(log capacity)，不分配对象；非线程安全
+ */
+public final class SpaceSaving {
+
+    // 计数器数
+    private final int capacity;
+
+    // 各槽位的键
+    private final long[] keys;
+
+    // 各槽位的计数
+    private final long[] counts;
+
+    // 各槽位的误差上界
+    private final long[] errors;
+
+    // 各槽位的标签，如键对应的昵称或弹幕内容
+    private final Object[] labels;
+
+    // 按计数排列的最小堆，元素为槽位
+    private final int[] heap;
+
+    // 槽位在堆中的位置
+    private final int[] positions;
+
+    // 键 -> 槽位
+    private final LongCountMap index;
+
+    // 已使用的槽位数
+    private int size;
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 计数器数
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.labels = new Object[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.index = new LongCountMap(capacity);
+    }
+
+    /**
+     * 累加键的计数
+     *
+     * @param key    键
+     * @param weight 增量，不能为负
+     * @return 键所在的槽位，新跟踪的键标签为空
+     */
+    public int offer(long key, long weight) {
+        int slot = (int) index.getOrDefault(key, -1);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            siftDown(positions[slot]);
+            return slot;
+        }
+        if (size < capacity) {
+            slot = size;
+            keys[slot] = key;
+            counts[slot] = weight;
+            errors[slot] = 0;
+            labels[slot] = null;
+            index.put(key, slot);
+            heap[size] = slot;
+            positions[slot] = size;
+            siftUp(size++);
+            return slot;
+        }
+        slot = heap[0];
+        index.remove(keys[slot]);
+        errors[slot] = counts[slot];
+        counts[slot] += weight;
+        keys[slot] = key;
+        labels[slot] = null;
+        index.put(key, slot);
+        siftDown(0);
+        return slot;
+    }
+
+    /**
+     * 查找键所在的槽位
+     *
+     * @param key 键
+     * @return 槽位，未跟踪返回-1
+     */
+    public int indexOf(long key) {
+        return (int) index.getOrDefault(key, -1);
+    }
+
+    /**
+     * @return 已使用的槽位数，槽位编号为0 ~ size-1
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 计数器数
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 槽位的键
+     */
+    public long key(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @return 槽位的计数估计值，不小于真实值
+     */
+    public long count(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * @return 槽位的误差上界
+     */
+    public long error(int slot) {
+        return errors[slot];
+    }
+
+    /**
+     * @return 槽位的标签
+     */
+    public Object label(int slot) {
+        return labels[slot];
+    }
+
+    /**
+     * 设置槽位的标签
+     */
+    public void label(int slot, Object label) {
+        labels[slot] = label;
+    }
+
+    /**
+     * @return 未跟踪的键可能具有的最大计数，未满时为0
+     */
+    public long min() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * 清空，保留已分配的空间
+     */
+    public void clear() {
+        index.clear();
+        Arrays.fill(labels, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 堆中位置i的元素上移
+     */
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(slot, i);
+    }
+
+    /**
+     * 堆中位置i的元素下移
+     */
+    private void siftDown(int i) {
+        int slot = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            move(heap[child], i);
+            i = child;
+        }
+        move(slot, i);
+    }
+
+    /**
+     * 将槽位放到堆中位置i
+     */
+    private void move(int slot, int i) {
+        heap[i] = slot;
+        positions[slot] = i;
+    }
+}
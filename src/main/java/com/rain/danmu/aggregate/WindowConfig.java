@@ -0,0 +1,76 @@
+package com.rain.danmu.aggregate;
+
+/**
+ * 窗口配置
+ * 窗口由若干等长的窗格组成，窗格数为1时为滚动窗口，否则为按窗格滑动的滑动窗口
+ * 每个房间每个窗格占用 capacity 个高频项计数器和 sketchWidth × sketchDepth 个草图计数器
+ */
+public class WindowConfig {
+
+    /**
+     * 默认配置：1分钟滑动窗口，每5秒滑动一次，跟踪前256个高频项，草图1024×4
+     */
+    public static final WindowConfig DEFAULT = new WindowConfig(60_000, 5_000, 256, 1024, 4);
+
+    // 窗口长度（毫秒）
+    public final long windowMillis;
+
+    // 窗格长度（毫秒），即快照的发布间隔
+    public final long paneMillis;
+
+    // 每个窗格跟踪的高频项数
+    public final int capacity;
+
+    // 草图每行计数器数，0表示不使用草图
+    public final int sketchWidth;
+
+    // 草图行数
+    public final int sketchDepth;
+
+    /**
+     * @param windowMillis 窗口长度（毫秒），必须是窗格长度的整数倍
+     * @param paneMillis   窗格长度（毫秒）
+     * @param capacity     每个窗格跟踪的高频项数
+     * @param sketchWidth  草图每行计数器数，0表示不使用草图
+     * @param sketchDepth  草图行数（1~8）
+     */
+    public WindowConfig(long windowMillis, long paneMillis, int capacity, int sketchWidth, int sketchDepth) {
+        if (paneMillis <= 0 || windowMillis < paneMillis || windowMillis % paneMillis != 0 || windowMillis / paneMillis > 1024
+                || capacity <= 0 || sketchWidth < 0 || (sketchWidth > 0 && (sketchDepth <= 0 || sketchDepth > 8))) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.windowMillis = windowMillis;
+        this.paneMillis = paneMillis;
+        this.capacity = capacity;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+    }
+
+    /**
+     * 滚动窗口，其余参数使用默认值
+     *
+     * @param windowMillis 窗口长度（毫秒）
+     * @return 配置
+     */
+    public static WindowConfig tumbling(long windowMillis) {
+        return new WindowConfig(windowMillis, windowMillis, DEFAULT.capacity, DEFAULT.sketchWidth, DEFAULT.sketchDepth);
+    }
+
+    /**
+     * 滑动窗口，其余参数使用默认值
+     *
+     * @param windowMillis 窗口长度（毫秒）
+     * @param slideMillis  滑动间隔（毫秒）
+     * @return 配置
+     */
+    public static WindowConfig sliding(long windowMillis, long slideMillis) {
+        return new WindowConfig(windowMillis, slideMillis, DEFAULT.capacity, DEFAULT.sketchWidth, DEFAULT.sketchDepth);
+    }
+
+    /**
+     * @return 窗格数
+     */
+    public int panes() {
+        return (int) (windowMillis / paneMillis);
+    }
+}
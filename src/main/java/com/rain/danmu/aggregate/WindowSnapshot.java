@@ -0,0 +1,162 @@
+package com.rain.danmu.aggregate;
+
+import java.util.List;
+
+/**
+ * 窗口快照
+ * 窗格结束时由写入线程生成，之后不再修改，可在任意线程读取
+ * 所有查询都是O(1)：总数和速率直接返回，键的计数为一次哈希查找，前N项为预先排好序的列表
+ */
+public final class WindowSnapshot {
+
+    // 窗口起始时间（毫秒，含）
+    private final long start;
+
+    // 窗口结束时间（毫秒，不含）
+    private final long end;
+
+    // 事件数
+    private final long count;
+
+    // 值之和
+    private final long sum;
+
+    // 高频项，按计数降序
+    private final List<Entry> top;
+
+    // 高频项的计数
+    private final LongCountMap counts;
+
+    // 未被任何窗格跟踪的键的计数上界（各窗格min()之和）
+    private final long untracked;
+
+    // 所有键的计数草图，为空表示未启用
+    private final CountMinSketch sketch;
+
+    WindowSnapshot(long start, long end, long count, long sum, List<Entry> top, LongCountMap counts, long untracked,
+                   CountMinSketch sketch) {
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.sum = sum;
+        this.top = top;
+        this.counts = counts;
+        this.untracked = untracked;
+        this.sketch = sketch;
+    }
+
+    /**
+     * 空快照
+     */
+    static WindowSnapshot empty(long start, long end) {
+        return new WindowSnapshot(start, end, 0, 0, List.of(), new LongCountMap(), 0, null);
+    }
+
+    /**
+     * @return 窗口起始时间（毫秒，含）
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * @return 窗口结束时间（毫秒，不含），快照只在房间有新事件时发布，可能早于当前时间
+     */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * @return 窗口内的事件数
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return 窗口内的值之和，计数聚合时与事件数相同
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return 每秒事件数
+     */
+    public double rate() {
+        return count * 1000.0 / (end - start);
+    }
+
+    /**
+     * @return 每秒的值之和
+     */
+    public double sumRate() {
+        return sum * 1000.0 / (end - start);
+    }
+
+    /**
+     * 键在窗口内的值之和
+     * 高频项返回合并各窗格后的估计值，键在某个窗格中未被跟踪时按该窗格可能的最大计数计入；
+     * 其余键返回草图估计值与各窗格上界中的较小者，都不低于真实值
+     *
+     * @param key 键
+     * @return 估计值
+     */
+    public long count(long key) {
+        long value = counts.getOrDefault(key, -1);
+        if (value >= 0) {
+            return value;
+        }
+        return sketch == null ? untracked : Math.min(untracked, sketch.estimate(key));
+    }
+
+    /**
+     * @return 全部高频项，按计数降序
+     */
+    public List<Entry> top() {
+        return top;
+    }
+
+    /**
+     * @param n 项数
+     * @return 前n个高频项，按计数降序
+     */
+    public List<Entry> top(int n) {
+        return n >= top.size() ? top : top.subList(0, n);
+    }
+
+    @Override
+    public String toString() {
+        return "WindowSnapshot{start=" + start + ", end=" + end + ", count=" + count + ", sum=" + sum + ", top=" + top(10) + '}';
+    }
+
+    /**
+     * 高频项
+     */
+    public static final class Entry {
+
+        // 键
+        public final long key;
+
+        // 标签，如昵称或弹幕内容，未提供时为空
+        public final Object label;
+
+        // 计数估计值
+        public final long count;
+
+        // 误差上界，count - error是真实值的下界
+        public final long error;
+
+        Entry(long key, Object label, long count, long error) {
+            this.key = key;
+            this.label = label;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return (label == null ? String.valueOf(key) : label) + "=" + count;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.rain.danmu.client;
+
+import com.rain.danmu.model.Auth;
+import com.rain.danmu.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+/**
+ * 认证信息提供者
+ * 批量连接大量房间时并发获取认证信息：
+ * 1. 以固定并发度请求getDanmuInfo，避免串行往返
+ * 2. 按房间缓存token和服务器地址列表，超过有效期前提前刷新
+ * 3. 同一房间同时只有一个进行中的请求，重复请求共享结果
+ */
+public class AuthProvider implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(AuthProvider.class);
+
+    // 阻塞获取的默认超时时间（毫秒），覆盖排队和获取wbi密钥、getDanmuInfo两次请求
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30 * 1000;
+
+    // 认证信息获取函数
+    private final LongFunction<Auth> loader;
+
+    // 请求执行器，线程数即并发度
+    private final ExecutorService executor;
+
+    // 缓存有效期（毫秒）
+    private final long ttlMillis;
+
+    // 超过该时长后访问会触发后台刷新（毫秒）
+    private final long refreshAfterMillis;
+
+    // 房间号到缓存项的映射
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+
+    // 是否已关闭
+    private volatile boolean closed;
+
+    /**
+     * 构造函数，并发度8，有效期10分钟，达到80%时提前刷新
+     *
+     * @param cookie B站登录Cookie
+     */
+    public AuthProvider(String cookie) {
+        this(roomId -> Auth.create(roomId, cookie), 8, 10 * 60 * 1000, 0.8);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param loader            认证信息获取函数（阻塞）
+     * @param parallelism       最大并发请求数
+     * @param ttlMillis         缓存有效期（毫秒）
+     * @param refreshAheadRatio 缓存年龄达到有效期的该比例后，访问时在后台提前刷新（0~1）
+     */
+    public AuthProvider(LongFunction<Auth> loader, int parallelism, long ttlMillis, double refreshAheadRatio) {
+        this(loader, parallelism, ttlMillis, refreshAheadRatio, daemonThreadFactory());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param loader            认证信息获取函数（阻塞）
+     * @param parallelism       最大并发请求数
+     * @param ttlMillis         缓存有效期（毫秒）
+     * @param refreshAheadRatio 缓存年龄达到有效期的该比例后，访问时在后台提前刷新（0~1）
+     * @param threadFactory     请求线程工厂，例如{@link com.rain.danmu.util.VirtualThreads#factory(String)}
+     */
+    public AuthProvider(LongFunction<Auth> loader, int parallelism, long ttlMillis, double refreshAheadRatio,
+                        ThreadFactory threadFactory) {
+        if (parallelism <= 0 || ttlMillis <= 0 || refreshAheadRatio <= 0 || refreshAheadRatio > 1) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+        this.refreshAfterMillis = (long) (ttlMillis * refreshAheadRatio);
+        this.executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    /**
+     * 使用虚拟线程请求的提供者，并发度8，有效期10分钟，达到80%时提前刷新
+     * 当前JDK不支持虚拟线程时使用平台线程
+     *
+     * @param cookie B站登录Cookie
+     * @return 认证信息提供者
+     */
+    public static AuthProvider virtual(String cookie) {
+        return new AuthProvider(roomId -> Auth.create(roomId, cookie), 8, 10 * 60 * 1000, 0.8,
+                VirtualThreads.factory("danmu-auth-"));
+    }
+
+    /**
+     * 获取房间的认证信息
+     * 缓存有效时立即返回，接近过期时同时在后台刷新
+     *
+     * @param roomId 直播间房间号
+     * @return 认证信息
+     */
+    public CompletableFuture<Auth> get(long roomId) {
+        Entry entry = cache.computeIfAbsent(roomId, key -> new Entry());
+        Auth auth = entry.auth;
+        if (auth != null && auth.isFresh(ttlMillis)) {
+            if (!auth.isFresh(refreshAfterMillis)) {
+                load(roomId, entry);
+            }
+            return CompletableFuture.completedFuture(auth);
+        }
+        return load(roomId, entry);
+    }
+
+    /**
+     * 阻塞获取房间的认证信息，最多等待30秒
+     *
+     * @param roomId 直播间房间号
+     * @return 认证信息
+     * @throws java.util.concurrent.CompletionException 获取失败、超时或提供者已关闭
+     */
+    public Auth getNow(long roomId) {
+        return getNow(roomId, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 阻塞获取房间的认证信息
+     * 超时只结束本次等待，进行中的请求继续执行，完成后仍会写入缓存
+     *
+     * @param roomId        直播间房间号
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 认证信息
+     * @throws java.util.concurrent.CompletionException 获取失败、超时或提供者已关闭
+     */
+    public Auth getNow(long roomId, long timeoutMillis) {
+        // 在副本上计时，不影响共享同一请求的其他调用方
+        return get(roomId).copy().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).join();
+    }
+
+    /**
+     * 预先并发获取一批房间的认证信息
+     *
+     * @param roomIds 房间号集合
+     * @return 房间号到认证信息的映射
+     */
+    public Map<Long, CompletableFuture<Auth>> prefetch(Collection<Long> roomIds) {
+        Map<Long, CompletableFuture<Auth>> result = new LinkedHashMap<>();
+        for (Long roomId : roomIds) {
+            result.put(roomId, get(roomId));
+        }
+        return result;
+    }
+
+    /**
+     * 使房间的缓存失效，下次访问重新获取
+     *
+     * @param roomId 直播间房间号
+     */
+    public void invalidate(long roomId) {
+        cache.remove(roomId);
+    }
+
+    /**
+     * 关闭请求执行器，排队和进行中的请求均以异常结束，之后的请求直接失败
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        // 被丢弃的排队任务不会再执行，由这里结束其结果
+        for (Entry entry : cache.values()) {
+            CompletableFuture<Auth> inflight = entry.inflight.getAndSet(null);
+            if (inflight != null) {
+                inflight.completeExceptionally(new IllegalStateException("认证信息提供者已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 发起或复用进行中的请求
+     */
+    private CompletableFuture<Auth> load(long roomId, Entry entry) {
+        CompletableFuture<Auth> inflight = entry.inflight.get();
+        if (inflight != null) {
+            return inflight;
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("认证信息提供者已关闭"));
+        }
+        CompletableFuture<Auth> future = new CompletableFuture<>();
+        if (!entry.inflight.compareAndSet(null, future)) {
+            // 另一个线程刚发起请求，极少数情况下它已完成并清除，此时返回的结果为空，重新发起
+            inflight = entry.inflight.get();
+            return inflight != null ? inflight : load(roomId, entry);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    Auth auth = loader.apply(roomId);
+                    entry.auth = auth;
+                    entry.inflight.compareAndSet(future, null);
+                    future.complete(auth);
+                } catch (Throwable e) {
+                    entry.inflight.compareAndSet(future, null);
+                    Auth stale = entry.auth;
+                    if (stale != null) {
+                        // 刷新失败时继续使用旧的认证信息
+                        LOGGER.warn("房间{}刷新认证信息失败，继续使用旧的认证信息", roomId, e);
+                        future.complete(stale);
+                    } else {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭，清除进行中的请求，否则该房间之后的请求都会拿到永不完成的结果
+            entry.inflight.compareAndSet(future, null);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 守护线程工厂
+     */
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "danmu-auth-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 缓存项
+     */
+    private static final class Entry {
+
+        // 最近一次获取的认证信息
+        volatile Auth auth;
+
+        // 进行中的请求
+        final AtomicReference<CompletableFuture<Auth>> inflight = new AtomicReference<>();
+    }
+}
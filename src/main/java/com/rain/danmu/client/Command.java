@@ -0,0 +1,127 @@
+package com.rain.danmu.client;
+
+import com.rain.danmu.codec.LazyMessage;
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.model.Gift;
+import com.rain.danmu.model.GuardBuy;
+import com.rain.danmu.model.InteractWord;
+import com.rain.danmu.model.LikeClick;
+import com.rain.danmu.model.LikeUpdate;
+import com.rain.danmu.model.LiveEvent;
+import com.rain.danmu.model.OnlineRankCount;
+import com.rain.danmu.model.SuperChat;
+import com.rain.danmu.model.WatchedChange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.function.Function;
+
+/**
+ * 带类型的直播间命令
+ * 将命令字与对应事件实体的解析函数绑定
+ *
+ * @param <T> 事件类型
+ */
+public final class Command<T extends LiveEvent> {
+
+    /**
+     * 弹幕
+     */
+    public static final Command<Danmu> DANMU_MSG = info("DANMU_MSG", Danmu::parse);
+
+    /**
+     * 礼物
+     */
+    public static final Command<Gift> SEND_GIFT = data("SEND_GIFT", Gift::parse);
+
+    /**
+     * 醒目留言
+     */
+    public static final Command<SuperChat> SUPER_CHAT_MESSAGE = data("SUPER_CHAT_MESSAGE", SuperChat::parse);
+
+    /**
+     * 上舰
+     */
+    public static final Command<GuardBuy> GUARD_BUY = data("GUARD_BUY", GuardBuy::parse);
+
+    /**
+     * 进入直播间、关注、分享
+     */
+    public static final Command<InteractWord> INTERACT_WORD = data("INTERACT_WORD", InteractWord::parse);
+
+    /**
+     * 点赞
+     */
+    public static final Command<LikeClick> LIKE_INFO_V3_CLICK = data("LIKE_INFO_V3_CLICK", LikeClick::parse);
+
+    /**
+     * 点赞总数更新
+     */
+    public static final Command<LikeUpdate> LIKE_INFO_V3_UPDATE = data("LIKE_INFO_V3_UPDATE", LikeUpdate::parse);
+
+    /**
+     * 高能用户数更新
+     */
+    public static final Command<OnlineRankCount> ONLINE_RANK_COUNT = data("ONLINE_RANK_COUNT", OnlineRankCount::parse);
+
+    /**
+     * 看过人数更新
+     */
+    public static final Command<WatchedChange> WATCHED_CHANGE = data("WATCHED_CHANGE", WatchedChange::parse);
+
+    // 命令字
+    public final String cmd;
+
+    // 解析函数
+    private final Function<LazyMessage, T> parser;
+
+    private Command(String cmd, Function<LazyMessage, T> parser) {
+        this.cmd = cmd;
+        this.parser = parser;
+    }
+
+    /**
+     * 定义命令，可用于内置命令之外的自定义解析
+     *
+     * @param cmd    命令字
+     * @param parser 解析函数，返回null表示忽略该消息
+     * @return 命令
+     */
+    public static <T extends LiveEvent> Command<T> of(String cmd, Function<LazyMessage, T> parser) {
+        return new Command<>(cmd, parser);
+    }
+
+    /**
+     * 定义从data部分解析的命令
+     */
+    private static <T extends LiveEvent> Command<T> data(String cmd, Function<JSONObject, T> parser) {
+        return of(cmd, message -> {
+            JSONObject data = message.data();
+            return data == null ? null : parser.apply(data);
+        });
+    }
+
+    /**
+     * 定义从info部分解析的命令
+     */
+    private static <T extends LiveEvent> Command<T> info(String cmd, Function<JSONArray, T> parser) {
+        return of(cmd, message -> {
+            JSONArray info = message.info();
+            return info == null ? null : parser.apply(info);
+        });
+    }
+
+    /**
+     * 解析消息为事件实体，并填充房间号
+     *
+     * @param message 消息视图
+     * @return 事件实体，消息不完整时返回null
+     */
+    public T parse(LazyMessage message) {
+        T event = parser.apply(message);
+        if (event != null) {
+            event.roomId = message.roomId();
+        }
+        return event;
+    }
+}
@@ -1,40 +1,133 @@
 package com.rain.danmu.client;
 
+import com.rain.danmu.codec.CmdScanner;
+import com.rain.danmu.codec.CmdTable;
+import com.rain.danmu.codec.LazyMessage;
+import com.rain.danmu.codec.PacketDecoder;
+import com.rain.danmu.codec.PacketEncoder;
+import com.rain.danmu.codec.PacketView;
+import com.rain.danmu.dispatch.Batcher;
 import com.rain.danmu.enums.Operation;
+import com.rain.danmu.metrics.ClientMetrics;
 import com.rain.danmu.model.Auth;
 import com.rain.danmu.model.Danmu;
-import com.rain.danmu.model.Message;
-import com.rain.danmu.model.Packet;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
-import org.json.JSONObject;
-import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * B站弹幕客户端
  */
 public class DanmuClient {
 
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(DanmuClient.class);
+
     // 弹幕服务器地址
     private final URI serverUri;
 
-    // WebSocket客户端实例
-    private WebSocketClient wsClient;
+    // 心跳间隔（毫秒）
+    private static final long HEARTBEAT_PERIOD_MILLIS = 30 * 1000;
+
+    // 连续未收到回复的心跳数达到该值时判定连接已断开
+    private static final int MAX_UNANSWERED_HEARTBEATS = 2;
+
+    // WebSocket传输层
+    private final Transport transport;
+
+    // 当前连接会话，每次建立连接时替换
+    private volatile Session session;
+
+    // 心跳调度器
+    private final HeartbeatScheduler heartbeatScheduler;
+
+    // 重连和获取认证信息的执行器，使用Java-WebSocket传输层时也运行连接读循环
+    private final Executor ioExecutor;
+
+    // 当前心跳任务
+    private volatile HeartbeatScheduler.Heartbeat heartbeat;
+
+    // 当前连接的直播间房间号
+    private volatile long roomId;
+
+    // 数据包解码器，仅在连接读线程中使用
+    private final PacketDecoder decoder = new PacketDecoder();
+
+    // 复用的消息视图，仅在连接读线程中使用
+    private final LazyMessage message = new LazyMessage();
+
+    // 已订阅的命令及其分发函数
+    private final CmdTable<Consumer<LazyMessage>> handlers;
+
+    // 微批聚合器，每条消息处理完毕后通知
+    private final Batcher<?>[] batchers;
+
+    // 断线重连策略，为空表示不自动重连
+    private volatile ReconnectPolicy reconnectPolicy = ReconnectPolicy.DEFAULT;
+
+    // 当前认证信息
+    private volatile Auth auth;
+
+    // 认证信息过期后的重新获取函数
+    private volatile Supplier<Auth> authRefresher;
+
+    // 是否由用户主动断开
+    private volatile boolean closedByUser;
+
+    // 连接代数，每次connect和disconnect时加一，重连任务只对安排时所在的代生效
+    private volatile int generation;
+
+    // 保护连接代数、主动断开标志和会话的切换
+    private final Object lock = new Object();
+
+    // 连续重连次数，认证成功后清零
+    private volatile int attempts;
+
+    // 下一个使用的服务器地址下标
+    private int hostIndex;
+
+    // 待执行的重连任务
+    private volatile HeartbeatScheduler.Heartbeat reconnectTask;
+
+    // 本次断线的时间（纳秒），为0表示当前没有断线
+    private volatile long disconnectedAt;
+
+    // 最近一次断线到收到第一条消息的耗时（毫秒）
+    private volatile long lastTimeToFirstMessageMillis = -1;
 
-    // 弹幕接收回调函数
-    private final Consumer<Danmu> onDanmuReceived;
+    // 累计重连次数
+    private final LongAdder reconnectCount = new LongAdder();
 
-    // 心跳定时器
-    private Timer heartbeatTimer;
+    // 当前连接是否已认证成功
+    private volatile boolean authenticated;
+
+    // 累计收到的业务消息包数，仅读线程写入
+    private volatile long receivedMessages;
+
+    // 监控埋点，连接前设置
+    private ClientMetrics metrics = ClientMetrics.NOOP;
+
+    // 是否需要计时，未设置埋点时不调用System.nanoTime()
+    private boolean timed;
+
+    // 当前消息中回调的累计耗时（纳秒），仅读线程访问
+    private long callbackNanos;
+
+    // 上一次发送心跳的时间（纳秒），0表示没有等待中的心跳
+    private volatile long heartbeatSentAt;
+
+    // 连续未收到回复的心跳数
+    private final AtomicInteger unansweredHeartbeats = new AtomicInteger();
 
     /**
      * 构造函数，使用默认服务器地址
@@ -52,161 +145,495 @@ public class DanmuClient {
      * @param onDanmuReceived 弹幕接收回调函数
      */
     public DanmuClient(URI serverUri, Consumer<Danmu> onDanmuReceived) {
+        this(serverUri, onDanmuReceived, HeartbeatScheduler.shared(), null);
+    }
+
+    /**
+     * 构造函数，可指定心跳调度器和连接执行器，供多房间共享资源使用
+     *
+     * @param serverUri          服务器地址
+     * @param onDanmuReceived    弹幕接收回调函数
+     * @param heartbeatScheduler 心跳调度器
+     * @param ioExecutor         重连的执行器，为空时使用公共线程池
+     */
+    public DanmuClient(URI serverUri, Consumer<Danmu> onDanmuReceived,
+                       HeartbeatScheduler heartbeatScheduler, Executor ioExecutor) {
+        this(serverUri, new HandlerRegistry().on(Command.DANMU_MSG, onDanmuReceived), heartbeatScheduler, ioExecutor);
+    }
+
+    /**
+     * 构造函数，使用默认服务器地址，按注册表分发各类命令
+     *
+     * @param registry 命令处理函数注册表
+     */
+    public DanmuClient(HandlerRegistry registry) {
+        this(URI.create("wss://broadcastlv.chat.bilibili.com:2245/sub"), registry, HeartbeatScheduler.shared(), null);
+    }
+
+    /**
+     * 构造函数，按注册表分发各类命令
+     *
+     * @param serverUri          服务器地址
+     * @param registry           命令处理函数注册表，构造时编译，之后的修改不生效
+     * @param heartbeatScheduler 心跳调度器
+     * @param ioExecutor         重连的执行器，为空时使用公共线程池
+     */
+    public DanmuClient(URI serverUri, HandlerRegistry registry,
+                       HeartbeatScheduler heartbeatScheduler, Executor ioExecutor) {
+        this(serverUri, registry, heartbeatScheduler, ioExecutor, Transport.defaultTransport(ioExecutor));
+    }
+
+    /**
+     * 构造函数，可指定传输层
+     *
+     * @param serverUri          服务器地址
+     * @param registry           命令处理函数注册表，构造时编译，之后的修改不生效
+     * @param heartbeatScheduler 心跳调度器
+     * @param ioExecutor         重连的执行器，为空时使用公共线程池
+     * @param transport          WebSocket传输层
+     */
+    public DanmuClient(URI serverUri, HandlerRegistry registry, HeartbeatScheduler heartbeatScheduler,
+                       Executor ioExecutor, Transport transport) {
         this.serverUri = serverUri;
-        this.onDanmuReceived = onDanmuReceived;
+        this.handlers = registry.compile();
+        this.batchers = registry.batchers();
+        this.heartbeatScheduler = Objects.requireNonNull(heartbeatScheduler);
+        this.ioExecutor = ioExecutor;
+        this.transport = Objects.requireNonNull(transport);
+    }
+
+    /**
+     * 设置监控埋点，需在连接前调用
+     *
+     * @param metrics 监控埋点，为空表示不采集
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics == null ? ClientMetrics.NOOP : metrics;
+        this.timed = metrics != null;
+    }
+
+    /**
+     * 获取监控埋点
+     *
+     * @return 监控埋点
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置断线重连策略
+     *
+     * @param reconnectPolicy 重连策略，为空表示不自动重连
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
     }
 
     /**
      * 连接到弹幕服务器
      *
-     * @param auth 认证信息
+     * @param auth 认证信息，重连时复用
      */
     public void connect(Auth auth) {
-        if (wsClient != null) {
+        connect(auth, null);
+    }
+
+    /**
+     * 连接到弹幕服务器
+     *
+     * @param auth          认证信息
+     * @param authRefresher 认证信息过期后重连时用于重新获取，为空时始终复用auth
+     */
+    public void connect(Auth auth, Supplier<Auth> authRefresher) {
+        if (session != null) {
             disconnect();
         }
-        // 创建WebSocket客户端实例
-        wsClient = new WebSocketClient(serverUri) {
-            /**
-             * WebSocket连接成功时调用
-             * @param handshakedata 握手数据
-             */
-            @Override
-            public void onOpen(ServerHandshake handshakedata) {
-                try {
-                    // 发送认证包
-                    JSONObject authJson = new JSONObject();
-                    authJson.put("uid", auth.uid);
-                    authJson.put("roomid", auth.roomid);
-                    authJson.put("buvid", auth.buvid);
-                    authJson.put("key", auth.key);
-                    byte[] body = authJson.toString().getBytes(StandardCharsets.UTF_8);
-                    send(new Packet(Operation.AUTH, body).pack());
-                    // 启动心跳
-                    startHeartbeat();
-                } catch (Exception e) {
-                    System.err.println("认证出错: " + e.getMessage());
-                }
-            }
+        int expected;
+        synchronized (lock) {
+            this.authRefresher = authRefresher;
+            this.closedByUser = false;
+            this.attempts = 0;
+            this.hostIndex = 0;
+            expected = ++generation;
+        }
+        open(auth, expected);
+    }
 
-            /**
-             * WebSocket连接关闭时调用
-             * @param code 关闭代码
-             * @param reason 关闭原因
-             * @param remote 是否由远程关闭
-             */
-            @Override
-            public void onClose(int code, String reason, boolean remote) {
-                stopHeartbeat();
-            }
+    /**
+     * 断开与弹幕服务器的连接，不再自动重连
+     */
+    public void disconnect() {
+        Session current;
+        synchronized (lock) {
+            closedByUser = true;
+            generation++;
+            current = session;
+            session = null;
+        }
+        HeartbeatScheduler.Heartbeat pending = reconnectTask;
+        if (pending != null) {
+            pending.cancel();
+        }
+        if (current != null) {
+            current.close();
+        }
+        authenticated = false;
+        stopHeartbeat();
+    }
 
-            /**
-             * WebSocket发生错误时调用
-             * @param ex 异常信息
-             */
-            @Override
-            public void onError(Exception ex) {
-            }
+    /**
+     * @return 当前连接是否已认证成功，正在接收弹幕
+     */
+    public boolean isConnected() {
+        return authenticated;
+    }
+
+    /**
+     * @return 累计收到的业务消息包数，可用于估算房间负载
+     */
+    public long getReceivedMessages() {
+        return receivedMessages;
+    }
+
+    /**
+     * @return 累计重连次数
+     */
+    public long getReconnectCount() {
+        return reconnectCount.sum();
+    }
+
+    /**
+     * @return 最近一次断线到重连后收到第一条消息的耗时（毫秒），尚未发生过重连时为-1
+     */
+    public long getLastTimeToFirstMessageMillis() {
+        return lastTimeToFirstMessageMillis;
+    }
 
-            /**
-             * 接收到文本消息时调用（本系统不使用）
-             * @param message 文本消息
-             */
-            @Override
-            public void onMessage(String message) {
-                // 不处理文本消息
+    /**
+     * 建立WebSocket连接，期间已断开或已重新连接时放弃
+     * 解码器由新会话在读线程收到第一条消息时重置，旧连接的读线程此时可能仍在解码
+     *
+     * @param auth     认证信息
+     * @param expected 发起连接时的连接代数
+     */
+    private void open(Auth auth, int expected) {
+        Session current;
+        URI uri;
+        synchronized (lock) {
+            if (closedByUser || generation != expected) {
+                return;
             }
+            this.auth = auth;
+            roomId = auth.roomid;
+            authenticated = false;
+            current = new Session(auth, expected);
+            session = current;
+            uri = nextServerUri(auth);
+        }
+        Transport.Connection connection = transport.connect(uri, current);
+        current.connection = connection;
+        // 建立连接期间被断开或替换，会话已不再被跟踪，由这里关闭
+        if (session != current) {
+            connection.close();
+        }
+    }
 
-            /**
-             * 接收到二进制消息时调用
-             * B站弹幕系统使用二进制消息传输数据
-             * @param bytes 二进制消息数据
-             */
-            @Override
-            public void onMessage(ByteBuffer bytes) {
-                // 处理二进制消息
-                ArrayList<Packet> packets = Packet.unPack(bytes);
-                packets.forEach(packet -> onPacket(packet));
+    /**
+     * 轮询选择服务器地址，跳过无法解析的地址，没有可用地址时使用默认地址
+     */
+    private URI nextServerUri(Auth auth) {
+        for (int i = 0; i < auth.hosts.size(); i++) {
+            String host = auth.hosts.get(hostIndex++ % auth.hosts.size());
+            try {
+                return URI.create(host);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("服务器地址非法: {}", host);
             }
-        };
-        wsClient.connect();
+        }
+        return serverUri;
     }
 
     /**
-     * 断开与弹幕服务器的连接
+     * 按退避策略安排重连
+     *
+     * @param expected 断线的连接所在的连接代数，已断开或已重新连接时不再安排
      */
-    public void disconnect() {
-        if (wsClient != null) {
-            wsClient.close();
-            wsClient = null;
+    private void scheduleReconnect(int expected) {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (closedByUser || policy == null || generation != expected) {
+            return;
         }
-        stopHeartbeat();
+        if (disconnectedAt == 0) {
+            disconnectedAt = System.nanoTime();
+        }
+        long delay = policy.delayMillis(attempts++);
+        reconnectTask = heartbeatScheduler.scheduleOnce(() -> {
+            // 获取认证信息可能阻塞，不能在时间轮线程上执行
+            if (ioExecutor == null) {
+                CompletableFuture.runAsync(() -> reconnect(expected));
+            } else {
+                ioExecutor.execute(() -> reconnect(expected));
+            }
+        }, delay);
     }
 
     /**
-     * 处理接收到的数据包
+     * 重新连接，认证信息在有效期内直接复用
+     * 获取认证信息可能阻塞，期间断开或重新连接时由open放弃本次重连
      *
-     * @param packet 数据包
+     * @param expected 安排重连时的连接代数
      */
-    private void onPacket(Packet packet) {
-        // 只处理弹幕消息包
-        if (packet.operation == Operation.SEND_SMS_REPLY) {
-            String bodyStr = new String(packet.body, StandardCharsets.UTF_8);
-            Message message;
+    private void reconnect(int expected) {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (closedByUser || policy == null || generation != expected) {
+            return;
+        }
+        Auth current = auth;
+        Supplier<Auth> refresher = authRefresher;
+        if (refresher != null && !current.isFresh(policy.tokenTtlMillis)) {
             try {
-                JSONObject json = new JSONObject(bodyStr);
-                message = new Message();
-                message.cmd = json.optString("cmd", null);
-                if (json.has("data")) {
-                    message.data = json.getJSONObject("data");
-                }
-                if (json.has("info")) {
-                    message.info = json.getJSONArray("info");
-                }
-            } catch (Exception ex) {
-                System.err.println("解析消息出错: " + ex.getMessage());
+                current = refresher.get();
+            } catch (Exception e) {
+                LOGGER.warn("房间{}重新获取认证信息出错", roomId, e);
+                scheduleReconnect(expected);
                 return;
             }
+        }
+        reconnectCount.increment();
+        metrics.onReconnect();
+        try {
+            open(current, expected);
+        } catch (RuntimeException e) {
+            // 异常会被执行器吞掉，必须在这里安排下一次重连，否则客户端不再恢复
+            LOGGER.warn("房间{}重连出错", roomId, e);
+            scheduleReconnect(expected);
+        }
+    }
 
-            // 处理弹幕消息
-            if (!Objects.isNull(message.cmd) && message.cmd.equals("DANMU_MSG") && !Objects.isNull(message.info)) {
-                try {
-                    // 解析弹幕
-                    Danmu danmu = new Danmu();
-                    JSONArray infoArray = message.info;
-                    danmu.user.uid = infoArray.getJSONArray(2).get(0).toString();
-                    danmu.user.name = infoArray.getJSONArray(2).get(1).toString();
-                    danmu.body = infoArray.getString(1);
-                    onDanmuReceived.accept(danmu);
-                } catch (Exception e) {
-                    System.err.println("解析弹幕出错: " + e.getMessage());
-                }
+    /**
+     * 将一条二进制消息送入解码和分发流程
+     * 由读线程调用，也可用于离线回放录制的消息，同一客户端不能并发调用
+     *
+     * @param frame WebSocket二进制消息
+     */
+    public void receive(ByteBuffer frame) {
+        if (!timed) {
+            decoder.decode(frame, this::onPacket);
+        } else {
+            metrics.onFrame(frame.remaining());
+            long compressed = decoder.compressedBytes(), inflated = decoder.inflatedBytes();
+            callbackNanos = 0;
+            long start = System.nanoTime();
+            decoder.decode(frame, this::onPacket);
+            metrics.onDecode(System.nanoTime() - start - callbackNanos);
+            if (decoder.compressedBytes() != compressed) {
+                metrics.onDecompress(decoder.compressedBytes() - compressed, decoder.inflatedBytes() - inflated);
             }
         }
+        // 同一条消息解码出的事件整体并入批次
+        for (Batcher<?> batcher : batchers) {
+            batcher.endOfFrame();
+        }
     }
 
     /**
-     * 启动心跳定时器
+     * 处理接收到的数据包
+     *
+     * @param packet 数据包视图
+     */
+    private void onPacket(PacketView packet) {
+        int op = packet.operationCode();
+        metrics.onPacket(op);
+        if (op == Operation.AUTH_REPLY.code) {
+            // 认证成功，重置退避
+            attempts = 0;
+            authenticated = true;
+            return;
+        }
+        if (op == Operation.HEARTBEAT_REPLY.code) {
+            unansweredHeartbeats.set(0);
+            long sentAt = heartbeatSentAt;
+            if (sentAt != 0 && timed) {
+                metrics.onHeartbeatRtt(System.nanoTime() - sentAt);
+                heartbeatSentAt = 0;
+            }
+            return;
+        }
+        // 只处理弹幕消息包
+        if (op != Operation.SEND_SMS_REPLY.code) {
+            return;
+        }
+        receivedMessages = receivedMessages + 1;
+        if (disconnectedAt != 0) {
+            // 记录断线到重连后第一条消息的耗时
+            lastTimeToFirstMessageMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - disconnectedAt);
+            disconnectedAt = 0;
+        }
+        // 直接从字节中提取命令字，无人订阅的命令不做任何解析
+        long cmd = CmdScanner.scan(packet.buffer(), packet.offset(), packet.length());
+        if (cmd < 0) {
+            return;
+        }
+        int slot = handlers.indexOf(packet.buffer(), CmdScanner.start(cmd), CmdScanner.length(cmd));
+        if (slot < 0) {
+            metrics.onUnsubscribed();
+            return;
+        }
+        String name = handlers.name(slot);
+        metrics.onMessage(name);
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            handlers.value(slot).accept(message.wrap(name, packet, roomId));
+        } catch (Exception ex) {
+            metrics.onParseFailure(name, ex);
+            LOGGER.warn("房间{}处理{}消息出错", roomId, name, ex);
+        }
+        if (timed) {
+            long elapsed = System.nanoTime() - start;
+            callbackNanos += elapsed;
+            metrics.onCallback(name, elapsed);
+        }
+    }
+
+    /**
+     * 启动心跳，首个心跳立即发送，之后由共享调度器周期发送
      */
     private void startHeartbeat() {
-        heartbeatTimer = new Timer(true);
-        heartbeatTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (wsClient != null && wsClient.isOpen()) {
-                    wsClient.send(new Packet(Operation.HEARTBEAT, new byte[0]).pack());
-                }
+        stopHeartbeat();
+        unansweredHeartbeats.set(0);
+        sendHeartbeat();
+        heartbeat = heartbeatScheduler.schedule(this::sendHeartbeat, HEARTBEAT_PERIOD_MILLIS);
+    }
+
+    /**
+     * 发送心跳包，连续多个心跳没有回复时关闭连接，由关闭回调触发重连
+     */
+    private void sendHeartbeat() {
+        Session current = session;
+        Transport.Connection connection = current == null ? null : current.connection;
+        if (connection != null && connection.isOpen()) {
+            if (unansweredHeartbeats.getAndIncrement() >= MAX_UNANSWERED_HEARTBEATS) {
+                connection.abort("心跳超时");
+                return;
+            }
+            if (timed) {
+                heartbeatSentAt = System.nanoTime();
             }
-            // 每30秒发送一次心跳
-        }, 0, 30 * 1000);
+            // 预编码的只读心跳包，每次只创建共享内容的视图
+            connection.send(PacketEncoder.heartbeat());
+        }
     }
 
     /**
-     * 停止心跳定时器
+     * 停止心跳
      */
     private void stopHeartbeat() {
-        if (heartbeatTimer != null) {
-            heartbeatTimer.cancel();
+        HeartbeatScheduler.Heartbeat current = heartbeat;
+        if (current != null) {
+            current.cancel();
+            heartbeat = null;
+        }
+    }
+
+    /**
+     * 一次连接的会话，连接事件只对当前会话生效
+     */
+    private final class Session implements Transport.Listener {
+
+        // 认证信息
+        private final Auth auth;
+
+        // 所在的连接代数
+        private final int generation;
+
+        // 传输层连接
+        volatile Transport.Connection connection;
+
+        // 是否尚未收到消息，仅读线程访问
+        private boolean first = true;
+
+        Session(Auth auth, int generation) {
+            this.auth = auth;
+            this.generation = generation;
+        }
+
+        /**
+         * 关闭连接
+         */
+        void close() {
+            Transport.Connection current = connection;
+            if (current != null) {
+                current.close();
+            }
+        }
+
+        /**
+         * WebSocket连接成功时调用
+         * @param connection 连接
+         */
+        @Override
+        public void onOpen(Transport.Connection connection) {
+            this.connection = connection;
+            // 已被替换的会话直接关闭
+            if (session != this) {
+                connection.close();
+                return;
+            }
+            try {
+                // 发送认证包，编码到线程复用的缓冲区，send返回前已复制到帧中
+                connection.send(PacketEncoder.local().encodeAuth(auth));
+                // 启动心跳
+                startHeartbeat();
+            } catch (Exception e) {
+                LOGGER.error("房间{}发送认证包出错", roomId, e);
+            }
+        }
+
+        /**
+         * 接收到二进制消息时调用
+         * B站弹幕系统使用二进制消息传输数据
+         * @param message 二进制消息数据
+         */
+        @Override
+        public void onMessage(ByteBuffer message) {
+            // 旧连接关闭前残留的消息不再进入解码器
+            if (session != this) {
+                return;
+            }
+            if (first) {
+                // 丢弃上一个连接残留的半包
+                first = false;
+                decoder.reset();
+            }
+            receive(message);
+        }
+
+        /**
+         * WebSocket连接关闭时调用
+         * @param code 关闭代码
+         * @param reason 关闭原因
+         * @param remote 是否由远程关闭
+         */
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            // 忽略已被替换的旧连接
+            if (session != this) {
+                return;
+            }
+            authenticated = false;
+            stopHeartbeat();
+            scheduleReconnect(generation);
+        }
+
+        /**
+         * WebSocket发生错误时调用，随后会触发onClose
+         * @param ex 异常信息
+         */
+        @Override
+        public void onError(Exception ex) {
+            metrics.onError(ex);
+            LOGGER.warn("房间{}连接出错: {}", roomId, ex.toString());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,238 @@
+package com.rain.danmu.client;
+
+import com.rain.danmu.metrics.ClientMetrics;
+import com.rain.danmu.model.Auth;
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 多房间弹幕客户端池
+ * 所有房间共用一个心跳调度器、一个连接执行器和一个传输层，房间可在运行时添加和移除
+ * 事件通过{@link com.rain.danmu.model.LiveEvent#roomId}区分来源房间
+ */
+public class DanmuClientPool implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(DanmuClientPool.class);
+
+    // 默认弹幕服务器地址
+    private static final URI DEFAULT_SERVER_URI = URI.create("wss://broadcastlv.chat.bilibili.com:2245/sub");
+
+    // 房间号到客户端的映射
+    private final Map<Long, DanmuClient> clients = new ConcurrentHashMap<>();
+
+    // 命令处理函数注册表
+    private final HandlerRegistry registry;
+
+    // 共享心跳调度器
+    private final HeartbeatScheduler heartbeatScheduler;
+
+    // 共享连接执行器，负责重连，使用Java-WebSocket传输层时也运行连接读循环
+    private final ExecutorService ioExecutor;
+
+    // 各房间共用的传输层，为空时使用默认传输层
+    private volatile Transport transport;
+
+    // 各房间共用的监控埋点
+    private volatile ClientMetrics metrics;
+
+    /**
+     * 构造函数，使用共享心跳调度器和守护线程执行器
+     *
+     * @param onDanmuReceived 弹幕接收回调函数
+     */
+    public DanmuClientPool(Consumer<Danmu> onDanmuReceived) {
+        this(new HandlerRegistry().on(Command.DANMU_MSG, onDanmuReceived));
+    }
+
+    /**
+     * 构造函数，使用共享心跳调度器和守护线程执行器
+     *
+     * @param registry 命令处理函数注册表，各房间共用
+     */
+    public DanmuClientPool(HandlerRegistry registry) {
+        this(registry, HeartbeatScheduler.shared(), Executors.newCachedThreadPool(daemonThreadFactory()));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param registry           命令处理函数注册表，各房间共用
+     * @param heartbeatScheduler 心跳调度器
+     * @param ioExecutor         连接执行器，关闭连接池时一并关闭
+     */
+    public DanmuClientPool(HandlerRegistry registry, HeartbeatScheduler heartbeatScheduler, ExecutorService ioExecutor) {
+        this.registry = registry;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * 创建虚拟线程模式的连接池，重连和认证信息的重新获取在虚拟线程上执行，当前JDK不支持虚拟线程时退回平台线程
+     * 心跳仍由共享时间轮线程发送；默认的NIO传输层在选择器线程上读取和回调，
+     * 只有使用Java-WebSocket传输层时，每个房间的读循环和回调才运行在各自的虚拟线程上
+     *
+     * @param registry 命令处理函数注册表，各房间共用
+     * @return 连接池
+     */
+    public static DanmuClientPool virtual(HandlerRegistry registry) {
+        return new DanmuClientPool(registry, HeartbeatScheduler.shared(), VirtualThreads.newExecutor("danmu-io-"));
+    }
+
+    /**
+     * 设置各房间共用的监控埋点，对之后添加的房间生效
+     *
+     * @param metrics 监控埋点
+     * @return 当前连接池
+     */
+    public DanmuClientPool metrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * 设置各房间共用的传输层，对之后添加的房间生效
+     *
+     * @param transport 传输层，为空时使用默认传输层
+     * @return 当前连接池
+     */
+    public DanmuClientPool transport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * 使用Cookie添加直播间，认证信息异步获取
+     *
+     * @param roomId 直播间房间号
+     * @param cookie B站登录Cookie
+     * @return 房间已存在时返回false
+     */
+    public boolean addRoom(long roomId, String cookie) {
+        DanmuClient client = register(roomId);
+        if (client == null) {
+            return false;
+        }
+        Auth.createAsync(roomId, cookie).whenComplete((auth, e) -> {
+            if (e != null) {
+                LOGGER.error("房间{}获取认证信息失败", roomId, e);
+                clients.remove(roomId, client);
+            } else if (clients.get(roomId) == client) {
+                // 获取认证信息期间房间可能已被移除
+                client.connect(auth, () -> Auth.create(roomId, cookie));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 通过认证信息提供者添加直播间，认证信息由提供者并发获取
+     * 批量添加房间时请共用同一个提供者
+     *
+     * @param roomId       直播间房间号
+     * @param authProvider 认证信息提供者
+     * @return 房间已存在时返回false
+     */
+    public boolean addRoom(long roomId, AuthProvider authProvider) {
+        DanmuClient client = register(roomId);
+        if (client == null) {
+            return false;
+        }
+        authProvider.get(roomId).whenComplete((auth, e) -> {
+            if (e != null) {
+                LOGGER.error("房间{}获取认证信息失败", roomId, e);
+                clients.remove(roomId, client);
+            } else if (clients.get(roomId) == client) {
+                // 获取认证信息期间房间可能已被移除
+                client.connect(auth, () -> authProvider.getNow(roomId));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 使用自定义认证信息添加直播间
+     *
+     * @param auth 认证信息
+     * @return 房间已存在时返回false
+     */
+    public boolean addRoom(Auth auth) {
+        DanmuClient client = register(auth.roomid);
+        if (client == null) {
+            return false;
+        }
+        client.connect(auth);
+        return true;
+    }
+
+    /**
+     * 移除直播间并断开连接
+     *
+     * @param roomId 直播间房间号
+     * @return 房间不存在时返回false
+     */
+    public boolean removeRoom(long roomId) {
+        DanmuClient client = clients.remove(roomId);
+        if (client == null) {
+            return false;
+        }
+        client.disconnect();
+        return true;
+    }
+
+    /**
+     * 获取当前所有房间号
+     *
+     * @return 房间号集合（只读视图）
+     */
+    public Set<Long> rooms() {
+        return Collections.unmodifiableSet(clients.keySet());
+    }
+
+    /**
+     * 断开所有房间并关闭连接执行器
+     */
+    @Override
+    public void close() {
+        clients.keySet().forEach(this::removeRoom);
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * 为房间创建客户端并登记
+     *
+     * @return 房间已存在时返回null
+     */
+    private DanmuClient register(long roomId) {
+        Transport current = transport;
+        DanmuClient client = new DanmuClient(DEFAULT_SERVER_URI, registry, heartbeatScheduler, ioExecutor,
+                current == null ? Transport.defaultTransport(ioExecutor) : current);
+        client.setMetrics(metrics);
+        return clients.putIfAbsent(roomId, client) == null ? client : null;
+    }
+
+    /**
+     * 守护线程工厂
+     */
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "danmu-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
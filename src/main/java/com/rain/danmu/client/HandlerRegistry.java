@@ -0,0 +1,225 @@
+package com.rain.danmu.client;
+
+import com.rain.danmu.codec.CmdTable;
+import com.rain.danmu.codec.LazyMessage;
+import com.rain.danmu.dispatch.Batcher;
+import com.rain.danmu.dispatch.Dispatcher;
+import com.rain.danmu.model.LiveEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 命令处理函数注册表
+ * 按命令字登记带类型的事件处理函数或原始消息处理函数，
+ * 客户端创建时编译为只读的分发表，每个数据包只需一次查找，同一命令的事件只解析一次
+ * 设置{@link Dispatcher}后，带类型的事件处理函数改为在分发器的消费线程上异步执行，
+ * 原始消息处理函数使用的是享元视图，始终在WebSocket读线程上同步执行
+ * 过滤器同样在读线程上执行，先于该命令的所有处理函数，未通过的消息不会被解析
+ */
+public class HandlerRegistry {
+
+    // 命令字到带类型处理函数的映射，同一命令的处理函数共享一次解析
+    private final Map<String, Map<Command<?>, List<Consumer<?>>>> typedHandlers = new LinkedHashMap<>();
+
+    // 命令字到原始消息处理函数的映射
+    private final Map<String, List<Consumer<LazyMessage>>> rawHandlers = new LinkedHashMap<>();
+
+    // 命令字到微批聚合器的映射，聚合器始终在读线程上同步接收
+    private final Map<String, Map<Command<?>, List<Consumer<?>>>> batchHandlers = new LinkedHashMap<>();
+
+    // 命令字到过滤器的映射
+    private final Map<String, List<Predicate<LazyMessage>>> filters = new LinkedHashMap<>();
+
+    // 所有微批聚合器，客户端在每条消息处理完毕后通知
+    private final Set<Batcher<?>> batchers = new LinkedHashSet<>();
+
+    // 异步分发器，为空时在读线程上同步执行回调
+    private Dispatcher dispatcher;
+
+    /**
+     * 注册带类型的事件处理函数
+     *
+     * @param command 命令
+     * @param handler 事件处理函数
+     * @return 当前注册表
+     */
+    public <T extends LiveEvent> HandlerRegistry on(Command<T> command, Consumer<? super T> handler) {
+        typedHandlers.computeIfAbsent(command.cmd, key -> new LinkedHashMap<>())
+                .computeIfAbsent(command, key -> new ArrayList<>())
+                .add(handler);
+        return this;
+    }
+
+    /**
+     * 注册微批聚合器，事件按批次投递
+     * 同一条WebSocket消息中的事件总是在同一批次中
+     *
+     * @param command 命令
+     * @param batcher 微批聚合器
+     * @return 当前注册表
+     */
+    public <T extends LiveEvent> HandlerRegistry onBatch(Command<T> command, Batcher<? super T> batcher) {
+        batchHandlers.computeIfAbsent(command.cmd, key -> new LinkedHashMap<>())
+                .computeIfAbsent(command, key -> new ArrayList<>())
+                .add(batcher);
+        batchers.add(batcher);
+        return this;
+    }
+
+    /**
+     * 注册原始消息处理函数，可处理任意命令
+     * 消息视图仅在回调期间有效
+     *
+     * @param cmd     命令字
+     * @param handler 原始消息处理函数
+     * @return 当前注册表
+     */
+    public HandlerRegistry onRaw(String cmd, Consumer<LazyMessage> handler) {
+        rawHandlers.computeIfAbsent(cmd, key -> new ArrayList<>()).add(handler);
+        return this;
+    }
+
+    /**
+     * 注册过滤器，只有通过全部过滤器的消息才会交给该命令的处理函数
+     * 过滤器在读线程上按注册顺序执行，消息视图仅在调用期间有效；过滤器本身不构成订阅
+     *
+     * @param cmd    命令字
+     * @param filter 过滤器，返回false时丢弃消息
+     * @return 当前注册表
+     */
+    public HandlerRegistry filter(String cmd, Predicate<LazyMessage> filter) {
+        filters.computeIfAbsent(cmd, key -> new ArrayList<>()).add(filter);
+        return this;
+    }
+
+    /**
+     * 设置异步分发器，带类型的事件处理函数将在分发器的消费线程上执行
+     *
+     * @param dispatcher 异步分发器，为空表示同步执行
+     * @return 当前注册表
+     */
+    public HandlerRegistry dispatchOn(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * @return 已订阅的命令字
+     */
+    public Set<String> subscribed() {
+        Set<String> cmds = new LinkedHashSet<>(typedHandlers.keySet());
+        cmds.addAll(batchHandlers.keySet());
+        cmds.addAll(rawHandlers.keySet());
+        return cmds;
+    }
+
+    /**
+     * 编译为分发表，之后对注册表的修改不影响已编译的结果
+     *
+     * @return 命令字到分发函数的只读哈希表
+     */
+    public CmdTable<Consumer<LazyMessage>> compile() {
+        Map<String, Consumer<LazyMessage>> routes = new HashMap<>();
+        for (String cmd : subscribed()) {
+            List<Consumer<LazyMessage>> steps = new ArrayList<>(rawHandlers.getOrDefault(cmd, List.of()));
+            typedHandlers.getOrDefault(cmd, Map.of()).forEach((command, handlers) -> steps.add(route(command, handlers, dispatcher)));
+            batchHandlers.getOrDefault(cmd, Map.of()).forEach((command, handlers) -> steps.add(route(command, handlers, null)));
+            routes.put(cmd, guard(filters.getOrDefault(cmd, List.of()), chain(steps)));
+        }
+        return new CmdTable<>(routes);
+    }
+
+    /**
+     * @return 所有微批聚合器
+     */
+    public Batcher<?>[] batchers() {
+        return batchers.toArray(new Batcher<?>[0]);
+    }
+
+    /**
+     * 解析一次后分发给所有处理函数
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T extends LiveEvent> Consumer<LazyMessage> route(Command<T> command, List<Consumer<?>> handlers, Dispatcher dispatcher) {
+        Consumer<? super T>[] targets = handlers.toArray(new Consumer[0]);
+        if (dispatcher != null) {
+            // 异步执行，同一房间的事件进入同一通道以保证顺序
+            return message -> {
+                T event = command.parse(message);
+                if (event != null) {
+                    for (Consumer<? super T> target : targets) {
+                        dispatcher.dispatch(message.roomId(), target, event);
+                    }
+                }
+            };
+        }
+        if (targets.length == 1) {
+            Consumer<? super T> target = targets[0];
+            return message -> {
+                T event = command.parse(message);
+                if (event != null) {
+                    target.accept(event);
+                }
+            };
+        }
+        return message -> {
+            T event = command.parse(message);
+            if (event != null) {
+                for (Consumer<? super T> target : targets) {
+                    target.accept(event);
+                }
+            }
+        };
+    }
+
+    /**
+     * 在分发函数之前执行过滤器
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Consumer<LazyMessage> guard(List<Predicate<LazyMessage>> filters, Consumer<LazyMessage> route) {
+        if (filters.isEmpty()) {
+            return route;
+        }
+        if (filters.size() == 1) {
+            Predicate<LazyMessage> filter = filters.get(0);
+            return message -> {
+                if (filter.test(message)) {
+                    route.accept(message);
+                }
+            };
+        }
+        Predicate<LazyMessage>[] array = filters.toArray(new Predicate[0]);
+        return message -> {
+            for (Predicate<LazyMessage> filter : array) {
+                if (!filter.test(message)) {
+                    return;
+                }
+            }
+            route.accept(message);
+        };
+    }
+
+    /**
+     * 串联多个分发函数
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Consumer<LazyMessage> chain(List<Consumer<LazyMessage>> steps) {
+        if (steps.size() == 1) {
+            return steps.get(0);
+        }
+        Consumer<LazyMessage>[] array = steps.toArray(new Consumer[0]);
+        return message -> {
+            for (Consumer<LazyMessage> step : array) {
+                step.accept(message);
+            }
+        };
+    }
+}
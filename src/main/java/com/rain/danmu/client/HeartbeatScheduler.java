@@ -0,0 +1,321 @@
+package com.rain.danmu.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 共享心跳调度器
+ * 基于哈希时间轮实现，所有房间的心跳任务（以及重连等一次性延迟任务）共用一个线程：
+ * 1. 每个周期的触发时间加入随机抖动，避免大量房间在同一时刻发送心跳
+ * 2. 添加和取消任务均为O(1)，取消后的任务在到期时惰性移除
+ * 任务在时间轮线程上执行，必须是非阻塞的短任务
+ */
+public final class HeartbeatScheduler implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatScheduler.class);
+
+    // 默认的共享实例
+    private static volatile HeartbeatScheduler shared;
+
+    // 每格时长（毫秒）
+    private final long tickMillis;
+
+    // 时间轮的格子
+    private final Bucket[] wheel;
+
+    // 格子数减一，用于取模
+    private final int mask;
+
+    // 抖动比例（0~1）
+    private final double jitter;
+
+    // 待加入时间轮的任务
+    private final Queue<Heartbeat> pending = new ConcurrentLinkedQueue<>();
+
+    // 时间轮线程
+    private final Thread worker;
+
+    // 是否已关闭
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // 时间轮启动时间（纳秒）
+    private final long startTime;
+
+    // 已经走过的格数，仅在时间轮线程中访问
+    private long tick;
+
+    /**
+     * 构造函数，每格100毫秒，共512格，抖动10%
+     */
+    public HeartbeatScheduler() {
+        this(100, 512, 0.1);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tickMillis 每格时长（毫秒）
+     * @param wheelSize  格子数，向上取整到2的幂
+     * @param jitter     抖动比例（0~1），每个周期在[-jitter, +jitter]范围内随机偏移
+     */
+    public HeartbeatScheduler(long tickMillis, int wheelSize, double jitter) {
+        if (tickMillis <= 0 || wheelSize <= 0 || jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1 << 1 | 1);
+        this.tickMillis = tickMillis;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.jitter = jitter;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "danmu-heartbeat");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 获取进程内共享的调度器
+     *
+     * @return 共享调度器
+     */
+    public static HeartbeatScheduler shared() {
+        HeartbeatScheduler scheduler = shared;
+        if (scheduler == null || scheduler.closed.get()) {
+            synchronized (HeartbeatScheduler.class) {
+                scheduler = shared;
+                if (scheduler == null || scheduler.closed.get()) {
+                    shared = scheduler = new HeartbeatScheduler();
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * 添加周期任务
+     * 首次执行时间为一个带抖动的周期之后
+     *
+     * @param task         任务
+     * @param periodMillis 周期（毫秒）
+     * @return 任务句柄，用于取消
+     */
+    public Heartbeat schedule(Runnable task, long periodMillis) {
+        if (closed.get()) {
+            throw new IllegalStateException("调度器已关闭");
+        }
+        Heartbeat heartbeat = new Heartbeat(task, periodMillis);
+        heartbeat.deadline = elapsedMillis() + nextDelay(periodMillis);
+        pending.add(heartbeat);
+        return heartbeat;
+    }
+
+    /**
+     * 添加一次性任务
+     *
+     * @param task        任务
+     * @param delayMillis 延迟（毫秒），不加抖动
+     * @return 任务句柄，用于取消
+     */
+    public Heartbeat scheduleOnce(Runnable task, long delayMillis) {
+        if (closed.get()) {
+            throw new IllegalStateException("调度器已关闭");
+        }
+        Heartbeat heartbeat = new Heartbeat(task, 0);
+        heartbeat.deadline = elapsedMillis() + delayMillis;
+        pending.add(heartbeat);
+        return heartbeat;
+    }
+
+    /**
+     * 关闭调度器，所有任务不再执行
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 时间轮主循环
+     */
+    private void run() {
+        while (!closed.get()) {
+            long deadline = (tick + 1) * tickMillis;
+            long sleep = deadline - elapsedMillis();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            transferPending();
+            expire(wheel[(int) (tick & mask)], tick);
+            tick++;
+        }
+    }
+
+    /**
+     * 将新任务放入对应的格子
+     */
+    private void transferPending() {
+        Heartbeat heartbeat;
+        while ((heartbeat = pending.poll()) != null) {
+            if (!heartbeat.cancelled) {
+                place(heartbeat, tick);
+            }
+        }
+    }
+
+    /**
+     * 按截止时间计算格子和剩余圈数
+     *
+     * @param base 下一个将被处理的格数
+     */
+    private void place(Heartbeat heartbeat, long base) {
+        // 已过期的任务放到下一个处理的格子立即执行
+        long target = Math.max(heartbeat.deadline / tickMillis, base);
+        heartbeat.rounds = (target - base) / wheel.length;
+        wheel[(int) (target & mask)].add(heartbeat);
+    }
+
+    /**
+     * 执行格子中到期的任务，并为周期任务安排下一次执行
+     */
+    private void expire(Bucket bucket, long currentTick) {
+        Heartbeat rescheduled = null;
+        Heartbeat heartbeat = bucket.head;
+        while (heartbeat != null) {
+            Heartbeat next = heartbeat.next;
+            if (heartbeat.cancelled) {
+                bucket.remove(heartbeat);
+            } else if (heartbeat.rounds > 0) {
+                heartbeat.rounds--;
+            } else {
+                bucket.remove(heartbeat);
+                try {
+                    heartbeat.task.run();
+                } catch (Throwable e) {
+                    LOGGER.error("心跳任务执行出错", e);
+                }
+                if (!heartbeat.cancelled && heartbeat.period > 0) {
+                    // 暂存到单链表，遍历结束后再放回时间轮
+                    heartbeat.deadline = (currentTick + 1) * tickMillis + nextDelay(heartbeat.period);
+                    heartbeat.next = rescheduled;
+                    rescheduled = heartbeat;
+                }
+            }
+            heartbeat = next;
+        }
+        while (rescheduled != null) {
+            Heartbeat next = rescheduled.next;
+            place(rescheduled, currentTick + 1);
+            rescheduled = next;
+        }
+    }
+
+    /**
+     * 计算带抖动的下一次延迟
+     */
+    private long nextDelay(long period) {
+        if (jitter == 0) {
+            return period;
+        }
+        long range = (long) (period * jitter);
+        return period + ThreadLocalRandom.current().nextLong(-range, range + 1);
+    }
+
+    /**
+     * 时间轮启动至今的毫秒数
+     */
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    /**
+     * 周期任务句柄
+     */
+    public static final class Heartbeat {
+
+        // 任务
+        private final Runnable task;
+
+        // 周期（毫秒），为0表示一次性任务
+        private final long period;
+
+        // 是否已取消
+        private volatile boolean cancelled;
+
+        // 下一次执行的时间（相对时间轮启动，毫秒）
+        private long deadline;
+
+        // 剩余圈数
+        private long rounds;
+
+        // 格子内的链表指针
+        private Heartbeat prev, next;
+
+        private Heartbeat(Runnable task, long period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        /**
+         * 取消任务
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return 任务是否已取消
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 时间轮格子（双向链表）
+     */
+    private static final class Bucket {
+
+        private Heartbeat head, tail;
+
+        void add(Heartbeat heartbeat) {
+            heartbeat.next = null;
+            heartbeat.prev = tail;
+            if (tail == null) {
+                head = tail = heartbeat;
+            } else {
+                tail.next = heartbeat;
+                tail = heartbeat;
+            }
+        }
+
+        void remove(Heartbeat heartbeat) {
+            if (heartbeat.prev != null) {
+                heartbeat.prev.next = heartbeat.next;
+            } else {
+                head = heartbeat.next;
+            }
+            if (heartbeat.next != null) {
+                heartbeat.next.prev = heartbeat.prev;
+            } else {
+                tail = heartbeat.prev;
+            }
+            heartbeat.prev = heartbeat.next = null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.rain.danmu.client;
+
+import com.rain.danmu.codec.Decompressor;
+import com.rain.danmu.codec.PacketEncoder;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * 基于Java-WebSocket的传输层
+ * 每个连接占用一个读线程和一个写线程，连接数较多时建议使用{@link NioTransport}
+ */
+public class JavaWebSocketTransport implements Transport {
+
+    // 连接读循环的执行器，为空时由WebSocket客户端自行创建线程
+    private final Executor ioExecutor;
+
+    /**
+     * 构造函数，每个连接自行创建读线程
+     */
+    public JavaWebSocketTransport() {
+        this(null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param ioExecutor 连接读循环的执行器，为空时每个连接自行创建线程
+     */
+    public JavaWebSocketTransport(Executor ioExecutor) {
+        this.ioExecutor = ioExecutor;
+    }
+
+    @Override
+    public Connection connect(URI uri, Listener listener) {
+        Client client = new Client(uri, listener);
+        // 存活检测由心跳回复完成，不启用每个连接一个线程的连接丢失检测
+        client.setConnectionLostTimeout(0);
+        if (ioExecutor == null) {
+            client.connect();
+        } else {
+            // 连接和读循环直接运行在执行器上
+            ioExecutor.execute(() -> {
+                try {
+                    client.run();
+                } finally {
+                    // 虚拟线程执行器每个连接一个线程，读循环结束后线程即退出，立即释放线程复用的解压器和编码器
+                    Decompressor.release();
+                    PacketEncoder.release();
+                }
+            });
+        }
+        return client;
+    }
+
+    /**
+     * 将WebSocket客户端事件转发给监听器
+     */
+    private static final class Client extends WebSocketClient implements Connection {
+
+        // 连接事件监听器
+        private final Listener listener;
+
+        Client(URI uri, Listener listener) {
+            super(uri);
+            this.listener = listener;
+        }
+
+        @Override
+        public void abort(String reason) {
+            closeConnection(CloseFrame.ABNORMAL_CLOSE, reason);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshakedata) {
+            listener.onOpen(this);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            // 不处理文本消息
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            listener.onMessage(bytes);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            listener.onClose(code, reason, remote);
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            listener.onError(ex);
+        }
+    }
+}
@@ -0,0 +1,1207 @@
+package com.rain.danmu.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于java.nio的WebSocket传输层
+ * 连接按轮询分配到固定数量的选择器线程，每个线程以非阻塞方式服务多个房间：
+ * 1. TCP连接、TLS握手（SSLEngine）、HTTP升级和帧收发都在选择器线程上完成，连接数不再对应线程数
+ * 2. 读取使用选择器线程共享的直接缓冲区，解密后的二进制消息不经复制直接交给监听器，只有跨读取的半帧按连接暂存
+ * 3. 发送时在调用线程完成分帧和掩码，写入连接的发送缓冲区后由选择器线程写出，不创建临时对象
+ * 监听器回调在选择器线程上执行，耗时的处理应交给{@link com.rain.danmu.dispatch.Dispatcher}等异步组件，
+ * 否则会拖慢同一线程上的其他房间；证书校验等TLS委托任务也在选择器线程上执行
+ */
+public final class NioTransport implements Transport, AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(NioTransport.class);
+
+    // 默认的共享实例
+    private static volatile NioTransport shared;
+
+    // 计算Sec-WebSocket-Accept使用的GUID
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    // 帧类型
+    private static final int OP_CONTINUATION = 0x0, OP_TEXT = 0x1, OP_BINARY = 0x2, OP_CLOSE = 0x8, OP_PING = 0x9, OP_PONG = 0xA;
+
+    // 连接状态：建立TCP连接、TLS握手、HTTP升级、已打开、已关闭
+    private static final int CONNECTING = 0, TLS = 1, UPGRADING = 2, OPEN = 3, CLOSED = 4;
+
+    // 单条消息的最大长度
+    private static final int MAX_MESSAGE_LENGTH = 16 << 20;
+
+    // HTTP升级响应头的最大长度
+    private static final int MAX_HEADER_LENGTH = 8192;
+
+    // 共享读缓冲区的初始容量
+    private static final int READ_BUFFER_CAPACITY = 64 * 1024;
+
+    // 选择器单次最长等待时间（毫秒），也是连接超时的检查周期
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    // 掩码和握手密钥的随机数来源
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // 选择器线程
+    private final Loop[] loops;
+
+    // 下一个分配连接的选择器下标
+    private final AtomicInteger next = new AtomicInteger();
+
+    // wss连接使用的TLS上下文
+    private final SSLContext sslContext;
+
+    // 从建立TCP连接到完成HTTP升级的超时时间（纳秒）
+    private final long connectTimeoutNanos;
+
+    // 是否已关闭
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 构造函数，选择器线程数为CPU核数的一半，使用JDK默认的TLS上下文，连接超时10秒
+     */
+    public NioTransport() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * 构造函数，使用JDK默认的TLS上下文，连接超时10秒
+     *
+     * @param selectors 选择器线程数
+     */
+    public NioTransport(int selectors) {
+        this(selectors, defaultSslContext(), 10_000);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param selectors            选择器线程数，消息解码和回调都在这些线程上执行
+     * @param sslContext           wss连接使用的TLS上下文
+     * @param connectTimeoutMillis 从建立TCP连接到完成HTTP升级的超时时间（毫秒）
+     */
+    public NioTransport(int selectors, SSLContext sslContext, long connectTimeoutMillis) {
+        if (selectors <= 0 || sslContext == null || connectTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.sslContext = sslContext;
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+        this.loops = new Loop[selectors];
+        ThreadFactory factory = daemonThreadFactory();
+        for (int i = 0; i < selectors; i++) {
+            loops[i] = new Loop();
+            factory.newThread(loops[i]).start();
+        }
+    }
+
+    /**
+     * 获取进程内共享的传输层
+     *
+     * @return 共享传输层
+     */
+    public static NioTransport shared() {
+        NioTransport transport = shared;
+        if (transport == null || transport.closed.get()) {
+            synchronized (NioTransport.class) {
+                transport = shared;
+                if (transport == null || transport.closed.get()) {
+                    shared = transport = new NioTransport();
+                }
+            }
+        }
+        return transport;
+    }
+
+    @Override
+    public Connection connect(URI uri, Listener listener) {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        Exception error = null;
+        if (closed.get()) {
+            error = new IllegalStateException("传输层已关闭");
+        } else if (!scheme.equals("ws") && !scheme.equals("wss")) {
+            error = new IllegalArgumentException("不支持的协议: " + uri);
+        } else if (uri.getHost() == null) {
+            error = new IllegalArgumentException("缺少主机名: " + uri);
+        }
+        if (error != null) {
+            // 按接口约定通过监听器报告，选择器线程可能已停止，改为异步回调
+            return new Failed(listener, error);
+        }
+        Loop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+        WebSocket socket = new WebSocket(loop, uri, scheme.equals("wss") ? sslContext : null, listener);
+        // 地址在调用线程上解析，避免DNS查询阻塞选择器线程
+        socket.address = new InetSocketAddress(socket.host, socket.port);
+        socket.deadline = System.nanoTime() + connectTimeoutNanos;
+        loop.execute(socket::start);
+        return socket;
+    }
+
+    /**
+     * 关闭所有选择器线程，未关闭的连接以1001关闭
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            for (Loop loop : loops) {
+                loop.running = false;
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * JDK默认的TLS上下文
+     */
+    private static SSLContext defaultSslContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("获取默认TLS上下文失败", e);
+        }
+    }
+
+    /**
+     * 选择器线程工厂，选择器线程会阻塞在select上，只使用平台线程
+     */
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "danmu-nio-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 选择器线程
+     */
+    private static final class Loop implements Runnable {
+
+        // 选择器
+        final Selector selector;
+
+        // 待在选择器线程上执行的任务
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        // 是否已请求唤醒，合并同一轮内的多次唤醒
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+        // 是否继续运行
+        volatile boolean running = true;
+
+        // 选择器线程
+        private volatile Thread thread;
+
+        // 共享的明文读缓冲区，只增不减
+        ByteBuffer app = ByteBuffer.allocateDirect(READ_BUFFER_CAPACITY);
+
+        // 共享的密文读缓冲区，首个wss连接时创建
+        private ByteBuffer netIn;
+
+        // 共享的密文写缓冲区，首个wss连接时创建
+        private ByteBuffer netOut;
+
+        // 尚未完成握手的连接数，为0时跳过超时检查
+        int handshaking;
+
+        Loop() {
+            try {
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 在选择器线程上执行任务
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * @return 当前线程是否为选择器线程
+         */
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            long lastCheck = System.nanoTime();
+            while (running) {
+                try {
+                    selector.select(this::ready, SELECT_TIMEOUT_MILLIS);
+                } catch (IOException e) {
+                    LOGGER.warn("选择器出错", e);
+                }
+                wakeupPending.set(false);
+                runTasks();
+                long now = System.nanoTime();
+                if (handshaking > 0 && now - lastCheck >= TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MILLIS)) {
+                    lastCheck = now;
+                    expire(now);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((WebSocket) key.attachment()).terminate(1001, "传输层已关闭", false);
+            }
+            // 关闭后提交的连接在start中直接关闭
+            runTasks();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.debug("关闭选择器出错", e);
+            }
+        }
+
+        /**
+         * 处理就绪的连接
+         */
+        private void ready(SelectionKey key) {
+            ((WebSocket) key.attachment()).ready(key);
+        }
+
+        /**
+         * 执行待执行的任务
+         */
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("选择器任务出错", e);
+                }
+            }
+        }
+
+        /**
+         * 关闭超时仍未完成握手的连接
+         */
+        private void expire(long now) {
+            for (SelectionKey key : selector.keys()) {
+                WebSocket socket = (WebSocket) key.attachment();
+                if (socket.state < OPEN && now - socket.deadline > 0) {
+                    socket.fail(new SocketTimeoutException("连接超时: " + socket.uri));
+                }
+            }
+        }
+
+        /**
+         * 保证明文读缓冲区容量，扩容时保留已写入的内容
+         */
+        ByteBuffer growApp(int capacity) {
+            if (app.capacity() < capacity) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(capacity, app.capacity() * 2));
+                app.flip();
+                grown.put(app);
+                app = grown;
+            }
+            return app;
+        }
+
+        /**
+         * 清空并返回密文读缓冲区
+         */
+        ByteBuffer netIn(SSLEngine engine) {
+            int capacity = engine.getSession().getPacketBufferSize();
+            if (netIn == null || netIn.capacity() < capacity) {
+                netIn = ByteBuffer.allocateDirect(capacity);
+            }
+            return netIn.clear();
+        }
+
+        /**
+         * 清空并返回密文写缓冲区
+         */
+        ByteBuffer netOut(SSLEngine engine) {
+            int capacity = engine.getSession().getPacketBufferSize();
+            if (netOut == null || netOut.capacity() < capacity) {
+                netOut = ByteBuffer.allocateDirect(capacity);
+            }
+            return netOut.clear();
+        }
+    }
+
+    /**
+     * 单个WebSocket连接
+     * 除send、close、abort外的方法都只在所属的选择器线程上调用
+     */
+    private static final class WebSocket implements Connection {
+
+        // 所属的选择器线程
+        private final Loop loop;
+
+        // 服务器地址
+        final URI uri;
+
+        // 主机名
+        final String host;
+
+        // 端口
+        final int port;
+
+        // 解析后的地址
+        InetSocketAddress address;
+
+        // 连接事件监听器
+        private final Listener listener;
+
+        // TLS引擎，ws连接为空
+        private final SSLEngine engine;
+
+        // 套接字通道
+        private SocketChannel channel;
+
+        // 选择键
+        private SelectionKey key;
+
+        // 连接状态
+        volatile int state = CONNECTING;
+
+        // 握手截止时间（纳秒）
+        long deadline;
+
+        // Sec-WebSocket-Key
+        private String secret;
+
+        // TLS握手是否已完成，等待发送升级请求
+        private boolean tlsFinished;
+
+        // 是否正在发送关闭帧，此时对端可能已断开，写出失败不再报错
+        private boolean closing;
+
+        // 跨读取暂存的未完成的帧（写模式）
+        private ByteBuffer appRest;
+
+        // 跨读取暂存的未完成的TLS记录（写模式）
+        private ByteBuffer netRest;
+
+        // 未写出的TLS密文（写模式）
+        private ByteBuffer netPending;
+
+        // 分片消息的已接收部分（写模式），为空表示没有进行中的分片消息
+        private ByteBuffer fragments;
+
+        // 分片消息的类型
+        private int fragmentOpcode;
+
+        // 未完成的帧的总长度，超过读缓冲区容量时扩容
+        private int wanted;
+
+        // 保护发送缓冲区
+        private final ReentrantLock outLock = new ReentrantLock();
+
+        // 发送缓冲区（写模式），存放已分帧和加掩码的明文
+        private ByteBuffer out = ByteBuffer.allocateDirect(256);
+
+        // 是否已提交写出任务
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+        // 写出任务
+        private final Runnable flusher = () -> {
+            flushScheduled.set(false);
+            flush();
+        };
+
+        WebSocket(Loop loop, URI uri, SSLContext sslContext, Listener listener) {
+            this.loop = loop;
+            this.uri = uri;
+            this.host = uri.getHost();
+            this.port = uri.getPort() != -1 ? uri.getPort() : sslContext != null ? 443 : 80;
+            this.listener = listener;
+            if (sslContext == null) {
+                this.engine = null;
+            } else {
+                this.engine = sslContext.createSSLEngine(host, port);
+                engine.setUseClientMode(true);
+                // 校验证书中的主机名
+                SSLParameters parameters = engine.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(parameters);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return state == OPEN;
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            if (state != OPEN) {
+                // 连接未打开时丢弃
+                data.position(data.limit());
+                return;
+            }
+            enqueue(OP_BINARY, data);
+            requestFlush();
+        }
+
+        @Override
+        public void close() {
+            if (loop.inLoop()) {
+                closeNow(1000, "");
+            } else {
+                loop.execute(() -> closeNow(1000, ""));
+            }
+        }
+
+        @Override
+        public void abort(String reason) {
+            if (loop.inLoop()) {
+                terminate(1006, reason, false);
+            } else {
+                loop.execute(() -> terminate(1006, reason, false));
+            }
+        }
+
+        /**
+         * 打开套接字并发起连接
+         */
+        void start() {
+            loop.handshaking++;
+            if (!loop.running) {
+                terminate(1001, "传输层已关闭", false);
+                return;
+            }
+            try {
+                if (address.isUnresolved()) {
+                    throw new UnknownHostException(host);
+                }
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                key = channel.register(loop.selector, 0, this);
+                if (channel.connect(address)) {
+                    connected();
+                } else {
+                    key.interestOps(SelectionKey.OP_CONNECT);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * 处理就绪事件
+         */
+        void ready(SelectionKey key) {
+            try {
+                int ops = key.readyOps();
+                if ((ops & SelectionKey.OP_CONNECT) != 0) {
+                    if (!channel.finishConnect()) {
+                        return;
+                    }
+                    connected();
+                }
+                if ((ops & SelectionKey.OP_WRITE) != 0 && state != CLOSED) {
+                    flush();
+                    // TLS握手期间写阻塞后暂存的记录，在写出后继续解密
+                    if ((ops & SelectionKey.OP_READ) == 0 && netRest != null && netRest.position() > 0 && state < OPEN) {
+                        read(false);
+                    }
+                }
+                if ((ops & SelectionKey.OP_READ) != 0 && state != CLOSED) {
+                    read(true);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * TCP连接建立后开始TLS握手或HTTP升级
+         */
+        private void connected() throws IOException {
+            key.interestOps(SelectionKey.OP_READ);
+            if (engine == null) {
+                upgrade();
+            } else {
+                state = TLS;
+                engine.beginHandshake();
+                flush();
+            }
+        }
+
+        /**
+         * 发送HTTP升级请求
+         */
+        private void upgrade() {
+            state = UPGRADING;
+            byte[] nonce = new byte[16];
+            RANDOM.nextBytes(nonce);
+            secret = Base64.getEncoder().encodeToString(nonce);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+            boolean defaultPort = port == (engine == null ? 80 : 443);
+            String request = "GET " + path + " HTTP/1.1\r\n"
+                    + "Host: " + host + (defaultPort ? "" : ":" + port) + "\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + secret + "\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n\r\n";
+            byte[] bytes = request.getBytes(StandardCharsets.ISO_8859_1);
+            outLock.lock();
+            try {
+                reserve(bytes.length).put(bytes);
+            } finally {
+                outLock.unlock();
+            }
+            flush();
+        }
+
+        /**
+         * 读取并处理数据
+         *
+         * @param fromSocket 是否从套接字读取，为false时只处理暂存的TLS记录
+         */
+        private void read(boolean fromSocket) throws IOException {
+            ByteBuffer app = loop.app.clear();
+            if (appRest != null && appRest.position() > 0) {
+                app.put(appRest.flip());
+                appRest.clear();
+            }
+            if (engine == null) {
+                if (channel.read(app) < 0) {
+                    terminate(1006, "连接被远程关闭", true);
+                    return;
+                }
+            } else {
+                ByteBuffer net = loop.netIn(engine);
+                if (netRest != null && netRest.position() > 0) {
+                    net.put(netRest.flip());
+                    netRest.clear();
+                }
+                if (fromSocket && channel.read(net) < 0) {
+                    terminate(1006, "连接被远程关闭", true);
+                    return;
+                }
+                net.flip();
+                app = unwrap(net, app);
+                if (state == CLOSED) {
+                    return;
+                }
+                if (net.hasRemaining()) {
+                    netRest = save(netRest, net);
+                }
+                if (tlsFinished && state == TLS) {
+                    upgrade();
+                }
+            }
+            app.flip();
+            consume(app);
+            if (state != CLOSED && app.hasRemaining()) {
+                appRest = save(appRest, app);
+                // 未完成的帧超过读缓冲区容量时扩容，暂存的内容已复制，直接替换
+                if (wanted > loop.app.capacity()) {
+                    loop.app = ByteBuffer.allocateDirect(Math.max(wanted, loop.app.capacity() * 2));
+                }
+            }
+        }
+
+        /**
+         * 解密TLS记录，同时推进握手
+         *
+         * @return 明文缓冲区，可能已扩容
+         */
+        private ByteBuffer unwrap(ByteBuffer net, ByteBuffer app) throws IOException {
+            while (state != CLOSED) {
+                SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+                if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    runDelegatedTasks();
+                    continue;
+                }
+                if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    flush();
+                    if (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                        // 写阻塞，等待可写后继续
+                        break;
+                    }
+                    continue;
+                }
+                if (!net.hasRemaining()) {
+                    break;
+                }
+                SSLEngineResult result = engine.unwrap(net, app);
+                if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                    tlsFinished = true;
+                }
+                switch (result.getStatus()) {
+                    case BUFFER_OVERFLOW:
+                        // 先处理已解密的帧腾出空间，仍不足时扩容
+                        app.flip();
+                        consume(app);
+                        app.compact();
+                        int capacity = engine.getSession().getApplicationBufferSize();
+                        if (app.remaining() < capacity) {
+                            app = loop.growApp(app.position() + capacity);
+                        }
+                        break;
+                    case BUFFER_UNDERFLOW:
+                        return app;
+                    case CLOSED:
+                        // 先处理close_notify之前已解密的帧，其中可能有关闭帧
+                        app.flip();
+                        consume(app);
+                        terminate(1006, "TLS连接已关闭", true);
+                        return app;
+                    default:
+                        if (result.bytesConsumed() == 0 && result.bytesProduced() == 0
+                                && result.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_TASK
+                                && result.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                            return app;
+                        }
+                }
+            }
+            return app;
+        }
+
+        /**
+         * 处理明文数据：升级响应或帧
+         */
+        private void consume(ByteBuffer app) {
+            wanted = 0;
+            if (state == UPGRADING && !handshake(app)) {
+                return;
+            }
+            while (state == OPEN) {
+                int p = app.position(), available = app.remaining();
+                if (available < 2) {
+                    return;
+                }
+                int b0 = app.get(p), b1 = app.get(p + 1);
+                int header = 2;
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    header = 4;
+                    if (available < header) {
+                        return;
+                    }
+                    length = app.getShort(p + 2) & 0xFFFF;
+                } else if (length == 127) {
+                    header = 10;
+                    if (available < header) {
+                        return;
+                    }
+                    length = app.getLong(p + 2);
+                }
+                boolean masked = (b1 & 0x80) != 0;
+                if (masked) {
+                    header += 4;
+                }
+                if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+                    closeNow(1009, "消息过大");
+                    return;
+                }
+                int total = header + (int) length;
+                if (available < total) {
+                    wanted = total;
+                    return;
+                }
+                int start = p + header, end = p + total;
+                if (masked) {
+                    // 服务器发送的帧不应加掩码，兼容处理
+                    int mask = app.getInt(start - 4);
+                    for (int i = start; i < end; i++) {
+                        app.put(i, (byte) (app.get(i) ^ mask >>> 24 - ((i - start & 3) << 3)));
+                    }
+                }
+                int limit = app.limit();
+                app.limit(end).position(start);
+                onFrame(b0, app);
+                app.limit(limit).position(end);
+            }
+        }
+
+        /**
+         * 解析升级响应
+         *
+         * @return 握手是否已完成
+         */
+        private boolean handshake(ByteBuffer app) {
+            int p = app.position(), end = -1;
+            for (int i = p; i + 3 < app.limit(); i++) {
+                if (app.get(i) == '\r' && app.get(i + 1) == '\n' && app.get(i + 2) == '\r' && app.get(i + 3) == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) {
+                if (app.remaining() > MAX_HEADER_LENGTH) {
+                    fail(new ProtocolException("握手响应过长"));
+                }
+                return false;
+            }
+            byte[] bytes = new byte[end - p];
+            app.get(bytes).position(end + 4);
+            String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+            if (!lines[0].startsWith("HTTP/1.1 101")) {
+                fail(new ProtocolException("握手失败: " + lines[0]));
+                return false;
+            }
+            String upgrade = null, accept = null;
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim();
+                if (name.equalsIgnoreCase("Upgrade")) {
+                    upgrade = lines[i].substring(colon + 1).trim();
+                } else if (name.equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                    accept = lines[i].substring(colon + 1).trim();
+                }
+            }
+            if (!"websocket".equalsIgnoreCase(upgrade) || !acceptKey(secret).equals(accept)) {
+                fail(new ProtocolException("握手响应校验失败"));
+                return false;
+            }
+            state = OPEN;
+            loop.handshaking--;
+            try {
+                listener.onOpen(this);
+            } catch (RuntimeException e) {
+                notifyError(e);
+            }
+            return state == OPEN;
+        }
+
+        /**
+         * 处理一个完整的帧
+         *
+         * @param payload 数据，位置和上限已设置为帧的数据部分
+         */
+        private void onFrame(int b0, ByteBuffer payload) {
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            switch (opcode) {
+                case OP_TEXT:
+                case OP_BINARY:
+                    if (fragments != null) {
+                        closeNow(1002, "分片消息未结束");
+                    } else if (!fin) {
+                        fragmentOpcode = opcode;
+                        fragments = append(ByteBuffer.allocate(Math.max(256, payload.remaining() * 2)), payload);
+                    } else if (opcode == OP_BINARY) {
+                        deliver(payload);
+                    }
+                    break;
+                case OP_CONTINUATION:
+                    if (fragments == null) {
+                        closeNow(1002, "没有进行中的分片消息");
+                    } else if (fragments.position() + payload.remaining() > MAX_MESSAGE_LENGTH) {
+                        closeNow(1009, "消息过大");
+                    } else {
+                        fragments = append(fragments, payload);
+                        if (fin) {
+                            ByteBuffer message = fragments.flip();
+                            fragments = null;
+                            if (fragmentOpcode == OP_BINARY) {
+                                deliver(message);
+                            }
+                        }
+                    }
+                    break;
+                case OP_PING:
+                    enqueue(OP_PONG, payload);
+                    flush();
+                    break;
+                case OP_PONG:
+                    break;
+                case OP_CLOSE:
+                    int code = payload.remaining() >= 2 ? payload.getShort() & 0xFFFF : 1005;
+                    String reason = StandardCharsets.UTF_8.decode(payload).toString();
+                    // 回复关闭帧后断开
+                    sendClose(code == 1005 ? 1000 : code, "");
+                    terminate(code, reason, true);
+                    break;
+                default:
+                    closeNow(1002, "未知的帧类型: " + opcode);
+            }
+        }
+
+        /**
+         * 将二进制消息交给监听器
+         */
+        private void deliver(ByteBuffer message) {
+            try {
+                listener.onMessage(message);
+            } catch (RuntimeException e) {
+                notifyError(e);
+            }
+        }
+
+        /**
+         * 发送关闭帧并断开连接
+         */
+        private void closeNow(int code, String reason) {
+            sendClose(code, reason);
+            terminate(code, reason, false);
+        }
+
+        /**
+         * 连接已打开时发送关闭帧和TLS的close_notify
+         */
+        private void sendClose(int code, String reason) {
+            if (state == OPEN) {
+                closing = true;
+                byte[] text = reason.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer payload = ByteBuffer.allocate(2 + text.length).putShort((short) code).put(text).flip();
+                enqueue(OP_CLOSE, payload);
+                flush();
+                if (engine != null && state != CLOSED) {
+                    // 发送close_notify
+                    engine.closeOutbound();
+                    flush();
+                }
+            }
+        }
+
+        /**
+         * 出错时关闭连接
+         */
+        void fail(Exception e) {
+            if (state == CLOSED) {
+                return;
+            }
+            notifyError(e);
+            terminate(1006, e.getMessage(), false);
+        }
+
+        /**
+         * 关闭套接字并回调监听器，只生效一次
+         */
+        void terminate(int code, String reason, boolean remote) {
+            int previous = state;
+            if (previous == CLOSED) {
+                return;
+            }
+            state = CLOSED;
+            if (previous < OPEN) {
+                loop.handshaking--;
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.debug("关闭连接出错", e);
+                }
+                channel = null;
+            }
+            appRest = netRest = netPending = fragments = null;
+            notifyClose(code, reason, remote);
+        }
+
+        /**
+         * 回调onClose
+         */
+        private void notifyClose(int code, String reason, boolean remote) {
+            try {
+                listener.onClose(code, reason, remote);
+            } catch (RuntimeException e) {
+                LOGGER.warn("关闭回调出错", e);
+            }
+        }
+
+        /**
+         * 回调onError
+         */
+        private void notifyError(Exception e) {
+            try {
+                listener.onError(e);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("错误回调出错", ex);
+            }
+        }
+
+        /**
+         * 分帧并加掩码后写入发送缓冲区，可在任意线程调用
+         */
+        private void enqueue(int opcode, ByteBuffer payload) {
+            int length = payload.remaining(), p = payload.position();
+            // 客户端发送的帧必须加掩码
+            int mask = RANDOM.nextInt();
+            outLock.lock();
+            try {
+                ByteBuffer buffer = reserve(14 + length);
+                buffer.put((byte) (0x80 | opcode));
+                if (length < 126) {
+                    buffer.put((byte) (0x80 | length));
+                } else if (length <= 0xFFFF) {
+                    buffer.put((byte) (0x80 | 126)).putShort((short) length);
+                } else {
+                    buffer.put((byte) (0x80 | 127)).putLong(length);
+                }
+                buffer.putInt(mask);
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) (payload.get(p + i) ^ mask >>> 24 - ((i & 3) << 3)));
+                }
+            } finally {
+                outLock.unlock();
+            }
+            payload.position(p + length);
+        }
+
+        /**
+         * 保证发送缓冲区剩余空间，需持有outLock
+         */
+        private ByteBuffer reserve(int length) {
+            if (out.remaining() < length) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(out.position() + length, out.capacity() * 2));
+                out.flip();
+                out = grown.put(out);
+            }
+            return out;
+        }
+
+        /**
+         * 在选择器线程上写出发送缓冲区
+         */
+        private void requestFlush() {
+            if (loop.inLoop()) {
+                flush();
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                loop.execute(flusher);
+            }
+        }
+
+        /**
+         * 写出发送缓冲区，写不完时关注可写事件
+         */
+        private void flush() {
+            if (state == CLOSED || state == CONNECTING) {
+                return;
+            }
+            boolean drained = false;
+            IOException error = null;
+            outLock.lock();
+            try {
+                drained = engine == null ? writePlain() : writeTls();
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                outLock.unlock();
+            }
+            if (error != null) {
+                if (closing) {
+                    LOGGER.debug("发送关闭帧出错", error);
+                } else {
+                    fail(error);
+                }
+            } else if (state != CLOSED) {
+                int ops = key.interestOps();
+                key.interestOps(drained ? ops & ~SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * 直接写出明文，需持有outLock
+         *
+         * @return 是否已全部写出
+         */
+        private boolean writePlain() throws IOException {
+            out.flip();
+            try {
+                channel.write(out);
+                return !out.hasRemaining();
+            } finally {
+                out.compact();
+            }
+        }
+
+        /**
+         * 加密后写出，同时推进握手，需持有outLock
+         *
+         * @return 是否已全部写出
+         */
+        private boolean writeTls() throws IOException {
+            if (netPending != null && netPending.position() > 0) {
+                netPending.flip();
+                channel.write(netPending);
+                boolean done = !netPending.hasRemaining();
+                netPending.compact();
+                if (!done) {
+                    return false;
+                }
+            }
+            out.flip();
+            try {
+                while (true) {
+                    SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+                    if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                        continue;
+                    }
+                    if (!out.hasRemaining() && status != SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                        return true;
+                    }
+                    ByteBuffer net = loop.netOut(engine);
+                    SSLEngineResult result = engine.wrap(out, net);
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                        tlsFinished = true;
+                    }
+                    if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        throw new SSLException("TLS写缓冲区不足");
+                    }
+                    net.flip();
+                    channel.write(net);
+                    if (net.hasRemaining()) {
+                        netPending = save(netPending, net);
+                        return false;
+                    }
+                    if (result.getStatus() == SSLEngineResult.Status.CLOSED
+                            || result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+                        return true;
+                    }
+                }
+            } finally {
+                out.compact();
+                if (tlsFinished && state == TLS) {
+                    // 升级请求在释放锁后的读写中发送
+                    loop.execute(this::afterTls);
+                }
+            }
+        }
+
+        /**
+         * TLS握手在写出时完成，发送升级请求
+         */
+        private void afterTls() {
+            if (state == TLS) {
+                upgrade();
+            }
+        }
+
+        /**
+         * 在当前线程执行TLS委托任务
+         */
+        private void runDelegatedTasks() {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * 计算Sec-WebSocket-Accept
+         */
+        private static String acceptKey(String secret) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1")
+                        .digest((secret + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+                return Base64.getEncoder().encodeToString(digest);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 将剩余内容追加到暂存缓冲区（写模式），容量不足时扩容
+         */
+        private static ByteBuffer save(ByteBuffer target, ByteBuffer src) {
+            if (target == null || target.remaining() < src.remaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(src.remaining() + (target == null ? 0 : target.position()),
+                        target == null ? 0 : target.capacity() * 2));
+                if (target != null) {
+                    grown.put(target.flip());
+                }
+                target = grown;
+            }
+            return target.put(src);
+        }
+
+        /**
+         * 追加分片数据，保留src的位置
+         */
+        private static ByteBuffer append(ByteBuffer target, ByteBuffer src) {
+            int p = src.position();
+            target = save(target, src);
+            src.position(p);
+            return target;
+        }
+    }
+
+    /**
+     * 未能发起的连接，构造后异步依次回调onError和onClose
+     */
+    private static final class Failed implements Connection {
+
+        Failed(Listener listener, Exception error) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    listener.onError(error);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("错误回调出错", e);
+                }
+                try {
+                    listener.onClose(1006, error.getMessage(), false);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("关闭回调出错", e);
+                }
+            });
+        }
+
+        @Override
+        public boolean isOpen() {
+            return false;
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            data.position(data.limit());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void abort(String reason) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.rain.danmu.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 断线重连策略
+ * 指数退避加随机抖动，认证信息在有效期内直接复用，超过有效期重新获取
+ */
+public class ReconnectPolicy {
+
+    /**
+     * 默认策略：1秒起，每次翻倍，最长60秒，抖动20%，认证信息有效期10分钟
+     */
+    public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(1000, 60 * 1000, 2.0, 0.2, 10 * 60 * 1000);
+
+    // 首次重连延迟（毫秒）
+    public final long initialDelayMillis;
+
+    // 最大重连延迟（毫秒）
+    public final long maxDelayMillis;
+
+    // 退避倍数
+    public final double multiplier;
+
+    // 抖动比例（0~1）
+    public final double jitter;
+
+    // 认证信息有效期（毫秒），有效期内重连不再请求新token
+    public final long tokenTtlMillis;
+
+    /**
+     * @param initialDelayMillis 首次重连延迟（毫秒）
+     * @param maxDelayMillis     最大重连延迟（毫秒）
+     * @param multiplier         退避倍数
+     * @param jitter             抖动比例（0~1）
+     * @param tokenTtlMillis     认证信息有效期（毫秒）
+     */
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter, long tokenTtlMillis) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis || multiplier < 1 || jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.tokenTtlMillis = tokenTtlMillis;
+    }
+
+    /**
+     * 计算第attempt次重连前的等待时间
+     *
+     * @param attempt 重连次数，从0开始
+     * @return 等待时间（毫秒）
+     */
+    public long delayMillis(int attempt) {
+        double delay = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, attempt));
+        if (jitter > 0) {
+            delay *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+        return (long) delay;
+    }
+}
@@ -1,14 +1,24 @@
 package com.rain.danmu.client;
 
+import com.rain.danmu.dispatch.Batcher;
+import com.rain.danmu.metrics.ClientMetrics;
 import com.rain.danmu.model.Auth;
 import com.rain.danmu.model.Danmu;
+import com.rain.danmu.util.VirtualThreads;
 
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 /**
  * 弹幕客户端模板类
+ * 断开后可再次连接；不再使用时调用{@link #close()}释放批量模式的定时任务
  */
-public class SimpleDanmuClient {
+public class SimpleDanmuClient implements AutoCloseable {
+
+    // 默认弹幕服务器地址
+    private static final URI DEFAULT_SERVER_URI = URI.create("wss://broadcastlv.chat.bilibili.com:2245/sub");
 
     // 弹幕客户端实例
     private final DanmuClient danmuClient;
@@ -16,6 +26,9 @@ public class SimpleDanmuClient {
     // 认证信息
     private Auth auth;
 
+    // 批量模式下的微批聚合器
+    private Batcher<Danmu> batcher;
+
     /**
      * 构造函数
      *
@@ -25,10 +38,76 @@ public class SimpleDanmuClient {
         this.danmuClient = new DanmuClient(onDanmuReceived);
     }
 
+    /**
+     * 构造函数
+     *
+     * @param registry 命令处理函数注册表
+     */
+    private SimpleDanmuClient(HandlerRegistry registry) {
+        this.danmuClient = new DanmuClient(registry);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param registry   命令处理函数注册表
+     * @param ioExecutor 重连的执行器
+     */
+    private SimpleDanmuClient(HandlerRegistry registry, Executor ioExecutor) {
+        this.danmuClient = new DanmuClient(DEFAULT_SERVER_URI, registry, HeartbeatScheduler.shared(), ioExecutor);
+    }
+
     public static SimpleDanmuClient with(Consumer<Danmu> onDanmuReceived) {
         return new SimpleDanmuClient(onDanmuReceived);
     }
 
+    /**
+     * 创建批量接收弹幕的客户端
+     *
+     * @param sink             批量接收回调函数
+     * @param maxSize          批次大小上限
+     * @param maxLatencyMillis 最大延迟（毫秒）
+     * @return 客户端
+     */
+    public static SimpleDanmuClient withBatch(Consumer<List<Danmu>> sink, int maxSize, long maxLatencyMillis) {
+        Batcher<Danmu> batcher = new Batcher<>(sink::accept, maxSize, maxLatencyMillis);
+        SimpleDanmuClient client = new SimpleDanmuClient(new HandlerRegistry().onBatch(Command.DANMU_MSG, batcher));
+        client.batcher = batcher;
+        return client;
+    }
+
+    /**
+     * 使用注册表创建客户端，可同时处理弹幕、礼物、醒目留言等命令
+     *
+     * @param registry 命令处理函数注册表
+     * @return 客户端
+     */
+    public static SimpleDanmuClient with(HandlerRegistry registry) {
+        return new SimpleDanmuClient(registry);
+    }
+
+    /**
+     * 使用注册表创建虚拟线程模式的客户端，重连和认证信息的重新获取在进程共享的虚拟线程执行器上运行，
+     * 当前JDK不支持虚拟线程时退回平台线程
+     * 心跳仍由共享时间轮线程发送；默认的NIO传输层在选择器线程上读取和回调，使用Java-WebSocket传输层时读循环才运行在虚拟线程上
+     *
+     * @param registry 命令处理函数注册表
+     * @return 客户端
+     */
+    public static SimpleDanmuClient virtual(HandlerRegistry registry) {
+        return new SimpleDanmuClient(registry, VirtualThreads.executor());
+    }
+
+    /**
+     * 创建虚拟线程模式的弹幕客户端
+     *
+     * @param onDanmuReceived 弹幕接收回调函数
+     * @return 客户端
+     */
+    public static SimpleDanmuClient virtual(Consumer<Danmu> onDanmuReceived) {
+        return virtual(new HandlerRegistry().on(Command.DANMU_MSG, onDanmuReceived));
+    }
+
     /**
      * 使用Cookie创建认证信息并连接到指定直播间
      *
@@ -38,13 +117,26 @@ public class SimpleDanmuClient {
     public void connect(long roomId, String cookie) {
         try {
             this.auth = Auth.create(roomId, cookie);
-            this.connect(auth);
+            // 断线重连时若认证信息过期则使用Cookie重新获取
+            this.danmuClient.connect(auth, () -> Auth.create(roomId, cookie));
         } catch (Exception e) {
             // 内部捕获异常
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 通过认证信息提供者连接到指定直播间
+     * 多个客户端共用同一个提供者时，同一房间只请求一次认证信息
+     *
+     * @param roomId       直播间房间号
+     * @param authProvider 认证信息提供者
+     */
+    public void connect(long roomId, AuthProvider authProvider) {
+        this.auth = authProvider.getNow(roomId);
+        this.danmuClient.connect(auth, () -> authProvider.getNow(roomId));
+    }
+
     /**
      * 使用自定义认证信息连接到指定直播间
      *
@@ -55,11 +147,61 @@ public class SimpleDanmuClient {
         this.danmuClient.connect(auth);
     }
 
+    /**
+     * 设置断线重连策略
+     *
+     * @param reconnectPolicy 重连策略，为空表示不自动重连
+     * @return 当前客户端
+     */
+    public SimpleDanmuClient reconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.danmuClient.setReconnectPolicy(reconnectPolicy);
+        return this;
+    }
+
+    /**
+     * 设置监控埋点，需在连接前调用
+     *
+     * @param metrics 监控埋点
+     * @return 当前客户端
+     */
+    public SimpleDanmuClient metrics(ClientMetrics metrics) {
+        this.danmuClient.setMetrics(metrics);
+        return this;
+    }
+
     /**
      * 断开与弹幕服务器的连接
      */
     public void disconnect() {
         this.danmuClient.disconnect();
+        if (batcher != null) {
+            batcher.flush();
+        }
+    }
+
+    /**
+     * 断开连接并释放资源，批量模式下停止微批聚合器的定时检查并投递剩余弹幕，之后不能再连接
+     */
+    @Override
+    public void close() {
+        this.danmuClient.disconnect();
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    /**
+     * @return 当前连接是否已认证成功，正在接收弹幕
+     */
+    public boolean isConnected() {
+        return danmuClient.isConnected();
+    }
+
+    /**
+     * @return 累计收到的业务消息包数
+     */
+    public long getReceivedMessages() {
+        return danmuClient.getReceivedMessages();
     }
 
     /**
@@ -0,0 +1,105 @@
+package com.rain.danmu.client;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * WebSocket传输层
+ * 负责建立连接、收发二进制消息，弹幕协议的编解码、心跳和重连由{@link DanmuClient}完成。内置两种实现：
+ * 1. {@link NioTransport}：基于java.nio的选择器，少量线程服务所有房间，默认使用
+ * 2. {@link JavaWebSocketTransport}：基于Java-WebSocket，每个连接一个读线程，作为备用实现
+ * 可通过系统属性danmu.transport=java-websocket切换到备用实现
+ */
+public interface Transport {
+
+    /**
+     * 异步建立连接，结果通过监听器回调
+     * 连接失败时依次回调{@link Listener#onError}和{@link Listener#onClose}，不抛出异常
+     *
+     * @param uri      服务器地址，支持ws和wss
+     * @param listener 连接事件监听器
+     * @return 连接
+     */
+    Connection connect(URI uri, Listener listener);
+
+    /**
+     * 获取默认传输层
+     *
+     * @param ioExecutor 备用实现的连接读循环执行器，为空时每个连接自行创建线程
+     * @return 系统属性danmu.transport为java-websocket时返回备用实现，否则返回进程共享的NIO传输层
+     */
+    static Transport defaultTransport(Executor ioExecutor) {
+        if ("java-websocket".equalsIgnoreCase(System.getProperty("danmu.transport"))) {
+            return new JavaWebSocketTransport(ioExecutor);
+        }
+        return NioTransport.shared();
+    }
+
+    /**
+     * WebSocket连接，所有方法都是线程安全的
+     */
+    interface Connection {
+
+        /**
+         * @return WebSocket握手是否已完成且连接未关闭
+         */
+        boolean isOpen();
+
+        /**
+         * 发送一条二进制消息
+         * 返回前已读取完data的剩余内容，调用方可以立即复用缓冲区
+         *
+         * @param data 消息内容
+         */
+        void send(ByteBuffer data);
+
+        /**
+         * 正常关闭连接
+         */
+        void close();
+
+        /**
+         * 不经过关闭握手立即断开连接，随后回调{@link Listener#onClose}
+         *
+         * @param reason 断开原因
+         */
+        void abort(String reason);
+    }
+
+    /**
+     * 连接事件监听器，同一连接的回调不会并发执行
+     */
+    interface Listener {
+
+        /**
+         * WebSocket握手完成时调用
+         *
+         * @param connection 连接
+         */
+        void onOpen(Connection connection);
+
+        /**
+         * 接收到二进制消息时调用，文本消息不会回调
+         *
+         * @param message 消息内容，仅在本次回调内有效
+         */
+        void onMessage(ByteBuffer message);
+
+        /**
+         * 连接关闭时调用，每个连接只调用一次
+         *
+         * @param code   关闭代码
+         * @param reason 关闭原因
+         * @param remote 是否由远程关闭
+         */
+        void onClose(int code, String reason, boolean remote);
+
+        /**
+         * 发生错误时调用，随后会调用onClose
+         *
+         * @param ex 异常信息
+         */
+        void onError(Exception ex);
+    }
+}
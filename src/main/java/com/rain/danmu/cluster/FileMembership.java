@@ -0,0 +1,145 @@
+package com.rain.danmu.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 基于共享目录的成员管理，目录可位于NFS等各节点都能访问的位置
+ * 每个节点一个文件（节点ID.member），首行为上报时间（毫秒），其后每行为“房间号 负载”
+ * 写入先落临时文件再原子替换，读取方不会看到写了一半的文件；上报时间取自各节点的系统时钟，
+ * 节点间的时钟偏差须远小于存活时间
+ */
+public class FileMembership implements Membership {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(FileMembership.class);
+
+    // 成员文件后缀
+    private static final String SUFFIX = ".member";
+
+    // 合法的节点ID，同时作为文件名
+    private static final Pattern NODE_ID = Pattern.compile("[A-Za-z0-9._-]+");
+
+    // 共享目录
+    private final Path dir;
+
+    // 存活时间（毫秒）
+    private final long ttlMillis;
+
+    /**
+     * 构造函数
+     *
+     * @param dir       共享目录，不存在时创建
+     * @param ttlMillis 存活时间（毫秒），应为上报间隔的数倍
+     */
+    public FileMembership(Path dir, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.dir = dir;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Map<Long, Double> loads) {
+        StringBuilder content = new StringBuilder().append(System.currentTimeMillis()).append('\n');
+        loads.forEach((roomId, load) -> content.append(roomId).append(' ').append(load).append('\n'));
+        Path target = file(nodeId);
+        Path tmp = dir.resolve(nodeId + SUFFIX + ".tmp");
+        try {
+            Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        try {
+            Files.deleteIfExists(file(nodeId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<Member> members() {
+        long now = System.currentTimeMillis();
+        List<Member> alive = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path path : files) {
+                Member member = read(path);
+                if (member != null && now - member.heartbeatMillis() <= ttlMillis) {
+                    alive.add(member);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        alive.sort(Comparator.comparing(Member::id));
+        return alive;
+    }
+
+    /**
+     * 读取成员文件
+     *
+     * @return 文件已被删除或格式错误时返回null
+     */
+    private static Member read(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // 读取期间节点离开
+            return null;
+        }
+        try {
+            long heartbeat = Long.parseLong(lines.get(0).trim());
+            Map<Long, Double> loads = new HashMap<>();
+            for (int i = 1; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                loads.put(Long.parseLong(line.substring(0, space)), Double.parseDouble(line.substring(space + 1)));
+            }
+            return new Member(name.substring(0, name.length() - SUFFIX.length()), heartbeat, loads);
+        } catch (RuntimeException e) {
+            LOGGER.warn("成员文件格式错误: {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * 节点对应的成员文件
+     */
+    private Path file(String nodeId) {
+        if (!NODE_ID.matcher(nodeId).matches()) {
+            throw new IllegalArgumentException("节点ID只能包含字母、数字、点、下划线和连字符: " + nodeId);
+        }
+        return dir.resolve(nodeId + SUFFIX);
+    }
+}
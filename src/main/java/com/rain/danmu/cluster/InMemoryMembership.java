@@ -0,0 +1,62 @@
+package com.rain.danmu.cluster;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的成员管理，多个节点共用同一个实例，用于测试和单机多分片
+ * 超过存活时间未上报的节点视为已下线
+ */
+public class InMemoryMembership implements Membership {
+
+    // 节点ID到最近一次上报的映射
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+
+    // 存活时间（毫秒）
+    private final long ttlMillis;
+
+    /**
+     * 构造函数，存活时间30秒
+     */
+    public InMemoryMembership() {
+        this(30_000);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param ttlMillis 存活时间（毫秒），应为上报间隔的数倍
+     */
+    public InMemoryMembership(long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Map<Long, Double> loads) {
+        members.put(nodeId, new Member(nodeId, System.currentTimeMillis(), loads));
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        members.remove(nodeId);
+    }
+
+    @Override
+    public List<Member> members() {
+        long now = System.currentTimeMillis();
+        List<Member> alive = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (now - member.heartbeatMillis() <= ttlMillis) {
+                alive.add(member);
+            }
+        }
+        alive.sort(Comparator.comparing(Member::id));
+        return alive;
+    }
+}
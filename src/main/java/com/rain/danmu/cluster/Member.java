@@ -0,0 +1,64 @@
+package com.rain.danmu.cluster;
+
+import java.util.Map;
+
+/**
+ * 集群成员
+ * 由成员管理器生成，之后不再修改
+ */
+public final class Member {
+
+    // 节点ID
+    private final String id;
+
+    // 最近一次上报的时间（毫秒）
+    private final long heartbeatMillis;
+
+    // 该节点正在覆盖的房间及其负载（每秒消息数）
+    private final Map<Long, Double> loads;
+
+    /**
+     * @param id              节点ID
+     * @param heartbeatMillis 最近一次上报的时间（毫秒）
+     * @param loads           正在覆盖的房间及其负载
+     */
+    public Member(String id, long heartbeatMillis, Map<Long, Double> loads) {
+        this.id = id;
+        this.heartbeatMillis = heartbeatMillis;
+        this.loads = Map.copyOf(loads);
+    }
+
+    /**
+     * @return 节点ID
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return 最近一次上报的时间（毫秒）
+     */
+    public long heartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    /**
+     * @return 正在覆盖的房间及其负载（每秒消息数），只读
+     */
+    public Map<Long, Double> loads() {
+        return loads;
+    }
+
+    /**
+     * @param roomId 房间号
+     * @return 该节点是否已连接该房间并正在接收弹幕
+     */
+    public boolean covers(long roomId) {
+        return loads.containsKey(roomId);
+    }
+
+    @Override
+    public String toString() {
+        return id + loads.keySet();
+    }
+}
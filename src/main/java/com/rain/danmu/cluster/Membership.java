@@ -0,0 +1,36 @@
+package com.rain.danmu.cluster;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群成员管理
+ * 各节点定期上报存活和所覆盖房间的负载，并读取其他存活节点的上报，据此计算房间归属。内置实现：
+ * 1. {@link InMemoryMembership}：同一进程内的多个节点，用于测试
+ * 2. {@link FileMembership}：共享目录中每个节点一个文件，适用于多个JVM
+ * 接入ZooKeeper、etcd、Redis等只需实现本接口，实现须线程安全，出错时抛出非受检异常
+ */
+public interface Membership {
+
+    /**
+     * 上报本节点存活以及正在覆盖的房间，首次调用即加入集群
+     *
+     * @param nodeId 节点ID
+     * @param loads  已连接的房间及其负载（每秒消息数）
+     */
+    void heartbeat(String nodeId, Map<Long, Double> loads);
+
+    /**
+     * 离开集群，其他节点随即接管本节点的房间
+     *
+     * @param nodeId 节点ID
+     */
+    void leave(String nodeId);
+
+    /**
+     * 获取存活的节点
+     *
+     * @return 存活节点，按节点ID升序
+     */
+    List<Member> members();
+}
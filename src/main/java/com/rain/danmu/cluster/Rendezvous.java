@@ -0,0 +1,109 @@
+package com.rain.danmu.cluster;
+
+import com.rain.danmu.util.HashUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最高随机权重（rendezvous）哈希
+ * 每个房间对每个节点计算一个得分，归属得分最高的节点。节点加入时只有新节点得分最高的房间迁移，
+ * 节点离开时只有它的房间迁移，其余房间不动
+ * {@link #assign}在此基础上限制每个节点的总权重（consistent hashing with bounded loads）：
+ * 房间按权重从大到小依次放入得分最高且未超过上限的节点，热门房间不会集中到同一节点
+ * 结果只取决于输入，各节点看到相同的成员和负载时得到相同的分配；权重为整数，避免浮点累加顺序不同导致结果不一致
+ */
+public final class Rendezvous {
+
+    private Rendezvous() {
+    }
+
+    /**
+     * 不考虑负载时房间的归属
+     *
+     * @param roomId 房间号
+     * @param nodes  节点ID
+     * @return 得分最高的节点，没有节点时返回null
+     */
+    public static String owner(long roomId, List<String> nodes) {
+        String best = null;
+        long bestScore = 0;
+        long room = HashUtil.mix(roomId);
+        for (String node : nodes) {
+            long score = HashUtil.mix(hash(node) ^ room);
+            if (best == null || score > bestScore || score == bestScore && node.compareTo(best) < 0) {
+                best = node;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 带负载上限的分配
+     *
+     * @param weights 房间号到权重的映射，权重须为正整数
+     * @param nodes   节点ID
+     * @param slack   负载上限系数（不小于1），每个节点的总权重不超过平均值的slack倍，单个房间超过上限时放入负载最低的节点
+     * @return 房间号到节点ID的映射，没有节点时为空
+     */
+    public static Map<Long, String> assign(Map<Long, Long> weights, List<String> nodes, double slack) {
+        if (slack < 1) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        Map<Long, String> owners = new HashMap<>();
+        if (nodes.isEmpty()) {
+            return owners;
+        }
+        List<String> sorted = new ArrayList<>(nodes);
+        sorted.sort(null);
+        int n = sorted.size();
+        long[] hashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(sorted.get(i));
+        }
+        long total = 0;
+        for (long weight : weights.values()) {
+            total += weight;
+        }
+        long capacity = (long) Math.ceil((double) total / n * slack);
+        // 重的房间先放，轻的房间填补剩余空间；权重相同时按房间号，保证各节点顺序一致
+        List<Map.Entry<Long, Long>> rooms = new ArrayList<>(weights.entrySet());
+        rooms.sort((a, b) -> {
+            int c = Long.compare(b.getValue(), a.getValue());
+            return c != 0 ? c : Long.compare(a.getKey(), b.getKey());
+        });
+        long[] loads = new long[n];
+        for (Map.Entry<Long, Long> entry : rooms) {
+            long room = HashUtil.mix(entry.getKey());
+            long weight = entry.getValue();
+            int best = -1, lightest = 0;
+            long bestScore = 0;
+            for (int i = 0; i < n; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+                long score = HashUtil.mix(hashes[i] ^ room);
+                if (loads[i] + weight <= capacity && (best < 0 || score > bestScore)) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                best = lightest;
+            }
+            loads[best] += weight;
+            owners.put(entry.getKey(), sorted.get(best));
+        }
+        return owners;
+    }
+
+    /**
+     * 节点ID的64位哈希（FNV-1a）
+     */
+    private static long hash(String node) {
+        return HashUtil.mix(HashUtil.fnv1a(node));
+    }
+}
@@ -0,0 +1,403 @@
+package com.rain.danmu.cluster;
+
+import com.rain.danmu.client.AuthProvider;
+import com.rain.danmu.client.SimpleDanmuClient;
+import com.rain.danmu.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * 跨JVM的房间分片
+ * 所有节点配置相同的房间集合，定期通过{@link Membership}上报存活和负载，再用{@link Rendezvous#assign}计算归属，只连接分给自己的房间：
+ * 1. 成员变化时重新分配，只有归属变化的房间迁移
+ * 2. 无缝交接：新归属节点先连接，旧节点在成员信息中看到新节点已覆盖该房间（认证成功）、
+ * 且连续两轮计算出的归属都是该节点后才断开；分配依赖各节点读到的负载，交接期间两个节点可能互认对方为归属，
+ * 要求归属连续两轮不变可避免双方在同一轮同时断开。交接期间两个节点同时在线，下游可能收到少量重复消息
+ * 3. 负载：每个房间的负载为每秒消息数的指数平滑值，按2的幂量化为权重后参与分配，小幅波动不会引起迁移
+ * 4. 关闭时先离开集群，等其他节点在离开之后的上报中覆盖了房间再断开，超过4个周期仍未接管的房间直接断开
+ */
+public class ShardedDanmuClient implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(ShardedDanmuClient.class);
+
+    // 所有分片节点共享的调度线程，成员上报可能涉及I/O
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "danmu-shard");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 负载的指数平滑系数
+    private static final double ALPHA = 0.3;
+
+    // 本节点ID
+    private final String nodeId;
+
+    // 成员管理
+    private final Membership membership;
+
+    // 为房间创建客户端
+    private final LongFunction<SimpleDanmuClient> factory;
+
+    // 认证信息提供者
+    private final AuthProvider authProvider;
+
+    // 上报和重新分配的周期（毫秒）
+    private final long periodMillis;
+
+    // 负载上限系数
+    private final double slack;
+
+    // 所有节点共同负责的房间
+    private final Set<Long> rooms = ConcurrentHashMap.newKeySet();
+
+    // 本节点正在运行的房间
+    private final Map<Long, Shard> shards = new ConcurrentHashMap<>();
+
+    // 串行化重新分配、房间变更和关闭
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 上一轮计算出的归属，只在重新分配时读写
+    private Map<Long, String> lastOwners = Map.of();
+
+    // 周期任务
+    private ScheduledFuture<?> task;
+
+    // 是否已关闭
+    private volatile boolean closed;
+
+    /**
+     * 构造函数，每5秒重新分配一次，负载上限为平均值的1.25倍
+     *
+     * @param nodeId       本节点ID，集群内唯一
+     * @param membership   成员管理
+     * @param factory      为房间创建客户端，每次接管房间时调用
+     * @param authProvider 认证信息提供者
+     */
+    public ShardedDanmuClient(String nodeId, Membership membership, LongFunction<SimpleDanmuClient> factory,
+                              AuthProvider authProvider) {
+        this(nodeId, membership, factory, authProvider, 5_000, 1.25);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param nodeId       本节点ID，集群内唯一
+     * @param membership   成员管理
+     * @param factory      为房间创建客户端，每次接管房间时调用
+     * @param authProvider 认证信息提供者
+     * @param periodMillis 上报和重新分配的周期（毫秒），应小于成员存活时间的一半
+     * @param slack        负载上限系数（不小于1），越小越均衡，成员变化时迁移的房间越多
+     */
+    public ShardedDanmuClient(String nodeId, Membership membership, LongFunction<SimpleDanmuClient> factory,
+                              AuthProvider authProvider, long periodMillis, double slack) {
+        if (nodeId == null || nodeId.isEmpty() || periodMillis <= 0 || slack < 1) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.nodeId = nodeId;
+        this.membership = membership;
+        this.factory = factory;
+        this.authProvider = authProvider;
+        this.periodMillis = periodMillis;
+        this.slack = slack;
+    }
+
+    /**
+     * 添加房间，在下次重新分配时生效
+     *
+     * @param roomIds 房间号
+     * @return 当前节点
+     */
+    public ShardedDanmuClient addRooms(Collection<Long> roomIds) {
+        rooms.addAll(roomIds);
+        return this;
+    }
+
+    /**
+     * 添加房间，在下次重新分配时生效
+     *
+     * @param roomId 房间号
+     * @return 当前节点
+     */
+    public ShardedDanmuClient addRoom(long roomId) {
+        rooms.add(roomId);
+        return this;
+    }
+
+    /**
+     * 移除房间，本节点正在运行时立即断开
+     *
+     * @param roomId 房间号
+     */
+    public void removeRoom(long roomId) {
+        lock.lock();
+        try {
+            rooms.remove(roomId);
+            stop(roomId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 加入集群并开始周期性重新分配
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("节点已关闭");
+            }
+            if (task == null) {
+                task = SCHEDULER.scheduleWithFixedDelay(this::rebalance, 0, periodMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行一轮上报和重新分配，通常由周期任务调用
+     */
+    public void rebalance() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            membership.heartbeat(nodeId, sample());
+            List<Member> members = membership.members();
+            List<String> ids = new ArrayList<>();
+            Map<Long, Double> loads = new HashMap<>();
+            for (Member member : members) {
+                ids.add(member.id());
+                // 交接期间两个节点都会上报同一房间，取较大值
+                member.loads().forEach((roomId, load) -> loads.merge(roomId, load, Math::max));
+            }
+            if (!ids.contains(nodeId)) {
+                // 成员信息尚未包含本节点的上报
+                ids.add(nodeId);
+            }
+            Map<Long, Long> weights = new HashMap<>();
+            for (long roomId : rooms) {
+                weights.put(roomId, weight(loads.getOrDefault(roomId, 0.0)));
+            }
+            Map<Long, String> owners = Rendezvous.assign(weights, ids, slack);
+            for (Map.Entry<Long, String> entry : owners.entrySet()) {
+                if (entry.getValue().equals(nodeId) && !shards.containsKey(entry.getKey())) {
+                    start(entry.getKey());
+                }
+            }
+            boolean stopped = false;
+            for (long roomId : new ArrayList<>(shards.keySet())) {
+                String owner = owners.get(roomId);
+                if (owner == null) {
+                    stop(roomId);
+                    stopped = true;
+                } else if (!owner.equals(nodeId) && owner.equals(lastOwners.get(roomId))
+                        && covered(members, owner, roomId)) {
+                    LOGGER.info("房间{}已由节点{}接管", roomId, owner);
+                    stop(roomId);
+                    stopped = true;
+                }
+            }
+            lastOwners = owners;
+            if (stopped) {
+                // 本轮开头的上报仍包含刚断开的房间，其他节点据此断开会使房间无人覆盖
+                membership.heartbeat(nodeId, loads());
+            }
+        } catch (RuntimeException e) {
+            // 成员管理不可用时保持现有房间不变
+            LOGGER.warn("重新分配出错", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 本节点正在运行的房间（只读视图）
+     */
+    public Set<Long> ownedRooms() {
+        return Collections.unmodifiableSet(shards.keySet());
+    }
+
+    /**
+     * @return 本节点已连接的房间及其负载（每秒消息数），为最近一次重新分配时的值
+     */
+    public Map<Long, Double> loads() {
+        Map<Long, Double> loads = new HashMap<>();
+        shards.forEach((roomId, shard) -> {
+            if (shard.client.isConnected()) {
+                loads.put(roomId, shard.load);
+            }
+        });
+        return loads;
+    }
+
+    /**
+     * 离开集群，等其他节点接管本节点的房间后断开
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+            membership.leave(nodeId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("离开集群出错", e);
+        } finally {
+            lock.unlock();
+        }
+        // 只信任离开之后的上报：之前的上报可能包含其他节点已断开的房间
+        long leftMillis = System.currentTimeMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodMillis * 4);
+        try {
+            while (!shards.isEmpty() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(Math.max(1, periodMillis / 2));
+                List<Member> members = membership.members();
+                for (long roomId : new ArrayList<>(shards.keySet())) {
+                    for (Member member : members) {
+                        if (!member.id().equals(nodeId) && member.heartbeatMillis() > leftMillis
+                                && member.covers(roomId)) {
+                            stop(roomId);
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.warn("等待交接出错", e);
+        }
+        for (long roomId : new ArrayList<>(shards.keySet())) {
+            stop(roomId);
+        }
+    }
+
+    /**
+     * 更新各房间的负载
+     *
+     * @return 已连接的房间及其负载
+     */
+    private Map<Long, Double> sample() {
+        long now = System.nanoTime();
+        Map<Long, Double> covering = new HashMap<>();
+        for (Map.Entry<Long, Shard> entry : shards.entrySet()) {
+            Shard shard = entry.getValue();
+            long messages = shard.client.getReceivedMessages();
+            double rate = (messages - shard.lastMessages) * 1e9 / Math.max(1, now - shard.lastNanos);
+            shard.load = shard.sampled ? shard.load + ALPHA * (rate - shard.load) : rate;
+            shard.sampled = true;
+            shard.lastMessages = messages;
+            shard.lastNanos = now;
+            if (shard.client.isConnected()) {
+                covering.put(entry.getKey(), shard.load);
+            }
+        }
+        return covering;
+    }
+
+    /**
+     * 接管房间，获取认证信息可能阻塞，在虚拟线程上连接
+     */
+    private void start(long roomId) {
+        SimpleDanmuClient client = factory.apply(roomId);
+        Shard shard = new Shard(client);
+        shards.put(roomId, shard);
+        VirtualThreads.executor().execute(() -> {
+            try {
+                // 等待连接期间房间可能已被移除
+                if (shards.get(roomId) != shard) {
+                    return;
+                }
+                client.connect(roomId, authProvider);
+                if (shards.get(roomId) != shard) {
+                    client.close();
+                }
+            } catch (RuntimeException e) {
+                // 下次重新分配时重试
+                LOGGER.warn("房间{}连接失败", roomId, e);
+                shards.remove(roomId, shard);
+                client.close();
+            }
+        });
+    }
+
+    /**
+     * 断开房间
+     */
+    private void stop(long roomId) {
+        Shard shard = shards.remove(roomId);
+        if (shard != null) {
+            // 每次接管都会新建客户端，断开后不再复用
+            shard.client.close();
+        }
+    }
+
+    /**
+     * 新归属节点是否已覆盖房间
+     */
+    private static boolean covered(List<Member> members, String owner, long roomId) {
+        for (Member member : members) {
+            if (member.id().equals(owner)) {
+                return member.covers(roomId);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 负载量化为权重：1 + 不超过负载的最大2的幂，空闲房间为1
+     */
+    private static long weight(double load) {
+        return 1 + Long.highestOneBit((long) load);
+    }
+
+    /**
+     * 本节点运行的一个房间
+     */
+    private static final class Shard {
+
+        // 房间客户端
+        final SimpleDanmuClient client;
+
+        // 上次采样时的消息数
+        long lastMessages;
+
+        // 上次采样的时间（纳秒）
+        long lastNanos = System.nanoTime();
+
+        // 平滑后的负载（每秒消息数）
+        volatile double load;
+
+        // 是否已采样过
+        boolean sampled;
+
+        Shard(SimpleDanmuClient client) {
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.rain.danmu.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 命令字扫描器
+ * 直接在UTF-8字节上定位顶层"cmd"字段的值，无需解析整个JSON：
+ * 1. 快速路径：消息以{"cmd":"开头（绝大多数消息）
+ * 2. 慢速路径：逐字节扫描，跳过字符串和嵌套结构，只匹配顶层的cmd键
+ */
+public final class CmdScanner {
+
+    // 快速路径前缀
+    private static final byte[] PREFIX = {'{', '"', 'c', 'm', 'd', '"', ':', '"'};
+
+    private CmdScanner() {
+    }
+
+    /**
+     * 扫描命令字
+     *
+     * @param buffer 数据所在缓冲区
+     * @param offset JSON起始位置（绝对位置）
+     * @param length JSON长度
+     * @return 高32位为命令字起始位置（绝对位置），低32位为命令字长度；未找到返回-1
+     */
+    public static long scan(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        if (length > PREFIX.length && startsWithPrefix(buffer, offset)) {
+            return readValue(buffer, offset + PREFIX.length, end);
+        }
+        return scanSlow(buffer, offset, end);
+    }
+
+    /**
+     * 取出扫描结果中的起始位置
+     */
+    public static int start(long result) {
+        return (int) (result >>> 32);
+    }
+
+    /**
+     * 取出扫描结果中的长度
+     */
+    public static int length(long result) {
+        return (int) result;
+    }
+
+    /**
+     * 判断是否以快速路径前缀开头
+     */
+    private static boolean startsWithPrefix(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (buffer.get(offset + i) != PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取字符串值，start指向左引号之后
+     */
+    private static long readValue(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                return (long) start << 32 | (i - start);
+            }
+            if (b == '\\') {
+                // 命令字不会包含转义字符，视为无法识别
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 逐字节扫描顶层的cmd键
+     */
+    private static long scanSlow(ByteBuffer buffer, int offset, int end) {
+        int depth = 0;
+        int i = offset;
+        while (i < end) {
+            byte b = buffer.get(i);
+            switch (b) {
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                case '"' -> {
+                    int close = skipString(buffer, i + 1, end);
+                    if (close < 0) {
+                        return -1;
+                    }
+                    if (depth == 1 && close - i - 1 == 3 && buffer.get(i + 1) == 'c'
+                            && buffer.get(i + 2) == 'm' && buffer.get(i + 3) == 'd') {
+                        int value = valueStart(buffer, close + 1, end);
+                        if (value >= 0) {
+                            return readValue(buffer, value, end);
+                        }
+                    }
+                    i = close;
+                }
+                default -> {
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过字符串，start指向左引号之后
+     *
+     * @return 右引号的位置，未闭合返回-1
+     */
+    private static int skipString(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过冒号和空白，定位字符串值的起始位置
+     *
+     * @return 左引号之后的位置，值不是字符串时返回-1
+     */
+    private static int valueStart(ByteBuffer buffer, int start, int end) {
+        boolean colon = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == ':' && !colon) {
+                colon = true;
+            } else if (b == '"' && colon) {
+                return i + 1;
+            } else if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
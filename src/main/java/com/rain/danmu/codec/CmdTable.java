@@ -0,0 +1,132 @@
+package com.rain.danmu.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 以命令字UTF-8字节为键的只读哈希表
+ * 构建后不可修改，查找时直接比较缓冲区中的字节，不创建字符串
+ *
+ * @param <V> 值类型
+ */
+public final class CmdTable<V> {
+
+    // 键的UTF-8字节
+    private final byte[][] keys;
+
+    // 键的字符串形式
+    private final String[] names;
+
+    // 值
+    private final Object[] values;
+
+    // 槽位数减一，用于取模
+    private final int mask;
+
+    /**
+     * 构造函数
+     *
+     * @param entries 命令字到值的映射
+     */
+    public CmdTable(Map<String, ? extends V> entries) {
+        // 负载因子不超过0.5
+        int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 4 - 1);
+        this.keys = new byte[capacity][];
+        this.names = new String[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        entries.forEach((name, value) -> {
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            int slot = hash(key) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            names[slot] = name;
+            values[slot] = value;
+        });
+    }
+
+    /**
+     * 查找命令字所在的槽位
+     *
+     * @param buffer 命令字所在缓冲区
+     * @param offset 命令字起始位置（绝对位置）
+     * @param length 命令字长度
+     * @return 槽位，未找到返回-1
+     */
+    public int indexOf(ByteBuffer buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (equals(key, buffer, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找命令字对应的值
+     *
+     * @return 值，未找到返回null
+     */
+    public V get(ByteBuffer buffer, int offset, int length) {
+        int slot = indexOf(buffer, offset, length);
+        return slot < 0 ? null : value(slot);
+    }
+
+    /**
+     * @return 槽位对应的命令字
+     */
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @return 槽位对应的值
+     */
+    @SuppressWarnings("unchecked")
+    public V value(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * FNV-1a哈希
+     */
+    private static int hash(byte[] key) {
+        int h = 0x811C9DC5;
+        for (byte b : key) {
+            h = (h ^ b) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * FNV-1a哈希（缓冲区版本）
+     */
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int h = 0x811C9DC5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ buffer.get(i)) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * 比较键与缓冲区中的字节
+     */
+    private static boolean equals(byte[] key, ByteBuffer buffer, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,424 @@
+package com.rain.danmu.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 弹幕字段扫描器
+ * 直接在DANMU_MSG消息的UTF-8字节上定位顶层"info"数组，提取弹幕内容info[1]和用户ID info[2][0]，
+ * 不解析JSON、不创建字符串，供过滤等需要在物化弹幕之前读取内容的场景使用
+ * 弹幕属性info[0]只记录位置，发送时间和消息ID在调用{@link #timestamp()}、{@link #scanId()}时才读取
+ * 弹幕内容反转义后复制到内部缓冲区，仅在下次扫描前有效；实例非线程安全，可反复复用
+ */
+public final class DanmuScanner {
+
+    // 反转义后的弹幕内容（UTF-8）
+    private byte[] text = new byte[256];
+
+    // 弹幕内容长度
+    private int textLength;
+
+    // 发送者用户ID
+    private long uid;
+
+    // 消息ID（id_str，UTF-8）
+    private byte[] id = new byte[64];
+
+    // 最近一次扫描的缓冲区，按需读取弹幕属性时使用
+    private ByteBuffer buffer;
+
+    // 弹幕属性info[0]的起始位置
+    private int metaStart;
+
+    // 弹幕属性info[0]的结束位置（不含）
+    private int metaEnd;
+
+    /**
+     * 扫描一条DANMU_MSG消息
+     *
+     * @param buffer 数据所在缓冲区
+     * @param offset JSON起始位置（绝对位置）
+     * @param length JSON长度
+     * @return 是否成功提取，结构不符合预期时返回false，调用方应回退到完整解析
+     */
+    public boolean scan(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        int i = findInfo(buffer, offset, end);
+        if (i < 0 || (i = skipBlank(buffer, i, end)) < 0 || buffer.get(i) != '[') {
+            return false;
+        }
+        // info[0]：弹幕属性，只记录位置
+        this.buffer = buffer;
+        if ((i = skipBlank(buffer, i + 1, end)) < 0) {
+            return false;
+        }
+        metaStart = i;
+        if ((i = skipValue(buffer, i, end)) < 0) {
+            return false;
+        }
+        metaEnd = i;
+        if ((i = expect(buffer, i, end, ',')) < 0) {
+            return false;
+        }
+        // info[1]：弹幕内容
+        if (buffer.get(i) != '"') {
+            return false;
+        }
+        int close = skipString(buffer, i + 1, end);
+        if (close < 0 || !copyText(buffer, i + 1, close) || (i = expect(buffer, close + 1, end, ',')) < 0) {
+            return false;
+        }
+        // info[2][0]：用户ID
+        if (buffer.get(i) != '[' || (i = skipBlank(buffer, i + 1, end)) < 0) {
+            return false;
+        }
+        return readLong(buffer, i, end);
+    }
+
+    /**
+     * @return 反转义后的弹幕内容（UTF-8），有效长度为{@link #textLength()}
+     */
+    public byte[] text() {
+        return text;
+    }
+
+    /**
+     * @return 弹幕内容的字节数
+     */
+    public int textLength() {
+        return textLength;
+    }
+
+    /**
+     * @return 发送者用户ID
+     */
+    public long uid() {
+        return uid;
+    }
+
+    /**
+     * 读取上次扫描的弹幕发送时间info[0][4]
+     *
+     * @return 发送时间戳（毫秒），不存在或不是整数时返回-1
+     */
+    public long timestamp() {
+        ByteBuffer buf = buffer;
+        int i = metaStart;
+        if (buf == null || buf.get(i) != '[') {
+            return -1;
+        }
+        for (int index = 0; index < 4; index++) {
+            if ((i = skipBlank(buf, i + 1, metaEnd)) < 0 || (i = skipValue(buf, i, metaEnd)) < 0
+                    || (i = skipBlank(buf, i, metaEnd)) < 0 || buf.get(i) != ',') {
+                return -1;
+            }
+        }
+        if ((i = skipBlank(buf, i + 1, metaEnd)) < 0) {
+            return -1;
+        }
+        long value = 0;
+        int start = i;
+        for (; i < metaEnd; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return i == start ? -1 : value;
+    }
+
+    /**
+     * 在上次扫描的弹幕属性中查找消息ID
+     * id_str位于info[0][15].extra，extra本身是转义后的JSON字符串，键值两侧的引号可能带反斜杠
+     *
+     * @return 消息ID的字节数，找到时内容位于{@link #id()}，未找到返回-1
+     */
+    public int scanId() {
+        ByteBuffer buf = buffer;
+        if (buf == null) {
+            return -1;
+        }
+        int end = metaEnd;
+        for (int i = metaStart + 1; i + 6 < end; i++) {
+            if (buf.get(i) != 'i' || buf.get(i + 1) != 'd' || buf.get(i + 2) != '_' || buf.get(i + 3) != 's'
+                    || buf.get(i + 4) != 't' || buf.get(i + 5) != 'r' || buf.get(i - 1) != '"') {
+                continue;
+            }
+            // 键后依次为：[\]" : [\]"
+            int j = i + 6;
+            if (j < end && buf.get(j) == '\\') {
+                j++;
+            }
+            if (j + 1 >= end || buf.get(j) != '"' || buf.get(j + 1) != ':') {
+                continue;
+            }
+            j += 2;
+            if (j < end && buf.get(j) == '\\') {
+                j++;
+            }
+            if (j >= end || buf.get(j) != '"') {
+                continue;
+            }
+            int start = ++j;
+            while (j < end && buf.get(j) != '"' && buf.get(j) != '\\') {
+                j++;
+            }
+            if (j >= end || j == start) {
+                return -1;
+            }
+            int length = j - start;
+            if (id.length < length) {
+                id = new byte[Math.max(length, id.length * 2)];
+            }
+            for (int k = 0; k < length; k++) {
+                id[k] = buf.get(start + k);
+            }
+            return length;
+        }
+        return -1;
+    }
+
+    /**
+     * @return 最近一次{@link #scanId()}找到的消息ID（UTF-8），有效长度为其返回值
+     */
+    public byte[] id() {
+        return id;
+    }
+
+    /**
+     * 定位顶层info键的值
+     *
+     * @return 冒号之后的位置，未找到返回-1
+     */
+    private static int findInfo(ByteBuffer buffer, int offset, int end) {
+        int depth = 0;
+        int i = offset;
+        while (i < end) {
+            byte b = buffer.get(i);
+            switch (b) {
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                case '"' -> {
+                    int close = skipString(buffer, i + 1, end);
+                    if (close < 0) {
+                        return -1;
+                    }
+                    if (depth == 1 && close - i - 1 == 4 && buffer.get(i + 1) == 'i' && buffer.get(i + 2) == 'n'
+                            && buffer.get(i + 3) == 'f' && buffer.get(i + 4) == 'o') {
+                        return expect(buffer, close + 1, end, ':');
+                    }
+                    i = close;
+                }
+                default -> {
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过空白后期望一个分隔符
+     *
+     * @return 分隔符及其后空白之后的位置，不匹配返回-1
+     */
+    private static int expect(ByteBuffer buffer, int start, int end, char separator) {
+        int i = skipBlank(buffer, start, end);
+        if (i < 0 || buffer.get(i) != separator) {
+            return -1;
+        }
+        return skipBlank(buffer, i + 1, end);
+    }
+
+    /**
+     * 跳过空白
+     *
+     * @return 第一个非空白字符的位置，到达末尾返回-1
+     */
+    private static int skipBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过字符串，start指向左引号之后
+     *
+     * @return 右引号的位置，未闭合返回-1
+     */
+    private static int skipString(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过任意JSON值
+     *
+     * @return 值之后的位置，结构不完整返回-1
+     */
+    private static int skipValue(ByteBuffer buffer, int start, int end) {
+        byte first = buffer.get(start);
+        if (first == '"') {
+            int close = skipString(buffer, start + 1, end);
+            return close < 0 ? -1 : close + 1;
+        }
+        if (first != '[' && first != '{') {
+            // 数字、true、false、null
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == ',' || b == ']' || b == '}' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '[' || b == '{') {
+                depth++;
+            } else if (b == ']' || b == '}') {
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (b == '"') {
+                i = skipString(buffer, i + 1, end);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 读取非负整数作为用户ID
+     */
+    private boolean readLong(ByteBuffer buffer, int start, int end) {
+        long value = 0;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+                return false;
+            }
+            value = value * 10 + (b - '0');
+        }
+        if (i == start) {
+            return false;
+        }
+        uid = value;
+        return true;
+    }
+
+    /**
+     * 将字符串内容反转义后复制到内部缓冲区，[start, close)为引号之间的原始字节
+     * 转义序列展开后不会比原文更长，按原始长度分配即可
+     */
+    private boolean copyText(ByteBuffer buffer, int start, int close) {
+        int rawLength = close - start;
+        if (text.length < rawLength) {
+            text = new byte[Math.max(rawLength, text.length * 2)];
+        }
+        byte[] out = text;
+        int n = 0;
+        for (int i = start; i < close; i++) {
+            byte b = buffer.get(i);
+            if (b != '\\') {
+                out[n++] = b;
+                continue;
+            }
+            byte escaped = buffer.get(++i);
+            switch (escaped) {
+                case '"', '\\', '/' -> out[n++] = escaped;
+                case 'b' -> out[n++] = '\b';
+                case 'f' -> out[n++] = '\f';
+                case 'n' -> out[n++] = '\n';
+                case 'r' -> out[n++] = '\r';
+                case 't' -> out[n++] = '\t';
+                case 'u' -> {
+                    int c = hex4(buffer, i + 1, close);
+                    if (c < 0) {
+                        return false;
+                    }
+                    i += 4;
+                    if (Character.isHighSurrogate((char) c) && i + 6 < close
+                            && buffer.get(i + 1) == '\\' && buffer.get(i + 2) == 'u') {
+                        int low = hex4(buffer, i + 3, close);
+                        if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                            c = Character.toCodePoint((char) c, (char) low);
+                            i += 6;
+                        }
+                    }
+                    n = encode(out, n, c);
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        textLength = n;
+        return true;
+    }
+
+    /**
+     * 读取4位十六进制数
+     *
+     * @return 数值，非法返回-1
+     */
+    private static int hex4(ByteBuffer buffer, int start, int end) {
+        if (start + 4 > end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(buffer.get(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 将码点按UTF-8写入，孤立的代理项按原样编码为3字节
+     *
+     * @return 写入后的位置
+     */
+    private static int encode(byte[] out, int n, int c) {
+        if (c < 0x80) {
+            out[n++] = (byte) c;
+        } else if (c < 0x800) {
+            out[n++] = (byte) (0xC0 | c >> 6);
+            out[n++] = (byte) (0x80 | c & 0x3F);
+        } else if (c < 0x10000) {
+            out[n++] = (byte) (0xE0 | c >> 12);
+            out[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+            out[n++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            out[n++] = (byte) (0xF0 | c >> 18);
+            out[n++] = (byte) (0x80 | c >> 12 & 0x3F);
+            out[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+            out[n++] = (byte) (0x80 | c & 0x3F);
+        }
+        return n;
+    }
+}
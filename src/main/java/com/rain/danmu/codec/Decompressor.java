@@ -0,0 +1,241 @@
+package com.rain.danmu.codec;
+
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 数据包解压器
+ * 按线程复用，每个线程持有一个Inflater和若干输出缓冲区：
+ * 1. 协议版本2：zlib，使用复用的Inflater
+ * 2. 协议版本3：brotli，使用纯Java解码器；该解码器没有重置接口，每个数据包都要新建解码状态和环形缓冲区，
+ * 因此客户端默认请求协议版本2，见{@link com.rain.danmu.model.Auth#PROTOVER_ZLIB}
+ * 输出缓冲区按观测到的压缩比预估大小，只增不减，避免反复扩容
+ * NIO传输层中线程数为选择器数；Java-WebSocket传输层（含虚拟线程模式）每个连接一个读线程，
+ * 相当于每个连接一个Inflater和一组输出缓冲区，读循环结束时通过{@link #release()}释放
+ */
+public final class Decompressor {
+
+    // 协议版本：zlib压缩
+    public static final int VERSION_ZLIB = 2;
+
+    // 协议版本：brotli压缩
+    public static final int VERSION_BROTLI = 3;
+
+    // 输出缓冲区槽位数，对应压缩包的最大嵌套层数
+    public static final int SLOTS = 2;
+
+    // 输出缓冲区最小容量
+    private static final int MIN_CAPACITY = 4096;
+
+    // 每个线程复用的解压器
+    private static final ThreadLocal<Decompressor> LOCAL = ThreadLocal.withInitial(Decompressor::new);
+
+    // 复用的zlib解压器
+    private final Inflater inflater = new Inflater();
+
+    // 复用的brotli输入流
+    private final SliceInputStream brotliInput = new SliceInputStream();
+
+    // 各槽位的输出缓冲区
+    private final byte[][] outputs = new byte[SLOTS][];
+
+    // 各槽位输出缓冲区对应的ByteBuffer包装
+    private final ByteBuffer[] outputViews = new ByteBuffer[SLOTS];
+
+    // zlib的平均压缩比（指数加权平均）
+    private double zlibRatio = 4.0;
+
+    // brotli的平均压缩比（指数加权平均）
+    private double brotliRatio = 6.0;
+
+    private Decompressor() {
+    }
+
+    /**
+     * 获取当前线程的解压器
+     *
+     * @return 解压器
+     */
+    public static Decompressor local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 释放当前线程的解压器，线程退出前调用可立即回收本地内存
+     */
+    public static void release() {
+        Decompressor decompressor = LOCAL.get();
+        LOCAL.remove();
+        decompressor.inflater.end();
+    }
+
+    /**
+     * 判断协议版本是否为压缩格式
+     *
+     * @param version 协议版本
+     * @return 是否需要解压
+     */
+    public static boolean isCompressed(int version) {
+        return version == VERSION_ZLIB || version == VERSION_BROTLI;
+    }
+
+    /**
+     * 解压数据到指定槽位的复用缓冲区
+     * 返回的缓冲区在同一线程下次使用该槽位前有效
+     *
+     * @param version 协议版本
+     * @param src     压缩数据所在缓冲区
+     * @param offset  压缩数据起始位置（绝对位置）
+     * @param length  压缩数据长度
+     * @param slot    输出槽位
+     * @return 解压后的数据，position为0，limit为数据长度
+     * @throws IOException 数据损坏或协议版本不支持
+     */
+    public ByteBuffer decompress(int version, ByteBuffer src, int offset, int length, int slot) throws IOException {
+        int size = switch (version) {
+            case VERSION_ZLIB -> inflate(src, offset, length, slot);
+            case VERSION_BROTLI -> brotli(src, offset, length, slot);
+            default -> throw new IOException("不支持的协议版本: " + version);
+        };
+        ByteBuffer out = outputViews[slot];
+        out.limit(size).position(0);
+        return out;
+    }
+
+    /**
+     * zlib解压
+     */
+    private int inflate(ByteBuffer src, int offset, int length, int slot) throws IOException {
+        inflater.reset();
+        if (src.hasArray()) {
+            inflater.setInput(src.array(), src.arrayOffset() + offset, length);
+        } else {
+            inflater.setInput(src.duplicate().limit(offset + length).position(offset));
+        }
+        byte[] out = ensure(slot, (int) (length * zlibRatio * 1.25));
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == out.length) {
+                    out = grow(slot, out.length * 2, size);
+                }
+                int n = inflater.inflate(out, size, out.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // 输入已耗尽但流未结束，数据被截断
+                    throw new IOException("zlib数据不完整");
+                }
+                size += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("zlib解压失败", e);
+        }
+        zlibRatio = observe(zlibRatio, length, size);
+        return size;
+    }
+
+    /**
+     * brotli解压
+     */
+    private int brotli(ByteBuffer src, int offset, int length, int slot) throws IOException {
+        brotliInput.reset(src, offset, length);
+        byte[] out = ensure(slot, (int) (length * brotliRatio * 1.25));
+        int size = 0;
+        // 只使用批量读取，内部单字节缓冲区取最小值；解码器不可重置，每个数据包新建
+        try (BrotliInputStream in = new BrotliInputStream(brotliInput, 1)) {
+            int n;
+            while (true) {
+                if (size == out.length) {
+                    out = grow(slot, out.length * 2, size);
+                }
+                n = in.read(out, size, out.length - size);
+                if (n < 0) {
+                    break;
+                }
+                size += n;
+            }
+        }
+        brotliRatio = observe(brotliRatio, length, size);
+        return size;
+    }
+
+    /**
+     * 更新平均压缩比
+     */
+    private static double observe(double ratio, int compressed, int raw) {
+        if (compressed == 0) {
+            return ratio;
+        }
+        return ratio * 0.875 + ((double) raw / compressed) * 0.125;
+    }
+
+    /**
+     * 确保槽位缓冲区至少有capacity大小，不保留旧数据
+     */
+    private byte[] ensure(int slot, int capacity) {
+        byte[] out = outputs[slot];
+        if (out != null && out.length >= capacity) {
+            return out;
+        }
+        return grow(slot, Math.max(MIN_CAPACITY, capacity), 0);
+    }
+
+    /**
+     * 扩容槽位缓冲区，保留前size字节
+     */
+    private byte[] grow(int slot, int capacity, int size) {
+        byte[] out = new byte[capacity];
+        if (size > 0) {
+            System.arraycopy(outputs[slot], 0, out, 0, size);
+        }
+        outputs[slot] = out;
+        outputViews[slot] = ByteBuffer.wrap(out);
+        return out;
+    }
+
+    /**
+     * 可复用的缓冲区切片输入流
+     */
+    private static final class SliceInputStream extends InputStream {
+
+        private ByteBuffer buffer;
+
+        private int position;
+
+        private int end;
+
+        void reset(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? buffer.get(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, end - position);
+            if (n <= 0) {
+                return -1;
+            }
+            buffer.get(position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return end - position;
+        }
+    }
+}
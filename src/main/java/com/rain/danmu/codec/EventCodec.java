@@ -0,0 +1,526 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.enums.EventType;
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.model.Gift;
+import com.rain.danmu.model.GuardBuy;
+import com.rain.danmu.model.InteractWord;
+import com.rain.danmu.model.LikeClick;
+import com.rain.danmu.model.LikeUpdate;
+import com.rain.danmu.model.LiveEvent;
+import com.rain.danmu.model.OnlineRankCount;
+import com.rain.danmu.model.SuperChat;
+import com.rain.danmu.model.User;
+import com.rain.danmu.model.WatchedChange;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * 事件二进制编解码器
+ * 记录格式：类型码（1字节）、版本号（1字节）、字段区长度（变长整数）、字段区
+ * 字段区按版本内固定的顺序排列：
+ * 1. 整数使用无符号变长编码（每字节7位），房间号、时间戳、用户ID通常只占3~6字节
+ * 2. 字符串为变长长度（字节数加一，0表示null）加UTF-8字节
+ * 3. 用户ID编码为 uid << 1，最低位为1时后接字符串形式的用户ID（为空表示没有用户）
+ * 新版本只能在字段区末尾追加字段：旧解码器跳过不认识的尾部字段，新解码器读到字段区末尾时使用默认值，未知类型码的记录整体跳过
+ * 编码不分配对象；解码到复用的事件对象时，昵称、礼物名等通过{@link StringCache}复用已有字符串，
+ * 用户对象通过{@link UserCache}共享，只有弹幕内容等正文会创建字符串
+ * 非线程安全，每个线程使用独立实例
+ */
+public final class EventCodec {
+
+    // 当前编码版本
+    public static final int VERSION = 1;
+
+    // 字符串缓存
+    private final StringCache strings;
+
+    // 用户缓存
+    private final UserCache users;
+
+    // 当前缓冲区
+    private ByteBuffer buffer;
+
+    // 当前读写位置（绝对位置）
+    private int position;
+
+    // 当前字段区结束位置
+    private int end;
+
+    public EventCodec() {
+        this(4096);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param cacheSize 字符串缓存的槽位数
+     */
+    public EventCodec(int cacheSize) {
+        this(cacheSize, UserCache.SHARED);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param cacheSize 字符串缓存的槽位数
+     * @param users     用户缓存，解码得到的用户对象从中获取
+     */
+    public EventCodec(int cacheSize, UserCache users) {
+        this.strings = new StringCache(cacheSize);
+        this.users = users;
+    }
+
+    /**
+     * 将事件编码到缓冲区的当前位置，并前移position
+     *
+     * @param event 事件
+     * @param out   输出缓冲区
+     * @return 写入的字节数
+     * @throws BufferOverflowException 缓冲区剩余空间不足，此时position不变
+     */
+    public int encode(LiveEvent event, ByteBuffer out) {
+        int length = encode(event, out, out.position());
+        out.position(out.position() + length);
+        return length;
+    }
+
+    /**
+     * 将事件编码到缓冲区的指定位置，不改变position
+     *
+     * @param event  事件
+     * @param out    输出缓冲区
+     * @param offset 起始位置（绝对位置）
+     * @return 写入的字节数
+     * @throws BufferOverflowException 缓冲区剩余空间不足
+     */
+    public int encode(LiveEvent event, ByteBuffer out, int offset) {
+        EventType type = EventType.of(event);
+        if (type == null) {
+            throw new IllegalArgumentException("不支持的事件类型: " + event.getClass().getName());
+        }
+        buffer = out;
+        end = out.limit();
+        // 字段区长度通常小于128，先预留1字节
+        int body = offset + 3;
+        position = body;
+        writeFields(type, event);
+        int length = position - body;
+        int lengthSize = varLongSize(length);
+        if (lengthSize > 1) {
+            ensure(lengthSize - 1);
+            for (int i = position - 1; i >= body; i--) {
+                out.put(i + lengthSize - 1, out.get(i));
+            }
+        }
+        position = offset;
+        ensure(2);
+        out.put(position++, (byte) type.code);
+        out.put(position++, (byte) VERSION);
+        writeVarLong(length);
+        buffer = null;
+        return position + length - offset;
+    }
+
+    /**
+     * 从缓冲区的当前位置解码一条记录，并将position移到记录之后
+     *
+     * @param in 输入缓冲区
+     * @return 事件，未知类型返回null
+     */
+    public LiveEvent decode(ByteBuffer in) {
+        int length = length(in, in.position());
+        LiveEvent event = decode(in, in.position(), length, null);
+        in.position(in.position() + length);
+        return event;
+    }
+
+    /**
+     * 解码指定位置的记录，不改变position
+     *
+     * @param in     输入缓冲区
+     * @param offset 记录起始位置（绝对位置）
+     * @param length 记录长度，用于越界检查
+     * @return 事件，未知类型返回null
+     */
+    public LiveEvent decode(ByteBuffer in, int offset, int length) {
+        return decode(in, offset, length, null);
+    }
+
+    /**
+     * 解码指定位置的记录到已有的事件对象，不改变position
+     *
+     * @param in     输入缓冲区
+     * @param offset 记录起始位置（绝对位置）
+     * @param length 记录长度，用于越界检查
+     * @param reuse  复用的事件对象，类型不匹配或为空时创建新对象
+     * @return 事件，未知类型返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends LiveEvent> T decode(ByteBuffer in, int offset, int length, T reuse) {
+        buffer = in;
+        position = offset;
+        end = offset + length;
+        try {
+            EventType type = EventType.parse(readByte());
+            readByte();
+            int bodyLength = (int) readVarLong();
+            if (position + bodyLength > end) {
+                throw new BufferUnderflowException();
+            }
+            end = position + bodyLength;
+            if (type == null) {
+                return null;
+            }
+            LiveEvent event = reuse != null && reuse.getClass() == type.type ? reuse : type.factory.get();
+            readFields(type, event);
+            return (T) event;
+        } finally {
+            buffer = null;
+        }
+    }
+
+    /**
+     * 计算指定位置的记录长度
+     *
+     * @param in     输入缓冲区
+     * @param offset 记录起始位置（绝对位置）
+     * @return 记录长度
+     */
+    public int length(ByteBuffer in, int offset) {
+        buffer = in;
+        position = offset + 2;
+        end = in.limit();
+        try {
+            int bodyLength = (int) readVarLong();
+            return position + bodyLength - offset;
+        } finally {
+            buffer = null;
+        }
+    }
+
+    /**
+     * 读取指定位置记录的类型
+     *
+     * @param in     输入缓冲区
+     * @param offset 记录起始位置（绝对位置）
+     * @return 类型，未知类型返回null
+     */
+    public static EventType type(ByteBuffer in, int offset) {
+        return EventType.parse(in.get(offset) & 0xFF);
+    }
+
+    /**
+     * @return 字符串缓存
+     */
+    public StringCache strings() {
+        return strings;
+    }
+
+    /**
+     * 按类型写入字段，只能在末尾追加新字段
+     */
+    private void writeFields(EventType type, LiveEvent event) {
+        writeVarLong(event.roomId);
+        switch (type) {
+            case DANMU -> {
+                Danmu danmu = (Danmu) event;
+                writeUser(danmu.user);
+                writeString(danmu.body);
+                writeVarLong(danmu.timestamp);
+            }
+            case GIFT -> {
+                Gift gift = (Gift) event;
+                writeUser(gift.user);
+                writeVarLong(gift.giftId);
+                writeString(gift.giftName);
+                writeVarLong(gift.num);
+                writeVarLong(gift.price);
+                writeString(gift.coinType);
+                writeString(gift.action);
+                writeVarLong(gift.timestamp);
+            }
+            case SUPER_CHAT -> {
+                SuperChat superChat = (SuperChat) event;
+                writeVarLong(superChat.id);
+                writeUser(superChat.user);
+                writeString(superChat.message);
+                writeVarLong(superChat.price);
+                writeVarLong(superChat.startTime);
+                writeVarLong(superChat.duration);
+            }
+            case GUARD_BUY -> {
+                GuardBuy guardBuy = (GuardBuy) event;
+                writeUser(guardBuy.user);
+                writeVarLong(guardBuy.guardLevel);
+                writeVarLong(guardBuy.num);
+                writeVarLong(guardBuy.price);
+                writeString(guardBuy.giftName);
+                writeVarLong(guardBuy.startTime);
+            }
+            case INTERACT_WORD -> {
+                InteractWord interactWord = (InteractWord) event;
+                writeUser(interactWord.user);
+                writeVarLong(interactWord.msgType);
+                writeVarLong(interactWord.timestamp);
+            }
+            case LIKE_CLICK -> {
+                LikeClick likeClick = (LikeClick) event;
+                writeUser(likeClick.user);
+                writeString(likeClick.likeText);
+            }
+            case LIKE_UPDATE -> writeVarLong(((LikeUpdate) event).clickCount);
+            case ONLINE_RANK_COUNT -> {
+                OnlineRankCount onlineRankCount = (OnlineRankCount) event;
+                writeVarLong(onlineRankCount.count);
+                writeVarLong(onlineRankCount.onlineCount);
+            }
+            case WATCHED_CHANGE -> {
+                WatchedChange watchedChange = (WatchedChange) event;
+                writeVarLong(watchedChange.num);
+                writeString(watchedChange.text);
+            }
+        }
+    }
+
+    /**
+     * 按类型读取字段，字段区结束后的字段取默认值
+     */
+    private void readFields(EventType type, LiveEvent event) {
+        event.roomId = readVarLong();
+        switch (type) {
+            case DANMU -> {
+                Danmu danmu = (Danmu) event;
+                danmu.user = readUser();
+                danmu.body = readString(false);
+                danmu.timestamp = readVarLong();
+            }
+            case GIFT -> {
+                Gift gift = (Gift) event;
+                gift.user = readUser();
+                gift.giftId = readVarLong();
+                gift.giftName = readString(true);
+                gift.num = (int) readVarLong();
+                gift.price = readVarLong();
+                gift.coinType = readString(true);
+                gift.action = readString(true);
+                gift.timestamp = readVarLong();
+            }
+            case SUPER_CHAT -> {
+                SuperChat superChat = (SuperChat) event;
+                superChat.id = readVarLong();
+                superChat.user = readUser();
+                superChat.message = readString(false);
+                superChat.price = (int) readVarLong();
+                superChat.startTime = readVarLong();
+                superChat.duration = (int) readVarLong();
+            }
+            case GUARD_BUY -> {
+                GuardBuy guardBuy = (GuardBuy) event;
+                guardBuy.user = readUser();
+                guardBuy.guardLevel = (int) readVarLong();
+                guardBuy.num = (int) readVarLong();
+                guardBuy.price = readVarLong();
+                guardBuy.giftName = readString(true);
+                guardBuy.startTime = readVarLong();
+            }
+            case INTERACT_WORD -> {
+                InteractWord interactWord = (InteractWord) event;
+                interactWord.user = readUser();
+                interactWord.msgType = (int) readVarLong();
+                interactWord.timestamp = readVarLong();
+            }
+            case LIKE_CLICK -> {
+                LikeClick likeClick = (LikeClick) event;
+                likeClick.user = readUser();
+                likeClick.likeText = readString(true);
+            }
+            case LIKE_UPDATE -> ((LikeUpdate) event).clickCount = readVarLong();
+            case ONLINE_RANK_COUNT -> {
+                OnlineRankCount onlineRankCount = (OnlineRankCount) event;
+                onlineRankCount.count = readVarLong();
+                onlineRankCount.onlineCount = readVarLong();
+            }
+            case WATCHED_CHANGE -> {
+                WatchedChange watchedChange = (WatchedChange) event;
+                watchedChange.num = readVarLong();
+                watchedChange.text = readString(true);
+            }
+        }
+    }
+
+    /**
+     * 写入用户ID和昵称
+     */
+    private void writeUser(User user) {
+        if (user == null) {
+            writeVarLong(1);
+            writeString(null);
+            writeString(null);
+            return;
+        }
+        if (user.uid >= 0) {
+            writeVarLong(user.uid << 1);
+        } else {
+            writeVarLong(1);
+            writeString(Long.toString(user.uid));
+        }
+        writeString(user.name);
+    }
+
+    /**
+     * 读取用户ID和昵称
+     */
+    private User readUser() {
+        long tag = readVarLong();
+        long uid = tag >>> 1;
+        if ((tag & 1) != 0) {
+            String text = readString(false);
+            String name = readString(true);
+            if (text == null) {
+                return null;
+            }
+            try {
+                uid = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                uid = 0;
+            }
+            return users.intern(uid, name);
+        }
+        return users.intern(uid, readString(true));
+    }
+
+    /**
+     * 写入变长整数，负数占10字节
+     */
+    private void writeVarLong(long value) {
+        ensure(varLongSize(value));
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(position++, (byte) value);
+    }
+
+    /**
+     * 写入字符串，不分配对象
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        int length = utf8Length(value);
+        writeVarLong(length + 1L);
+        ensure(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put(position++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(position++, (byte) (0xC0 | c >> 6));
+                buffer.put(position++, (byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(position++, (byte) (0xF0 | codePoint >> 18));
+                buffer.put(position++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 与String.getBytes一致，孤立的代理字符编码为'?'
+                buffer.put(position++, (byte) '?');
+            } else {
+                buffer.put(position++, (byte) (0xE0 | c >> 12));
+                buffer.put(position++, (byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * 读取一个字节，字段区结束后抛出异常
+     */
+    private int readByte() {
+        if (position >= end) {
+            throw new BufferUnderflowException();
+        }
+        return buffer.get(position++) & 0xFF;
+    }
+
+    /**
+     * 读取变长整数，字段区结束后返回0
+     */
+    private long readVarLong() {
+        if (position >= end) {
+            return 0;
+        }
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("变长整数格式错误");
+    }
+
+    /**
+     * 读取字符串，字段区结束后返回null
+     *
+     * @param cached 是否经过字符串缓存
+     */
+    private String readString(boolean cached) {
+        long length = readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (position + length > end) {
+            throw new BufferUnderflowException();
+        }
+        int offset = position;
+        position += (int) length;
+        return cached ? strings.get(buffer, offset, (int) length) : strings.decode(buffer, offset, (int) length);
+    }
+
+    /**
+     * 检查剩余空间
+     */
+    private void ensure(int size) {
+        if (position + size > end) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * 变长整数占用的字节数
+     */
+    private static int varLongSize(long value) {
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    /**
+     * 字符串的UTF-8字节数
+     */
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,134 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.model.Message;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 延迟解析的消息视图（享元）
+ * 命令字在扫描阶段已确定，JSON只在首次访问内容时解析一次
+ * 同一个实例会被反复复用，仅在回调期间有效
+ */
+public final class LazyMessage {
+
+    // 消息命令类型
+    private String cmd;
+
+    // 消息体所在的数据包视图
+    private PacketView packet;
+
+    // 消息所在的直播间房间号
+    private long roomId;
+
+    // 已解析的JSON，未解析时为空
+    private JSONObject json;
+
+    // 弹幕字段扫描器，首次扫描时创建，随消息视图复用
+    private DanmuScanner scanner;
+
+    // 本条消息的扫描结果：0未扫描，1成功，-1格式无法识别
+    private int scanned;
+
+    /**
+     * 重新指向新的消息
+     */
+    public LazyMessage wrap(String cmd, PacketView packet, long roomId) {
+        this.cmd = cmd;
+        this.packet = packet;
+        this.roomId = roomId;
+        this.json = null;
+        this.scanned = 0;
+        return this;
+    }
+
+    /**
+     * @return 消息命令类型
+     */
+    public String cmd() {
+        return cmd;
+    }
+
+    /**
+     * @return 消息所在的直播间房间号
+     */
+    public long roomId() {
+        return roomId;
+    }
+
+    /**
+     * @return 消息体所在缓冲区
+     */
+    public ByteBuffer buffer() {
+        return packet.buffer();
+    }
+
+    /**
+     * @return 消息体起始位置（绝对位置）
+     */
+    public int offset() {
+        return packet.offset();
+    }
+
+    /**
+     * @return 消息体长度
+     */
+    public int length() {
+        return packet.length();
+    }
+
+    /**
+     * 解析完整的JSON，结果在本次回调内缓存
+     *
+     * @return JSON对象
+     */
+    public JSONObject json() {
+        if (json == null) {
+            json = new JSONObject(packet.bodyAsString());
+        }
+        return json;
+    }
+
+    /**
+     * 按DANMU_MSG格式扫描消息体，结果在本次回调内缓存，多个过滤器共用一次扫描
+     *
+     * @return 扫描器，格式无法识别时返回null，此时应退回{@link #info()}
+     */
+    public DanmuScanner danmu() {
+        if (scanned == 0) {
+            if (scanner == null) {
+                scanner = new DanmuScanner();
+            }
+            scanned = scanner.scan(buffer(), offset(), length()) ? 1 : -1;
+        }
+        return scanned > 0 ? scanner : null;
+    }
+
+    /**
+     * @return 消息数据部分，不存在时返回null
+     */
+    public JSONObject data() {
+        return json().optJSONObject("data");
+    }
+
+    /**
+     * @return 消息信息部分，不存在时返回null
+     */
+    public JSONArray info() {
+        return json().optJSONArray("info");
+    }
+
+    /**
+     * 物化为独立的消息对象
+     *
+     * @return 消息
+     */
+    public Message toMessage() {
+        Message message = new Message();
+        message.cmd = cmd;
+        message.data = data();
+        message.info = info();
+        return message;
+    }
+}
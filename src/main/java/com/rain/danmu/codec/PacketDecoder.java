@@ -0,0 +1,163 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.model.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 流式数据包解码器
+ * 以回调方式逐个输出数据包视图，不为每个数据包分配数组或列表：
+ * 1. 数据体以偏移量/长度的形式直接指向输入缓冲区或内部复用的缓冲区
+ * 2. 跨越多条WebSocket消息的半包会暂存下来，待数据到齐后继续解析
+ * 3. 压缩包（协议版本2/3）由当前线程的{@link Decompressor}解压到复用的缓冲区后原地解析
+ * 非线程安全，每个连接独占一个实例
+ */
+public final class PacketDecoder {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(PacketDecoder.class);
+
+    // 单个数据包的最大长度，超过视为数据损坏
+    public static final int MAX_PACKET_LENGTH = 16 * 1024 * 1024;
+
+    // 复用的数据包视图
+    private final PacketView view = new PacketView();
+
+    // 半包暂存区（写模式，position即已暂存的字节数）
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+
+    // 累计解压前的字节数
+    private long compressedBytes;
+
+    // 累计解压后的字节数
+    private long inflatedBytes;
+
+    /**
+     * 解码一条WebSocket消息
+     * 不完整的尾部数据会被暂存，与下一条消息拼接后继续解析
+     *
+     * @param frame   消息数据（从position读到limit）
+     * @param visitor 数据包回调
+     */
+    public void decode(ByteBuffer frame, PacketVisitor visitor) {
+        if (pending.position() == 0) {
+            // 没有半包，直接在输入缓冲区上解析
+            int consumed = decodePackets(frame, frame.position(), frame.limit(), visitor, 0);
+            int rest = frame.limit() - consumed;
+            if (rest > 0) {
+                ensurePending(rest);
+                pending.put(frame.duplicate().position(consumed));
+            }
+            return;
+        }
+        // 拼接到半包之后再解析
+        ensurePending(frame.remaining());
+        pending.put(frame.duplicate());
+        int end = pending.position();
+        int consumed = decodePackets(pending, 0, end, visitor, 0);
+        // 将未消费的数据移动到暂存区开头
+        pending.limit(end).position(consumed);
+        pending.compact();
+    }
+
+    /**
+     * 丢弃暂存的半包数据，重新连接前调用
+     */
+    public void reset() {
+        pending.clear();
+    }
+
+    /**
+     * @return 累计解压前的字节数
+     */
+    public long compressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return 累计解压后的字节数
+     */
+    public long inflatedBytes() {
+        return inflatedBytes;
+    }
+
+    /**
+     * 解析[start, end)区间内的完整数据包
+     *
+     * @return 已消费到的位置（绝对位置）
+     */
+    private int decodePackets(ByteBuffer buffer, int start, int end, PacketVisitor visitor, int depth) {
+        int offset = start;
+        while (end - offset >= Packet.HEADER_LENGTH) {
+            // 包长度和头部长度
+            int packetLen = buffer.getInt(offset);
+            int headerLen = buffer.getShort(offset + 4) & 0xFFFF;
+            if (headerLen < Packet.HEADER_LENGTH || packetLen < headerLen || packetLen > MAX_PACKET_LENGTH) {
+                // 数据损坏，无法再对齐到下一个包，丢弃剩余数据
+                LOGGER.warn("数据包头部非法, packetLen={}, headerLen={}", packetLen, headerLen);
+                return end;
+            }
+            if (end - offset < packetLen) {
+                // 半包，等待后续数据
+                break;
+            }
+            // 协议版本（偏移量6处的2字节）
+            int ver = buffer.getShort(offset + 6) & 0xFFFF;
+            // 操作码（偏移量8处的4字节）
+            int op = buffer.getInt(offset + 8);
+            // 序列号（偏移量12处的4字节）
+            int seq = buffer.getInt(offset + 12);
+            int bodyOffset = offset + headerLen;
+            int bodyLen = packetLen - headerLen;
+            if (Decompressor.isCompressed(ver)) {
+                decompressAndDecode(ver, buffer, bodyOffset, bodyLen, visitor, depth);
+            } else {
+                visitor.visit(view.wrap(buffer, bodyOffset, bodyLen, ver, op, seq));
+            }
+            offset += packetLen;
+        }
+        return offset;
+    }
+
+    /**
+     * 解压压缩包并解析其中的数据包
+     */
+    private void decompressAndDecode(int version, ByteBuffer buffer, int offset, int length, PacketVisitor visitor, int depth) {
+        if (depth >= Decompressor.SLOTS) {
+            LOGGER.warn("压缩包嵌套层数过深，已丢弃");
+            return;
+        }
+        ByteBuffer inflated;
+        try {
+            // 每层嵌套使用独立的槽位，内层解压不会覆盖外层数据
+            inflated = Decompressor.local().decompress(version, buffer, offset, length, depth);
+        } catch (IOException e) {
+            LOGGER.error("解压失败", e);
+            return;
+        }
+        int size = inflated.limit();
+        compressedBytes += length;
+        inflatedBytes += size;
+        int consumed = decodePackets(inflated, 0, size, visitor, depth + 1);
+        if (consumed < size) {
+            LOGGER.warn("压缩包内存在不完整的数据包，已丢弃{}字节", size - consumed);
+        }
+    }
+
+    /**
+     * 确保半包暂存区还能容纳additional字节
+     */
+    private void ensurePending(int additional) {
+        if (pending.remaining() >= additional) {
+            return;
+        }
+        int capacity = Math.max(pending.capacity() * 2, pending.position() + additional);
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        pending.flip();
+        bigger.put(pending);
+        pending = bigger;
+    }
+}
@@ -0,0 +1,205 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.enums.Operation;
+import com.rain.danmu.model.Auth;
+import com.rain.danmu.model.Packet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 数据包编码器
+ * 1. 内容固定的数据包（心跳）启动时编码一次，保存为只读的直接缓冲区，发送时只创建共享内容的视图
+ * 2. 内容可变的数据包（认证）按线程复用一块直接缓冲区，直接写入包头和JSON，不经过JSONObject和中间字节数组
+ * 编码结果在当前线程下次编码前有效；发送层需在send返回前读取完数据（WebSocket客户端加掩码时会复制）
+ * 认证包在连接的读线程上编码，每个连接一个读线程时（Java-WebSocket传输层、虚拟线程模式）读循环结束时通过{@link #release()}释放
+ */
+public final class PacketEncoder {
+
+    // 心跳包
+    private static final ByteBuffer HEARTBEAT = constant(Operation.HEARTBEAT, new byte[0]);
+
+    // 缓冲区最小容量
+    private static final int MIN_CAPACITY = 512;
+
+    // 每个线程复用的编码器
+    private static final ThreadLocal<PacketEncoder> LOCAL = ThreadLocal.withInitial(PacketEncoder::new);
+
+    // 复用的直接缓冲区，只增不减
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(MIN_CAPACITY);
+
+    private PacketEncoder() {
+    }
+
+    /**
+     * 获取当前线程的编码器
+     *
+     * @return 编码器
+     */
+    public static PacketEncoder local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 释放当前线程的编码器，线程退出前调用可立即放开直接缓冲区
+     */
+    public static void release() {
+        LOCAL.remove();
+    }
+
+    /**
+     * 心跳包，每次返回独立的读写位置，内容共享且只读
+     *
+     * @return 心跳包
+     */
+    public static ByteBuffer heartbeat() {
+        return HEARTBEAT.duplicate();
+    }
+
+    /**
+     * 预先编码内容固定的数据包
+     *
+     * @param operation 操作码
+     * @param body      数据体
+     * @return 只读的直接缓冲区，发送时请使用{@link ByteBuffer#duplicate()}
+     */
+    public static ByteBuffer constant(Operation operation, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Packet.HEADER_LENGTH + body.length);
+        header(buffer, operation, Packet.HEADER_LENGTH + body.length);
+        buffer.put(body);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * 编码数据包
+     *
+     * @param operation 操作码
+     * @param body      数据体
+     * @return 编码结果，在当前线程下次编码前有效
+     */
+    public ByteBuffer encode(Operation operation, byte[] body) {
+        ByteBuffer out = reserve(Packet.HEADER_LENGTH + body.length);
+        header(out, operation, Packet.HEADER_LENGTH + body.length);
+        out.put(body);
+        return out.flip();
+    }
+
+    /**
+     * 编码认证包，数据体为{"uid":..,"roomid":..,"buvid":"..","key":"..","protover":..}
+     * 为空的字符串字段不写入，与JSONObject的行为一致
+     *
+     * @param auth 认证信息
+     * @return 编码结果，在当前线程下次编码前有效
+     */
+    public ByteBuffer encodeAuth(Auth auth) {
+        int strings = (auth.buvid == null ? 0 : auth.buvid.length()) + (auth.key == null ? 0 : auth.key.length());
+        // 每个字符最多6字节（\\uXXXX），其余部分不超过128字节
+        ByteBuffer out = reserve(Packet.HEADER_LENGTH + 128 + strings * 6);
+        out.position(Packet.HEADER_LENGTH);
+        putAscii(out, "{\"uid\":");
+        putLong(out, auth.uid);
+        putAscii(out, ",\"roomid\":");
+        putLong(out, auth.roomid);
+        if (auth.buvid != null) {
+            putAscii(out, ",\"buvid\":");
+            putString(out, auth.buvid);
+        }
+        if (auth.key != null) {
+            putAscii(out, ",\"key\":");
+            putString(out, auth.key);
+        }
+        putAscii(out, ",\"protover\":");
+        putLong(out, auth.protover);
+        out.put((byte) '}');
+        int length = out.position();
+        out.position(0);
+        header(out, Operation.AUTH, length);
+        return out.position(0).limit(length);
+    }
+
+    /**
+     * 清空并保证缓冲区容量
+     */
+    private ByteBuffer reserve(int capacity) {
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(Math.max(capacity, buffer.capacity() * 2));
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * 写入16字节包头
+     */
+    private static void header(ByteBuffer out, Operation operation, int length) {
+        // 包长度
+        out.putInt(length);
+        // 头部长度
+        out.putShort(Packet.HEADER_LENGTH);
+        // 协议版本
+        out.putShort((short) 0);
+        // 操作码
+        out.putInt(operation.code);
+        // 序列号
+        out.putInt(Packet.SEQUENCE_ID);
+    }
+
+    /**
+     * 写入ASCII常量
+     */
+    private static void putAscii(ByteBuffer out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * 写入十进制整数，不创建字符串
+     */
+    private static void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii(out, "9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * 写入带引号的JSON字符串，按UTF-8编码
+     */
+    private static void putString(ByteBuffer out, String text) {
+        out.put((byte) '"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.put((byte) '\\').put((byte) c);
+            } else if (c < 0x20) {
+                putAscii(out, "\\u00");
+                out.put((byte) Character.forDigit(c >> 4, 16)).put((byte) Character.forDigit(c & 0xF, 16));
+            } else if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 孤立的代理项按String.getBytes的行为替换为问号
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        out.put((byte) '"');
+    }
+}
@@ -0,0 +1,143 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.enums.Operation;
+import com.rain.danmu.model.Packet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 数据包视图（享元）
+ * 只记录数据体在底层缓冲区中的偏移量和长度，不复制数据
+ * 同一个实例会被解码器反复复用，仅在回调期间有效，回调结束后不可再持有
+ */
+public final class PacketView {
+
+    // 底层缓冲区
+    private ByteBuffer buffer;
+
+    // 数据体起始偏移量（绝对位置）
+    private int offset;
+
+    // 数据体长度
+    private int length;
+
+    // 协议版本
+    private int version;
+
+    // 操作码
+    private int operationCode;
+
+    // 序列号
+    private int sequence;
+
+    PacketView() {
+    }
+
+    /**
+     * 重新指向新的数据包
+     */
+    PacketView wrap(ByteBuffer buffer, int offset, int length, int version, int operationCode, int sequence) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.version = version;
+        this.operationCode = operationCode;
+        this.sequence = sequence;
+        return this;
+    }
+
+    /**
+     * @return 底层缓冲区（只读访问，不要修改其position/limit）
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return 数据体在底层缓冲区中的绝对偏移量
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return 数据体长度
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return 协议版本
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * @return 原始操作码
+     */
+    public int operationCode() {
+        return operationCode;
+    }
+
+    /**
+     * @return 序列号
+     */
+    public int sequence() {
+        return sequence;
+    }
+
+    /**
+     * 解析操作码对应的枚举
+     *
+     * @return 操作码枚举
+     */
+    public Operation operation() {
+        return Operation.parse(operationCode);
+    }
+
+    /**
+     * 读取数据体中指定位置的字节
+     *
+     * @param index 相对数据体起始位置的下标
+     * @return 字节值
+     */
+    public byte byteAt(int index) {
+        return buffer.get(offset + index);
+    }
+
+    /**
+     * 将数据体按UTF-8解码为字符串
+     * 堆内缓冲区直接基于底层数组解码，不产生中间拷贝
+     *
+     * @return 数据体字符串
+     */
+    public String bodyAsString() {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        return new String(bodyBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 复制数据体，仅在确实需要持有数据时调用
+     *
+     * @return 数据体副本
+     */
+    public byte[] bodyBytes() {
+        byte[] body = new byte[length];
+        buffer.get(offset, body, 0, length);
+        return body;
+    }
+
+    /**
+     * 物化为独立的数据包对象
+     *
+     * @return 数据包
+     */
+    public Packet toPacket() {
+        return new Packet(operation(), bodyBytes());
+    }
+}
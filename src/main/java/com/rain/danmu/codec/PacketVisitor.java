@@ -0,0 +1,16 @@
+package com.rain.danmu.codec;
+
+/**
+ * 数据包回调
+ * 解码器每解析出一个完整的数据包调用一次
+ */
+@FunctionalInterface
+public interface PacketVisitor {
+
+    /**
+     * 处理数据包
+     *
+     * @param packet 数据包视图，仅在本次回调期间有效
+     */
+    void visit(PacketView packet);
+}
@@ -0,0 +1,127 @@
+package com.rain.danmu.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8字节到字符串的直接映射缓存
+ * 用于昵称、礼物名等重复度高的字符串：命中时直接比较缓冲区中的字节并返回已有字符串，不分配对象
+ * 每个槽位只保存一项，冲突时覆盖，容量固定；非线程安全
+ */
+public final class StringCache {
+
+    // 超过该长度的字符串不缓存
+    private static final int MAX_LENGTH = 64;
+
+    // 缓存项的UTF-8字节
+    private final byte[][] keys;
+
+    // 缓存项
+    private final String[] values;
+
+    // 槽位数减一，用于取模
+    private final int mask;
+
+    // 解码未缓存字符串时使用的临时数组
+    private byte[] scratch = new byte[256];
+
+    // 命中次数
+    private long hits;
+
+    // 未命中次数
+    private long misses;
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 槽位数，向上取整为2的幂
+     */
+    public StringCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 读取缓冲区中的UTF-8字符串，优先返回缓存项
+     *
+     * @param buffer 缓冲区
+     * @param offset 起始位置（绝对位置）
+     * @param length 字节长度
+     * @return 字符串
+     */
+    public String get(ByteBuffer buffer, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return decode(buffer, offset, length);
+        }
+        int h = 0x811C9DC5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ buffer.get(i)) * 0x01000193;
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+        byte[] key = keys[slot];
+        if (key != null && equals(key, buffer, offset, length)) {
+            hits++;
+            return values[slot];
+        }
+        misses++;
+        key = new byte[length];
+        buffer.get(offset, key);
+        String value = new String(key, StandardCharsets.UTF_8);
+        keys[slot] = key;
+        values[slot] = value;
+        return value;
+    }
+
+    /**
+     * 读取缓冲区中的UTF-8字符串，不经过缓存
+     *
+     * @param buffer 缓冲区
+     * @param offset 起始位置（绝对位置）
+     * @param length 字节长度
+     * @return 字符串
+     */
+    public String decode(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(offset, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * 比较键与缓冲区中的字节
+     */
+    private static boolean equals(byte[] key, ByteBuffer buffer, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,191 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.metrics.DanmuMetrics;
+import com.rain.danmu.model.User;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界并发用户缓存
+ * 按用户ID复用{@link User}实例，活跃观众在多条消息、多个房间之间共享同一个用户对象和昵称字符串
+ * 组相联结构：用户ID散列到一组（8路），组内按CLOCK算法淘汰：
+ * 1. 命中时只设置访问位，读路径无锁、不分配对象
+ * 2. 未命中时从组内时钟指针处开始扫描，清除访问位，淘汰第一个未被访问的项
+ * 3. 用户改名时替换为新实例，不修改已共享的对象
+ * 并发插入同一用户可能短暂产生重复项，不影响正确性
+ */
+public final class UserCache {
+
+    // 解析消息时默认使用的共享缓存
+    public static final UserCache SHARED = new UserCache(1 << 16);
+
+    // 每组的路数
+    private static final int WAYS = 8;
+
+    // 缓存项
+    private final AtomicReferenceArray<User> entries;
+
+    // CLOCK访问位，并发读写只影响淘汰精度
+    private final byte[] referenced;
+
+    // 每组的时钟指针
+    private final byte[] hands;
+
+    // 组数减一，用于取模
+    private final int mask;
+
+    // 命中次数
+    private final LongAdder hits = new LongAdder();
+
+    // 未命中次数
+    private final LongAdder misses = new LongAdder();
+
+    // 淘汰次数
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 最多缓存的用户数，向上取整为2的幂
+     */
+    public UserCache(int capacity) {
+        if (capacity < WAYS) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        int sets = Integer.highestOneBit((capacity + WAYS - 1) / WAYS * 2 - 1);
+        this.entries = new AtomicReferenceArray<>(sets * WAYS);
+        this.referenced = new byte[sets * WAYS];
+        this.hands = new byte[sets];
+        this.mask = sets - 1;
+    }
+
+    /**
+     * 获取用户对象，不存在或昵称不同时创建并缓存
+     * 用户ID为0（未登录或被隐藏的用户）时昵称各不相同，直接创建不缓存，否则每条消息都会替换同一项并挤占所在组
+     *
+     * @param uid  用户ID
+     * @param name 用户昵称
+     * @return 共享的用户对象
+     */
+    public User intern(long uid, String name) {
+        if (uid == 0) {
+            return new User(0, name);
+        }
+        int set = set(uid);
+        int base = set * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            User user = entries.get(i);
+            if (user != null && user.uid == uid) {
+                if (Objects.equals(user.name, name)) {
+                    if (referenced[i] == 0) {
+                        referenced[i] = 1;
+                    }
+                    hits.increment();
+                    return user;
+                }
+                User renamed = new User(uid, name);
+                entries.set(i, renamed);
+                referenced[i] = 1;
+                misses.increment();
+                return renamed;
+            }
+        }
+        misses.increment();
+        User user = new User(uid, name);
+        entries.set(victim(set, base), user);
+        return user;
+    }
+
+    /**
+     * 查找缓存的用户对象
+     *
+     * @param uid 用户ID
+     * @return 用户对象，未缓存返回null
+     */
+    public User get(long uid) {
+        int base = set(uid) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            User user = entries.get(i);
+            if (user != null && user.uid == uid) {
+                referenced[i] = 1;
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 淘汰次数
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return 最多缓存的用户数
+     */
+    public int capacity() {
+        return entries.length();
+    }
+
+    /**
+     * 将命中、未命中和淘汰次数注册到监控指标
+     *
+     * @param metrics 监控指标
+     * @return 当前缓存
+     */
+    public UserCache register(DanmuMetrics metrics) {
+        metrics.counter("user_cache_hits_total", "用户缓存命中次数", this::hits);
+        metrics.counter("user_cache_misses_total", "用户缓存未命中次数", this::misses);
+        metrics.counter("user_cache_evictions_total", "用户缓存淘汰次数", this::evictions);
+        return this;
+    }
+
+    /**
+     * 按CLOCK算法选择组内被替换的位置
+     */
+    private int victim(int set, int base) {
+        int hand = hands[set];
+        // 两轮内必然找到：第一轮清除访问位，第二轮命中
+        for (int step = 0; step < WAYS * 2; step++) {
+            int slot = base + (hand++ & (WAYS - 1));
+            if (entries.get(slot) == null) {
+                hands[set] = (byte) hand;
+                return slot;
+            }
+            if (referenced[slot] == 0) {
+                hands[set] = (byte) hand;
+                evictions.increment();
+                return slot;
+            }
+            referenced[slot] = 0;
+        }
+        hands[set] = (byte) hand;
+        evictions.increment();
+        return base + (hand & (WAYS - 1));
+    }
+
+    /**
+     * 用户ID所在的组
+     */
+    private int set(long uid) {
+        long h = uid * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
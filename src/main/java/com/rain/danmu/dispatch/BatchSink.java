@@ -0,0 +1,34 @@
+package com.rain.danmu.dispatch;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 批量事件接收器
+ *
+ * @param <T> 事件类型
+ */
+@FunctionalInterface
+public interface BatchSink<T> {
+
+    /**
+     * 接收一批事件
+     *
+     * @param batch 事件列表，接收方可以持有
+     */
+    void accept(List<T> batch);
+
+    /**
+     * 将逐条处理的回调适配为批量接收器
+     *
+     * @param handler 逐条处理的回调
+     * @return 批量接收器
+     */
+    static <T> BatchSink<T> each(Consumer<? super T> handler) {
+        return batch -> {
+            for (T event : batch) {
+                handler.accept(event);
+            }
+        };
+    }
+}
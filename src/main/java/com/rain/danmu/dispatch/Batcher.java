@@ -0,0 +1,206 @@
+package com.rain.danmu.dispatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 微批聚合器
+ * 将逐条到达的事件聚合成批次，按数量或最大延迟触发投递：
+ * 1. 同一WebSocket消息解码出的事件先在读线程本地暂存，消息结束时整体并入批次，不会被拆开
+ * 2. 批次达到maxSize时在读线程上立即投递
+ * 3. 批次中最早的事件等待超过maxLatency时由定时线程投递
+ * 投递在锁外进行，可设置{@link Dispatcher}改为异步投递
+ *
+ * @param <T> 事件类型
+ */
+public class Batcher<T> implements Consumer<T>, AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(Batcher.class);
+
+    // 所有聚合器共享的定时线程
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "danmu-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 批量接收器
+    private final BatchSink<T> sink;
+
+    // 交给分发器执行的投递函数
+    private final Consumer<List<T>> sinkConsumer;
+
+    // 批次大小上限
+    private final int maxSize;
+
+    // 最大延迟（纳秒）
+    private final long maxLatencyNanos;
+
+    // 异步分发器，为空时在触发线程上投递
+    private final Dispatcher dispatcher;
+
+    // 每个读线程当前消息的暂存区
+    private final ThreadLocal<ArrayList<T>> staging = ThreadLocal.withInitial(ArrayList::new);
+
+    // 保护当前批次的锁
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 当前批次
+    private ArrayList<T> batch;
+
+    // 当前批次第一个事件的到达时间（纳秒）
+    private long firstAt;
+
+    // 延迟检查任务
+    private final ScheduledFuture<?> timer;
+
+    /**
+     * 构造函数，在触发线程上投递
+     *
+     * @param sink             批量接收器
+     * @param maxSize          批次大小上限
+     * @param maxLatencyMillis 最大延迟（毫秒）
+     */
+    public Batcher(BatchSink<T> sink, int maxSize, long maxLatencyMillis) {
+        this(sink, maxSize, maxLatencyMillis, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param sink             批量接收器
+     * @param maxSize          批次大小上限
+     * @param maxLatencyMillis 最大延迟（毫秒）
+     * @param dispatcher       异步分发器，为空时在触发线程上投递
+     */
+    public Batcher(BatchSink<T> sink, int maxSize, long maxLatencyMillis, Dispatcher dispatcher) {
+        if (maxSize <= 0 || maxLatencyMillis <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.sink = sink;
+        this.sinkConsumer = sink::accept;
+        this.maxSize = maxSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.dispatcher = dispatcher;
+        this.batch = new ArrayList<>(maxSize);
+        // 以四分之一最大延迟为间隔检查，实际延迟不超过1.25倍maxLatency
+        long period = Math.max(1, maxLatencyMillis / 4);
+        this.timer = TIMER.scheduleAtFixedRate(this::flushIfExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 暂存一个事件，在{@link #endOfFrame()}时并入批次
+     *
+     * @param event 事件
+     */
+    @Override
+    public void accept(T event) {
+        staging.get().add(event);
+    }
+
+    /**
+     * 当前线程的一条消息处理完毕，将暂存的事件整体并入批次
+     */
+    public void endOfFrame() {
+        ArrayList<T> frame = staging.get();
+        if (frame.isEmpty()) {
+            return;
+        }
+        List<T> ready = null;
+        lock.lock();
+        try {
+            if (batch.isEmpty()) {
+                firstAt = System.nanoTime();
+            }
+            batch.addAll(frame);
+            if (batch.size() >= maxSize) {
+                ready = swap();
+            }
+        } finally {
+            lock.unlock();
+        }
+        frame.clear();
+        if (ready != null) {
+            deliver(ready);
+        }
+    }
+
+    /**
+     * 立即投递当前批次
+     */
+    public void flush() {
+        List<T> ready = null;
+        lock.lock();
+        try {
+            if (!batch.isEmpty()) {
+                ready = swap();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (ready != null) {
+            deliver(ready);
+        }
+    }
+
+    /**
+     * 停止定时检查并投递剩余事件
+     */
+    @Override
+    public void close() {
+        timer.cancel(false);
+        flush();
+    }
+
+    /**
+     * 超过最大延迟时投递
+     */
+    private void flushIfExpired() {
+        List<T> ready = null;
+        lock.lock();
+        try {
+            if (!batch.isEmpty() && System.nanoTime() - firstAt >= maxLatencyNanos) {
+                ready = swap();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (ready != null) {
+            deliver(ready);
+        }
+    }
+
+    /**
+     * 取出当前批次并换上新的空批次，需持有锁
+     */
+    private List<T> swap() {
+        List<T> ready = batch;
+        batch = new ArrayList<>(maxSize);
+        return ready;
+    }
+
+    /**
+     * 投递批次
+     */
+    private void deliver(List<T> ready) {
+        if (dispatcher != null) {
+            dispatcher.dispatch(0, sinkConsumer, ready);
+            return;
+        }
+        try {
+            sink.accept(ready);
+        } catch (Throwable e) {
+            LOGGER.error("批量回调出错", e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.rain.danmu.dispatch;
+
+import com.rain.danmu.enums.OverflowPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 异步事件分发器
+ * 将用户回调从WebSocket读线程转移到独立的消费线程，避免慢消费者阻塞连接：
+ * 1. 分为若干通道，每个通道一个有界无锁队列和一个消费线程
+ * 2. 同一房间的事件固定进入同一通道，保证房间内的事件顺序
+ * 3. 队列满时按{@link OverflowPolicy}处理，并记录丢弃数量
+ * 消费线程由线程工厂创建，可传入虚拟线程工厂
+ */
+public class Dispatcher implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(Dispatcher.class);
+
+    // 消费线程空闲时的最长休眠时间（纳秒）
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // 阻塞策略下生产者每次等待的时间（纳秒）
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // 分发通道
+    private final Lane[] lanes;
+
+    // 溢出策略
+    private final OverflowPolicy policy;
+
+    // 采样率，SAMPLE策略下每sampleRate个事件保留一个
+    private final int sampleRate;
+
+    // 已丢弃的事件数
+    private final LongAdder dropped = new LongAdder();
+
+    // 已执行的回调数
+    private final LongAdder dispatched = new LongAdder();
+
+    // 是否已关闭
+    private volatile boolean closed;
+
+    /**
+     * 构造函数，使用守护线程，采样率为10
+     *
+     * @param lanes    通道数（消费线程数）
+     * @param capacity 每个通道的队列容量
+     * @param policy   溢出策略
+     */
+    public Dispatcher(int lanes, int capacity, OverflowPolicy policy) {
+        this(lanes, capacity, policy, 10, daemonThreadFactory());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param lanes         通道数（消费线程数）
+     * @param capacity      每个通道的队列容量
+     * @param policy        溢出策略
+     * @param sampleRate    采样率，仅SAMPLE策略使用
+     * @param threadFactory 消费线程工厂
+     */
+    public Dispatcher(int lanes, int capacity, OverflowPolicy policy, int sampleRate, ThreadFactory threadFactory) {
+        if (lanes <= 0 || capacity <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.policy = policy;
+        this.sampleRate = sampleRate;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(capacity);
+            this.lanes[i].thread = threadFactory.newThread(this.lanes[i]);
+            this.lanes[i].thread.start();
+        }
+    }
+
+    /**
+     * 提交一个回调
+     *
+     * @param key     分区键（通常为房间号），相同的键进入同一通道
+     * @param handler 处理函数
+     * @param event   事件
+     * @return 事件被丢弃时返回false
+     */
+    public <T> boolean dispatch(long key, Consumer<? super T> handler, T event) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        Lane lane = lanes[lanes.length == 1 ? 0 : Math.floorMod(Long.hashCode(key) * 0x9E3779B9, lanes.length)];
+        boolean accepted = switch (policy) {
+            case BLOCK -> offerBlocking(lane, handler, event);
+            case DROP_NEWEST -> lane.queue.offer(handler, event);
+            case DROP_OLDEST -> offerEvicting(lane, handler, event);
+            case SAMPLE -> offerSampling(lane, handler, event);
+        };
+        if (!accepted) {
+            dropped.increment();
+            return false;
+        }
+        lane.signal();
+        return true;
+    }
+
+    /**
+     * @return 所有通道中排队的事件总数
+     */
+    public long depth() {
+        long depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @param lane 通道序号
+     * @return 指定通道中排队的事件数
+     */
+    public int depth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /**
+     * @return 通道数
+     */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /**
+     * @return 累计丢弃的事件数
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 累计执行的回调数
+     */
+    public long dispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * 停止接收新事件，等待队列中的事件处理完毕
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        for (Lane lane : lanes) {
+            if (lane.thread == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                lane.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 阻塞直到入队成功或分发器关闭
+     */
+    private boolean offerBlocking(Lane lane, Object handler, Object event) {
+        while (!lane.queue.offer(handler, event)) {
+            if (closed) {
+                return false;
+            }
+            lane.signal();
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * 队列满时淘汰最旧的事件后重试
+     */
+    private boolean offerEvicting(Lane lane, Object handler, Object event) {
+        while (!lane.queue.offer(handler, event)) {
+            if (lane.queue.poll(null)) {
+                dropped.increment();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 队列超过半满后按采样率保留
+     */
+    private boolean offerSampling(Lane lane, Object handler, Object event) {
+        if (lane.queue.size() >= lane.queue.capacity() / 2
+                && lane.sampleCounter.incrementAndGet() % sampleRate != 0) {
+            return false;
+        }
+        return lane.queue.offer(handler, event);
+    }
+
+    /**
+     * 分发通道
+     */
+    private final class Lane implements Runnable {
+
+        // 事件队列
+        final RingBuffer queue;
+
+        // 采样计数
+        final AtomicLong sampleCounter = new AtomicLong();
+
+        // 消费线程
+        Thread thread;
+
+        // 消费线程是否在休眠
+        volatile boolean sleeping;
+
+        Lane(int capacity) {
+            this.queue = new RingBuffer(capacity);
+        }
+
+        /**
+         * 唤醒休眠中的消费线程
+         */
+        void signal() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * 消费循环
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            Object[] slot = new Object[2];
+            while (true) {
+                if (queue.poll(slot)) {
+                    try {
+                        ((Consumer<Object>) slot[0]).accept(slot[1]);
+                    } catch (Throwable e) {
+                        LOGGER.error("事件回调出错", e);
+                    }
+                    slot[0] = slot[1] = null;
+                    dispatched.increment();
+                    continue;
+                }
+                if (closed) {
+                    return;
+                }
+                sleeping = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    /**
+     * 守护线程工厂
+     */
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "danmu-dispatch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.rain.danmu.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界无锁环形队列
+ * 基于每个槽位的序号实现（Vyukov算法），多个生产者写入，
+ * 出队同样使用CAS，使生产者在溢出时可以淘汰最旧的元素
+ * 每个槽位保存一对处理函数和事件，入队时不创建包装对象
+ */
+final class RingBuffer {
+
+    // 容量减一，用于取模
+    private final int mask;
+
+    // 每个槽位的序号
+    private final AtomicLongArray sequences;
+
+    // 槽位中的处理函数
+    private final Object[] handlers;
+
+    // 槽位中的事件
+    private final Object[] events;
+
+    // 下一个写入位置
+    private final AtomicLong tail = new AtomicLong();
+
+    // 下一个读取位置
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整到2的幂
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1 << 1);
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.handlers = new Object[size];
+        this.events = new Object[size];
+    }
+
+    /**
+     * 入队
+     *
+     * @return 队列已满时返回false
+     */
+    boolean offer(Object handler, Object event) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    handlers[index] = handler;
+                    events[index] = event;
+                    // 发布槽位，对读取方可见
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 出队
+     *
+     * @param out 长度为2的数组，依次写入处理函数和事件；为空时直接丢弃
+     * @return 队列为空时返回false
+     */
+    boolean poll(Object[] out) {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    if (out != null) {
+                        out[0] = handlers[index];
+                        out[1] = events[index];
+                    }
+                    handlers[index] = null;
+                    events[index] = null;
+                    // 释放槽位，供下一圈写入
+                    sequences.set(index, pos + mask + 1);
+                    return true;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return 当前元素个数（近似值）
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * @return 是否为空
+     */
+    boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * @return 容量
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.rain.danmu.enums;
+
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.model.Gift;
+import com.rain.danmu.model.GuardBuy;
+import com.rain.danmu.model.InteractWord;
+import com.rain.danmu.model.LikeClick;
+import com.rain.danmu.model.LikeUpdate;
+import com.rain.danmu.model.LiveEvent;
+import com.rain.danmu.model.OnlineRankCount;
+import com.rain.danmu.model.SuperChat;
+import com.rain.danmu.model.WatchedChange;
+
+import java.util.function.Supplier;
+
+/**
+ * 二进制编码中的事件类型枚举
+ * 类型码写入记录头部，已分配的类型码不可修改或复用
+ */
+public enum EventType {
+    /**
+     * 弹幕
+     */
+    DANMU(1, Danmu.class, Danmu::new),
+
+    /**
+     * 礼物
+     */
+    GIFT(2, Gift.class, Gift::new),
+
+    /**
+     * 醒目留言
+     */
+    SUPER_CHAT(3, SuperChat.class, SuperChat::new),
+
+    /**
+     * 上舰
+     */
+    GUARD_BUY(4, GuardBuy.class, GuardBuy::new),
+
+    /**
+     * 用户互动
+     */
+    INTERACT_WORD(5, InteractWord.class, InteractWord::new),
+
+    /**
+     * 点赞
+     */
+    LIKE_CLICK(6, LikeClick.class, LikeClick::new),
+
+    /**
+     * 点赞总数更新
+     */
+    LIKE_UPDATE(7, LikeUpdate.class, LikeUpdate::new),
+
+    /**
+     * 高能用户数更新
+     */
+    ONLINE_RANK_COUNT(8, OnlineRankCount.class, OnlineRankCount::new),
+
+    /**
+     * 看过人数更新
+     */
+    WATCHED_CHANGE(9, WatchedChange.class, WatchedChange::new);
+
+    // 按类型码索引的枚举
+    private static final EventType[] BY_CODE = new EventType[16];
+
+    static {
+        for (EventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    // 类型码
+    public final int code;
+
+    // 事件类
+    public final Class<? extends LiveEvent> type;
+
+    // 事件构造函数
+    public final Supplier<? extends LiveEvent> factory;
+
+    EventType(int code, Class<? extends LiveEvent> type, Supplier<? extends LiveEvent> factory) {
+        this.code = code;
+        this.type = type;
+        this.factory = factory;
+    }
+
+    /**
+     * 根据类型码解析对应的枚举
+     *
+     * @return 枚举，未知类型码返回null
+     */
+    public static EventType parse(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * 根据事件类解析对应的枚举
+     *
+     * @return 枚举，不支持的事件类返回null
+     */
+    public static EventType of(LiveEvent event) {
+        // 按出现频率排列
+        if (event instanceof Danmu) {
+            return DANMU;
+        }
+        if (event instanceof InteractWord) {
+            return INTERACT_WORD;
+        }
+        if (event instanceof Gift) {
+            return GIFT;
+        }
+        for (EventType type : BY_CODE) {
+            if (type != null && type.type == event.getClass()) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.rain.danmu.enums;
+
+/**
+ * 日志刷盘策略
+ */
+public enum FsyncPolicy {
+    /**
+     * 不主动刷盘，由操作系统决定写回时机
+     * 进程崩溃不丢数据，机器掉电可能丢失最近写入的记录
+     */
+    NONE,
+
+    /**
+     * 后台按固定间隔刷盘，掉电最多丢失一个间隔内的记录
+     */
+    INTERVAL,
+
+    /**
+     * 每次追加都等待刷盘完成，并发的追加合并为一次刷盘（组提交）
+     */
+    ALWAYS
+}
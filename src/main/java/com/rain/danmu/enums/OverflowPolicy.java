@@ -0,0 +1,27 @@
+package com.rain.danmu.enums;
+
+/**
+ * 分发队列溢出策略
+ */
+public enum OverflowPolicy {
+    /**
+     * 阻塞生产者直到队列有空位
+     * 会反压到WebSocket读线程，消费过慢时可能导致服务器断开连接
+     */
+    BLOCK,
+
+    /**
+     * 丢弃队列中最旧的事件，保留最新事件
+     */
+    DROP_OLDEST,
+
+    /**
+     * 丢弃新到达的事件
+     */
+    DROP_NEWEST,
+
+    /**
+     * 队列超过半满后按采样率保留事件，队列满时丢弃新事件
+     */
+    SAMPLE
+}
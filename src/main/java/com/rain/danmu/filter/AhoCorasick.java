@@ -0,0 +1,331 @@
+package com.rain.danmu.filter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Aho-Corasick多模式匹配自动机
+ * 以UTF-8字节为字母表，一次扫描同时匹配任意数量的关键词，耗时只与文本长度有关，与关键词数量无关
+ * 构建完成后不可修改，可被任意线程共享；关键词变更时重新构建并整体替换
+ * 存储布局：
+ * 1. 根节点和子节点较多的节点（主要是中文UTF-8前导字节之后的节点）使用256项的稠密转移表，一次查表
+ * 2. 其余节点的转移按节点连续存放（CSR），子节点很少，线性查找
+ * 3. 每个节点记录沿失败链可达的任一关键词，匹配时无需遍历失败链
+ */
+public final class AhoCorasick {
+
+    // 关键词
+    private final String[] patterns;
+
+    // 是否忽略ASCII字母大小写
+    private final boolean ignoreCase;
+
+    // 子节点数达到该值时使用稠密转移表
+    private static final int DENSE = 12;
+
+    // 根节点的转移表
+    private final int[] root;
+
+    // 各节点稠密转移表在dense中的起始位置，-1表示使用CSR
+    private final int[] denseStart;
+
+    // 稠密转移表，每个节点256项，0表示无转移
+    private final int[] dense;
+
+    // 各节点转移在edgeLabels/edgeTargets中的起始位置，长度为节点数+1
+    private final int[] edgeStart;
+
+    // 转移字节
+    private final byte[] edgeLabels;
+
+    // 转移目标节点
+    private final int[] edgeTargets;
+
+    // 失败指针
+    private final int[] fail;
+
+    // 节点命中的关键词下标，-1表示无
+    private final int[] match;
+
+    private AhoCorasick(String[] patterns, boolean ignoreCase, int[] root, int[] denseStart, int[] dense, int[] edgeStart,
+                        byte[] edgeLabels, int[] edgeTargets, int[] fail, int[] match) {
+        this.patterns = patterns;
+        this.ignoreCase = ignoreCase;
+        this.root = root;
+        this.denseStart = denseStart;
+        this.dense = dense;
+        this.edgeStart = edgeStart;
+        this.edgeLabels = edgeLabels;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.match = match;
+    }
+
+    /**
+     * 构建自动机，空关键词被忽略
+     *
+     * @param keywords   关键词
+     * @param ignoreCase 是否忽略ASCII字母大小写
+     * @return 自动机
+     */
+    public static AhoCorasick compile(Collection<String> keywords, boolean ignoreCase) {
+        List<String> patterns = new ArrayList<>(keywords.size());
+        Trie trie = new Trie();
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = keyword.getBytes(StandardCharsets.UTF_8);
+            if (ignoreCase) {
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = fold(bytes[i]);
+                }
+            }
+            if (trie.insert(bytes, patterns.size())) {
+                patterns.add(keyword);
+            }
+        }
+        return trie.build(patterns.toArray(new String[0]), ignoreCase);
+    }
+
+    /**
+     * 查找文本中的任一关键词
+     *
+     * @param buffer 数据所在缓冲区
+     * @param offset 起始位置（绝对位置）
+     * @param length 长度
+     * @return 关键词下标，未命中返回-1
+     */
+    public int find(ByteBuffer buffer, int offset, int length) {
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = next(state, buffer.get(i));
+            if (match[state] >= 0) {
+                return match[state];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找文本中的任一关键词
+     *
+     * @param text   UTF-8文本
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 关键词下标，未命中返回-1
+     */
+    public int find(byte[] text, int offset, int length) {
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = next(state, text[i]);
+            if (match[state] >= 0) {
+                return match[state];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找文本中的任一关键词
+     *
+     * @param text 文本
+     * @return 关键词下标，未命中返回-1
+     */
+    public int find(CharSequence text) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        return find(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param index 关键词下标
+     * @return 关键词
+     */
+    public String pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * @return 关键词数
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * @return 节点数
+     */
+    public int states() {
+        return fail.length;
+    }
+
+    /**
+     * 状态转移，失败时沿失败链回退
+     */
+    private int next(int state, byte b) {
+        if (ignoreCase) {
+            b = fold(b);
+        }
+        while (state != 0) {
+            int base = denseStart[state];
+            if (base >= 0) {
+                int target = dense[base + (b & 0xFF)];
+                if (target != 0) {
+                    return target;
+                }
+            } else {
+                for (int e = edgeStart[state], end = edgeStart[state + 1]; e < end; e++) {
+                    if (edgeLabels[e] == b) {
+                        return edgeTargets[e];
+                    }
+                }
+            }
+            state = fail[state];
+        }
+        return root[b & 0xFF];
+    }
+
+    /**
+     * ASCII大写字母转小写，多字节UTF-8序列的字节都不小于0x80，不受影响
+     */
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+    }
+
+    /**
+     * 构建用的字典树，子节点以左孩子右兄弟链表存放
+     */
+    private static final class Trie {
+
+        // 第一个子节点
+        int[] child = new int[1024];
+
+        // 下一个兄弟节点
+        int[] sibling = new int[1024];
+
+        // 到达节点的字节
+        byte[] label = new byte[1024];
+
+        // 节点结束的关键词下标，-1表示无
+        int[] output = new int[1024];
+
+        // 节点数，0为根节点
+        int size = 1;
+
+        Trie() {
+            output[0] = -1;
+        }
+
+        /**
+         * 插入关键词
+         *
+         * @return 是否为新关键词
+         */
+        boolean insert(byte[] bytes, int index) {
+            int node = 0;
+            for (byte b : bytes) {
+                int next = child[node];
+                while (next != 0 && label[next] != b) {
+                    next = sibling[next];
+                }
+                if (next == 0) {
+                    next = add(node, b);
+                }
+                node = next;
+            }
+            if (output[node] >= 0) {
+                return false;
+            }
+            output[node] = index;
+            return true;
+        }
+
+        /**
+         * 新增子节点
+         */
+        int add(int parent, byte b) {
+            if (size == child.length) {
+                int capacity = size * 2;
+                child = Arrays.copyOf(child, capacity);
+                sibling = Arrays.copyOf(sibling, capacity);
+                label = Arrays.copyOf(label, capacity);
+                output = Arrays.copyOf(output, capacity);
+            }
+            int node = size++;
+            label[node] = b;
+            output[node] = -1;
+            sibling[node] = child[parent];
+            child[parent] = node;
+            return node;
+        }
+
+        /**
+         * 按广度优先顺序计算失败指针并压平为只读结构
+         * 节点按广度优先顺序重新编号，失败指针总是指向编号更小的节点
+         */
+        AhoCorasick build(String[] patterns, boolean ignoreCase) {
+            // order同时作为广度优先遍历的队列
+            int[] order = new int[size];
+            int[] id = new int[size];
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int node = order[head];
+                id[node] = head;
+                for (int c = child[node]; c != 0; c = sibling[c]) {
+                    order[tail++] = c;
+                }
+            }
+            int[] root = new int[256];
+            int[] edgeStart = new int[size + 1];
+            byte[] edgeLabels = new byte[size - 1];
+            int[] edgeTargets = new int[size - 1];
+            int[] fail = new int[size];
+            int[] match = new int[size];
+            int[] denseStart = new int[size];
+            int denseNodes = 0;
+            int edges = 0;
+            for (int n = 0; n < size; n++) {
+                int node = order[n];
+                edgeStart[n] = edges;
+                for (int c = child[node]; c != 0; c = sibling[c]) {
+                    edgeLabels[edges] = label[c];
+                    edgeTargets[edges++] = id[c];
+                }
+                denseStart[n] = n > 0 && edges - edgeStart[n] >= DENSE ? 256 * denseNodes++ : -1;
+            }
+            edgeStart[size] = edges;
+            int[] dense = new int[256 * denseNodes];
+            for (int n = 1; n < size; n++) {
+                if (denseStart[n] >= 0) {
+                    for (int e = edgeStart[n]; e < edgeStart[n + 1]; e++) {
+                        dense[denseStart[n] + (edgeLabels[e] & 0xFF)] = edgeTargets[e];
+                    }
+                }
+            }
+            AhoCorasick automaton = new AhoCorasick(patterns, ignoreCase, root, denseStart, dense, edgeStart, edgeLabels,
+                    edgeTargets, fail, match);
+            match[0] = -1;
+            for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+                root[edgeLabels[e] & 0xFF] = edgeTargets[e];
+            }
+            // 广度优先：处理节点n时，所有更浅节点的失败指针均已确定
+            for (int n = 1; n < size; n++) {
+                match[n] = output[order[n]];
+            }
+            for (int n = 0; n < size; n++) {
+                for (int e = edgeStart[n]; e < edgeStart[n + 1]; e++) {
+                    int target = edgeTargets[e];
+                    fail[target] = n == 0 ? 0 : automaton.next(fail[n], edgeLabels[e]);
+                    if (match[target] < 0) {
+                        match[target] = match[fail[target]];
+                    }
+                }
+            }
+            return automaton;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.rain.danmu.filter;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.codec.DanmuScanner;
+import com.rain.danmu.codec.LazyMessage;
+import com.rain.danmu.metrics.DanmuMetrics;
+import org.json.JSONArray;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 弹幕过滤器
+ * 注册到{@link HandlerRegistry}后在读线程上先于所有处理函数执行，未通过的弹幕不会被解析为{@link com.rain.danmu.model.Danmu}：
+ * 1. 直接在消息的UTF-8字节上定位弹幕内容和用户ID，结构不符合预期时才回退到JSON解析
+ * 2. 关键词过滤：Aho-Corasick自动机一次扫描匹配全部关键词，关键词可随时整体替换，正在处理的消息不受影响
+ * 3. 刷屏过滤：按用户检测窗口内连续的近似重复弹幕，用户ID为0（匿名）时跳过
+ * 同一个过滤器可被多个客户端共享
+ */
+public class DanmuFilter implements Predicate<LazyMessage> {
+
+    // 关键词自动机，为空表示不做关键词过滤
+    private volatile AhoCorasick keywords;
+
+    // 刷屏检测，为空表示不做刷屏过滤
+    private final FloodDetector flood;
+
+    // 通过的弹幕数
+    private final LongAdder passed = new LongAdder();
+
+    // 命中关键词的弹幕数
+    private final LongAdder blocked = new LongAdder();
+
+    // 判定为刷屏的弹幕数
+    private final LongAdder flooded = new LongAdder();
+
+    // 回退到JSON解析的弹幕数
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param keywords 关键词自动机，可为空
+     * @param flood    刷屏检测，可为空
+     */
+    public DanmuFilter(AhoCorasick keywords, FloodDetector flood) {
+        this.keywords = keywords;
+        this.flood = flood;
+    }
+
+    /**
+     * 只做关键词过滤，忽略ASCII字母大小写
+     *
+     * @param keywords 关键词
+     * @return 过滤器
+     */
+    public static DanmuFilter of(Collection<String> keywords) {
+        return new DanmuFilter(AhoCorasick.compile(keywords, true), null);
+    }
+
+    /**
+     * 替换关键词自动机
+     *
+     * @param keywords 关键词自动机，为空表示不做关键词过滤
+     */
+    public void update(AhoCorasick keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * 重新构建并替换关键词，忽略ASCII字母大小写
+     * 构建在调用线程上完成，构建期间仍使用旧的关键词
+     *
+     * @param keywords 关键词
+     */
+    public void update(Collection<String> keywords) {
+        update(AhoCorasick.compile(Objects.requireNonNull(keywords), true));
+    }
+
+    /**
+     * @return 当前的关键词自动机，可能为空
+     */
+    public AhoCorasick keywords() {
+        return keywords;
+    }
+
+    /**
+     * 在注册表中为DANMU_MSG安装该过滤器
+     *
+     * @param registry 命令处理函数注册表
+     * @return 注册表
+     */
+    public HandlerRegistry installOn(HandlerRegistry registry) {
+        return registry.filter(Command.DANMU_MSG.cmd, this);
+    }
+
+    /**
+     * 判断弹幕是否通过
+     *
+     * @param message DANMU_MSG消息
+     * @return 是否通过
+     */
+    @Override
+    public boolean test(LazyMessage message) {
+        // 扫描结果缓存在消息视图中，与去重过滤器共用
+        DanmuScanner scanner = message.danmu();
+        byte[] text;
+        int length;
+        long uid;
+        if (scanner != null) {
+            text = scanner.text();
+            length = scanner.textLength();
+            uid = scanner.uid();
+        } else {
+            // 解析结果缓存在消息视图中，之后的处理函数不会重复解析
+            fallbacks.increment();
+            JSONArray info = message.info();
+            if (info == null) {
+                passed.increment();
+                return true;
+            }
+            text = info.optString(1).getBytes(StandardCharsets.UTF_8);
+            length = text.length;
+            JSONArray user = info.optJSONArray(2);
+            uid = user == null ? 0 : user.optLong(0);
+        }
+        AhoCorasick matcher = keywords;
+        if (matcher != null && matcher.find(text, 0, length) >= 0) {
+            blocked.increment();
+            return false;
+        }
+        if (flood != null && uid != 0 && flood.offer(uid, text, 0, length)) {
+            flooded.increment();
+            return false;
+        }
+        passed.increment();
+        return true;
+    }
+
+    /**
+     * @return 通过的弹幕数
+     */
+    public long passed() {
+        return passed.sum();
+    }
+
+    /**
+     * @return 命中关键词的弹幕数
+     */
+    public long blocked() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return 判定为刷屏的弹幕数
+     */
+    public long flooded() {
+        return flooded.sum();
+    }
+
+    /**
+     * @return 回退到JSON解析的弹幕数
+     */
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * 将过滤器计数注册到监控指标
+     *
+     * @param metrics 监控指标
+     * @return 当前过滤器
+     */
+    public DanmuFilter register(DanmuMetrics metrics) {
+        metrics.counter("filter_passed_total", "通过过滤的弹幕数", this::passed);
+        metrics.counter("filter_blocked_total", "命中关键词的弹幕数", this::blocked);
+        metrics.counter("filter_flooded_total", "判定为刷屏的弹幕数", this::flooded);
+        metrics.counter("filter_fallbacks_total", "过滤时回退到JSON解析的弹幕数", this::fallbacks);
+        return this;
+    }
+}
@@ -0,0 +1,218 @@
+package com.rain.danmu.filter;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.codec.DanmuScanner;
+import com.rain.danmu.codec.LazyMessage;
+import com.rain.danmu.metrics.DanmuMetrics;
+import com.rain.danmu.util.HashUtil;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 弹幕去重过滤器
+ * 同一房间同时保持多条连接（重连窗口、分片交接）时，每条弹幕会被收到多次；
+ * 为每条弹幕计算64位键，在{@link RotatingBloomFilter}中出现过的直接丢弃：
+ * 1. 优先使用消息ID：info[0][15].extra中的id_str
+ * 2. 没有消息ID时使用发送时间info[0][4]、用户ID和弹幕内容的哈希
+ * 3. 两者都没有时无法识别，直接通过
+ * 键中包含房间号，同一个过滤器可被多个房间的客户端共享；同一房间的所有连接必须共享同一个过滤器
+ * 误判会丢弃一条从未出现过的弹幕，概率见{@link #falsePositiveRate()}
+ */
+public class DedupFilter implements Predicate<LazyMessage> {
+
+    // 默认误判率
+    private static final double DEFAULT_FPP = 1e-4;
+
+    // 已出现的键
+    private final RotatingBloomFilter seen;
+
+    // 首次出现、通过的弹幕数
+    private final LongAdder passed = new LongAdder();
+
+    // 判定为重复、丢弃的弹幕数
+    private final LongAdder dropped = new LongAdder();
+
+    // 无法计算键、直接通过的弹幕数
+    private final LongAdder unkeyed = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param seen 记录已出现键的过滤器
+     */
+    public DedupFilter(RotatingBloomFilter seen) {
+        this.seen = seen;
+    }
+
+    /**
+     * 误判率为万分之一
+     *
+     * @param capacity     窗口内最多记录的弹幕数，超出时提前轮转
+     * @param windowMillis 窗口长度（毫秒），应大于两条连接收到同一条弹幕的最大时间差
+     * @return 过滤器
+     */
+    public static DedupFilter of(int capacity, long windowMillis) {
+        return new DedupFilter(new RotatingBloomFilter(capacity, windowMillis, DEFAULT_FPP));
+    }
+
+    /**
+     * 在注册表中为DANMU_MSG安装该过滤器
+     * 应先于{@link DanmuFilter}安装，否则重复的弹幕会被刷屏检测计入
+     *
+     * @param registry 命令处理函数注册表
+     * @return 注册表
+     */
+    public HandlerRegistry installOn(HandlerRegistry registry) {
+        return registry.filter(Command.DANMU_MSG.cmd, this);
+    }
+
+    /**
+     * 判断弹幕是否首次出现
+     *
+     * @param message DANMU_MSG消息
+     * @return 是否首次出现，无法识别的弹幕总是通过
+     */
+    @Override
+    public boolean test(LazyMessage message) {
+        long key = key(message);
+        if (key == 0) {
+            unkeyed.increment();
+            return true;
+        }
+        if (seen.add(key)) {
+            passed.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * @return 首次出现、通过的弹幕数
+     */
+    public long passed() {
+        return passed.sum();
+    }
+
+    /**
+     * @return 判定为重复、丢弃的弹幕数
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 无法计算键、直接通过的弹幕数
+     */
+    public long unkeyed() {
+        return unkeyed.sum();
+    }
+
+    /**
+     * @return 按当前填充程度估算的误判率
+     */
+    public double falsePositiveRate() {
+        return seen.falsePositiveRate();
+    }
+
+    /**
+     * 将去重计数注册到监控指标
+     *
+     * @param metrics 监控指标
+     * @return 当前过滤器
+     */
+    public DedupFilter register(DanmuMetrics metrics) {
+        metrics.counter("dedup_passed_total", "去重后通过的弹幕数", this::passed);
+        metrics.counter("dedup_dropped_total", "判定为重复的弹幕数", this::dropped);
+        metrics.counter("dedup_unkeyed_total", "无法识别、未去重的弹幕数", this::unkeyed);
+        metrics.counter("dedup_rotations_total", "去重窗口轮转次数", seen::rotations);
+        metrics.gauge("dedup_false_positive_ppm", () -> Math.round(falsePositiveRate() * 1e6));
+        return this;
+    }
+
+    /**
+     * 计算弹幕的键
+     *
+     * @return 64位键，无法识别时返回0
+     */
+    private static long key(LazyMessage message) {
+        // 扫描结果缓存在消息视图中，与之后的弹幕过滤器共用
+        DanmuScanner scanner = message.danmu();
+        if (scanner != null) {
+            int idLength = scanner.scanId();
+            if (idLength > 0) {
+                return key(message.roomId(), HashUtil.fnv1a(scanner.id(), idLength));
+            }
+            long timestamp = scanner.timestamp();
+            if (timestamp <= 0) {
+                return 0;
+            }
+            return key(message.roomId(), timestamp, scanner.uid(), HashUtil.fnv1a(scanner.text(), scanner.textLength()));
+        }
+        // 解析结果缓存在消息视图中，之后的处理函数不会重复解析
+        JSONArray info = message.info();
+        JSONArray meta = info == null ? null : info.optJSONArray(0);
+        if (meta == null) {
+            return 0;
+        }
+        String id = id(meta.optJSONObject(15));
+        if (id != null) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            return key(message.roomId(), HashUtil.fnv1a(bytes, bytes.length));
+        }
+        long timestamp = meta.optLong(4);
+        if (timestamp <= 0) {
+            return 0;
+        }
+        byte[] text = info.optString(1).getBytes(StandardCharsets.UTF_8);
+        JSONArray user = info.optJSONArray(2);
+        return key(message.roomId(), timestamp, user == null ? 0 : user.optLong(0), HashUtil.fnv1a(text, text.length));
+    }
+
+    /**
+     * 从弹幕扩展属性中读取消息ID
+     */
+    private static String id(JSONObject extended) {
+        if (extended == null) {
+            return null;
+        }
+        Object extra = extended.opt("extra");
+        try {
+            JSONObject object = extra instanceof JSONObject ? (JSONObject) extra
+                    : extra instanceof String ? new JSONObject((String) extra) : null;
+            String id = object == null ? null : object.optString("id_str", null);
+            return id == null || id.isEmpty() ? null : id;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按消息ID计算的键
+     */
+    private static long key(long roomId, long idHash) {
+        return nonZero(HashUtil.mix(idHash ^ HashUtil.mix(roomId)));
+    }
+
+    /**
+     * 按发送时间、用户和内容计算的键
+     */
+    private static long key(long roomId, long timestamp, long uid, long textHash) {
+        long h = HashUtil.mix(textHash ^ uid);
+        h = HashUtil.mix(h ^ timestamp);
+        return nonZero(HashUtil.mix(h ^ HashUtil.mix(roomId)));
+    }
+
+    /**
+     * 0表示无法识别，恰好为0的键映射为1
+     */
+    private static long nonZero(long key) {
+        return key == 0 ? 1 : key;
+    }
+}
@@ -0,0 +1,281 @@
+package com.rain.danmu.filter;
+
+import com.rain.danmu.util.HashUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * 按用户的刷屏检测
+ * 每条弹幕计算一个64位相似度签名：
+ * 1. 规范化：ASCII字母转小写，跳过ASCII空白和标点，只保留字母、数字和多字节字符
+ * 2. 用Rabin-Karp滚动哈希枚举每个6字节的片段（shingle），短于6字节时整体作为一个片段
+ * 3. 单次排列MinHash：片段哈希按低3位分到8个桶，每桶保留最小值的高7位，空桶借用相邻桶，拼成签名
+ * 两条弹幕签名中相同的字节数约为 8 × 片段集合的Jaccard相似度，至少一半相同即视为近似重复，
+ * 能识别追加字符、替换个别字、改变标点等常见的刷屏变体
+ * 每个用户记录最近4条签名，窗口内连续发送与其中任一条近似的弹幕超过maxDuplicates条即判定为刷屏，
+ * 发送不相似的弹幕或间隔超过窗口后重新计数
+ * 用户表为4路组相联，组满时淘汰最久未发言的用户；按组分段加锁，可被多个连接线程共享
+ */
+public final class FloodDetector {
+
+    // 片段长度（字节）
+    private static final int SHINGLE = 6;
+
+    // Rabin-Karp基数
+    private static final long BASE = 0x100000001B3L;
+
+    // 基数的SHINGLE次幂，用于移出窗口最早的字节
+    private static final long BASE_POW;
+
+    // 每个用户记录的签名数
+    private static final int HISTORY = 4;
+
+    // 判定为近似重复所需的相同签名字节数
+    private static final int SIMILAR = 4;
+
+    // 每组的路数
+    private static final int WAYS = 4;
+
+    static {
+        long pow = 1;
+        for (int i = 0; i < SHINGLE; i++) {
+            pow *= BASE;
+        }
+        BASE_POW = pow;
+    }
+
+    // 窗口长度（毫秒），同一用户两条弹幕间隔超过该值时重新计数
+    private final long windowMillis;
+
+    // 允许的连续近似重复条数
+    private final int maxDuplicates;
+
+    // 时钟（毫秒）
+    private final LongSupplier clock;
+
+    // 用户ID
+    private final long[] uids;
+
+    // 最近发言时间，Long.MIN_VALUE表示空位
+    private final long[] lastSeen;
+
+    // 连续近似重复条数
+    private final int[] streaks;
+
+    // 最近的签名，每个用户HISTORY个
+    private final long[] history;
+
+    // 下一个签名写入位置
+    private final byte[] cursors;
+
+    // 分段锁
+    private final Object[] locks;
+
+    // 组数减一，用于取模
+    private final int mask;
+
+    /**
+     * 构造函数，使用系统时钟
+     *
+     * @param capacity      最多跟踪的用户数，向上取整为2的幂
+     * @param windowMillis  窗口长度（毫秒）
+     * @param maxDuplicates 允许的连续近似重复条数
+     */
+    public FloodDetector(int capacity, long windowMillis, int maxDuplicates) {
+        this(capacity, windowMillis, maxDuplicates, System::currentTimeMillis);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity      最多跟踪的用户数，向上取整为2的幂
+     * @param windowMillis  窗口长度（毫秒）
+     * @param maxDuplicates 允许的连续近似重复条数
+     * @param clock         时钟（毫秒）
+     */
+    public FloodDetector(int capacity, long windowMillis, int maxDuplicates, LongSupplier clock) {
+        if (capacity < WAYS || windowMillis <= 0 || maxDuplicates < 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        int sets = Integer.highestOneBit((capacity + WAYS - 1) / WAYS * 2 - 1);
+        this.windowMillis = windowMillis;
+        this.maxDuplicates = maxDuplicates;
+        this.clock = clock;
+        this.uids = new long[sets * WAYS];
+        this.lastSeen = new long[sets * WAYS];
+        this.streaks = new int[sets * WAYS];
+        this.history = new long[sets * WAYS * HISTORY];
+        this.cursors = new byte[sets * WAYS];
+        this.locks = new Object[Math.min(sets, 64)];
+        this.mask = sets - 1;
+        Arrays.fill(lastSeen, Long.MIN_VALUE);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 记录一条弹幕并判断是否刷屏
+     *
+     * @param uid  用户ID
+     * @param text 弹幕内容
+     * @return 是否判定为刷屏
+     */
+    public boolean offer(long uid, CharSequence text) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        return offer(uid, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 记录一条弹幕并判断是否刷屏，被判定为刷屏的弹幕同样计入历史
+     *
+     * @param uid    用户ID
+     * @param text   弹幕内容（UTF-8）
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 是否判定为刷屏
+     */
+    public boolean offer(long uid, byte[] text, int offset, int length) {
+        long signature = signature(text, offset, length);
+        long now = clock.getAsLong();
+        int set = (int) HashUtil.mix(uid) & mask;
+        synchronized (locks[set & (locks.length - 1)]) {
+            int entry = entry(set, uid);
+            int streak;
+            if (lastSeen[entry] == Long.MIN_VALUE || uids[entry] != uid || now - lastSeen[entry] > windowMillis) {
+                // 新用户或间隔超过窗口，清空历史
+                uids[entry] = uid;
+                Arrays.fill(history, entry * HISTORY, entry * HISTORY + HISTORY, 0);
+                cursors[entry] = 0;
+                streak = 0;
+            } else {
+                streak = similar(entry, signature) ? streaks[entry] + 1 : 0;
+            }
+            lastSeen[entry] = now;
+            streaks[entry] = streak;
+            history[entry * HISTORY + cursors[entry]] = signature;
+            cursors[entry] = (byte) ((cursors[entry] + 1) % HISTORY);
+            return streak > maxDuplicates;
+        }
+    }
+
+    /**
+     * 计算弹幕的相似度签名
+     *
+     * @param text   弹幕内容（UTF-8）
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 8个桶各占8位拼成的签名
+     */
+    public static long signature(byte[] text, int offset, int length) {
+        // 8个桶的最小值，每个桶占8位：高1位表示非空，低7位为桶内最小哈希的高位
+        long mins = 0;
+        // 最近SHINGLE个字节组成的移位寄存器，用于取出移出窗口的字节
+        long window = 0;
+        long hash = 0;
+        int count = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = text[i];
+            if (b >= 'A' && b <= 'Z') {
+                b |= 0x20;
+            } else if (b >= 0 && !(b >= 'a' && b <= 'z') && !(b >= '0' && b <= '9')) {
+                continue;
+            }
+            int in = b & 0xFF;
+            int out = (int) (window >>> (8 * (SHINGLE - 1))) & 0xFF;
+            window = (window << 8 | in) & ((1L << (8 * SHINGLE)) - 1);
+            hash = hash * BASE + in - (count >= SHINGLE ? out * BASE_POW : 0);
+            if (++count >= SHINGLE) {
+                mins = minhash(mins, hash);
+            }
+        }
+        if (count < SHINGLE) {
+            mins = minhash(mins, hash);
+        }
+        return densify(mins);
+    }
+
+    /**
+     * 两个签名中相同的字节数（0~8），约为片段集合Jaccard相似度的8倍
+     *
+     * @param a 签名
+     * @param b 签名
+     * @return 相同的字节数
+     */
+    public static int similarity(long a, long b) {
+        long diff = a ^ b;
+        int same = 0;
+        for (int i = 0; i < 8; i++, diff >>>= 8) {
+            if ((diff & 0xFF) == 0) {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    /**
+     * 单次排列MinHash：片段哈希的低3位选桶，桶内保留其余位的最小值
+     * 桶值取反存放，使非空标记位参与比较：数值越大表示哈希越小
+     */
+    private static long minhash(long mins, long hash) {
+        long h = HashUtil.mix(hash);
+        int shift = (int) (h & 7) * 8;
+        long value = 0x80 | (~h >>> 57);
+        if (value > (mins >>> shift & 0xFF)) {
+            mins = mins & ~(0xFFL << shift) | value << shift;
+        }
+        return mins;
+    }
+
+    /**
+     * 空桶借用右侧第一个非空桶的值（循环），片段很少的短弹幕也能得到完整签名
+     */
+    private static long densify(long mins) {
+        long signature = mins;
+        for (int i = 0; i < 8; i++) {
+            if ((signature >>> (i * 8) & 0x80) != 0) {
+                continue;
+            }
+            for (int j = 1; j < 8; j++) {
+                long value = mins >>> ((i + j) % 8 * 8) & 0xFF;
+                if (value != 0) {
+                    // 借用的值与桶号混合，避免不同桶借到相同值而虚增相似度
+                    signature |= (value ^ j << 4 & 0x70) << (i * 8);
+                    break;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 签名是否与用户的任一历史签名近似
+     */
+    private boolean similar(int entry, long signature) {
+        for (int i = entry * HISTORY, end = i + HISTORY; i < end; i++) {
+            if (history[i] != 0 && similarity(history[i], signature) >= SIMILAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找用户所在的位置，不存在时返回组内最久未发言的位置
+     */
+    private int entry(int set, long uid) {
+        int base = set * WAYS;
+        int victim = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (lastSeen[i] != Long.MIN_VALUE && uids[i] == uid) {
+                return i;
+            }
+            if (lastSeen[i] < lastSeen[victim]) {
+                victim = i;
+            }
+        }
+        return victim;
+    }
+}
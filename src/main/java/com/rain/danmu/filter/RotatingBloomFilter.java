@@ -0,0 +1,272 @@
+package com.rain.danmu.filter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 限时、限内存的轮转Bloom过滤器，用于判断64位键是否在最近一段时间内出现过
+ * 维护新旧两代位图，查询同时检查两代，插入只写入新一代；新一代存在满window毫秒或插入满capacity个键时轮转，
+ * 旧一代被丢弃。未触发容量轮转时，键至少被记住window毫秒、至多2倍；键过多时提前轮转，
+ * 记忆时间缩短但内存和误判率不变
+ * 每代按capacity个键、误判率fpp/2设计，两代合计的误判率不超过fpp；
+ * 按位图中已置位的比例可估算当前的实际误判率，见{@link #falsePositiveRate()}
+ * 同一个键的查询和插入在分段锁内原子完成，多个线程同时提交同一个键时只有一个返回首次出现
+ */
+public final class RotatingBloomFilter {
+
+    // 按原子操作访问位图
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // 分段锁数量
+    private static final int STRIPES = 64;
+
+    // 每代最多插入的键数
+    private final int capacity;
+
+    // 每代的存在时间（毫秒）
+    private final long windowMillis;
+
+    // 每代的位数
+    private final int bits;
+
+    // 每个键置位的个数
+    private final int hashes;
+
+    // 时钟（毫秒）
+    private final LongSupplier clock;
+
+    // 分段锁
+    private final Object[] locks = new Object[STRIPES];
+
+    // 新一代
+    private volatile Generation current;
+
+    // 旧一代
+    private volatile Generation previous;
+
+    // 查询的键数
+    private final LongAdder queries = new LongAdder();
+
+    // 判定为已出现的键数
+    private final LongAdder hits = new LongAdder();
+
+    // 轮转次数
+    private final LongAdder rotations = new LongAdder();
+
+    /**
+     * 构造函数，使用系统时钟
+     *
+     * @param capacity     每代最多插入的键数
+     * @param windowMillis 每代的存在时间（毫秒）
+     * @param fpp          目标误判率，取值(0, 1)
+     */
+    public RotatingBloomFilter(int capacity, long windowMillis, double fpp) {
+        this(capacity, windowMillis, fpp, System::currentTimeMillis);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity     每代最多插入的键数
+     * @param windowMillis 每代的存在时间（毫秒）
+     * @param fpp          目标误判率，取值(0, 1)
+     * @param clock        时钟（毫秒）
+     */
+    public RotatingBloomFilter(int capacity, long windowMillis, double fpp, LongSupplier clock) {
+        if (capacity <= 0 || windowMillis <= 0 || !(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        // m = -n·ln(p) / ln(2)²，k = m/n·ln(2)
+        double m = Math.ceil(-capacity * Math.log(fpp / 2) / (Math.log(2) * Math.log(2)));
+        if (m > Integer.MAX_VALUE - 63) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.capacity = capacity;
+        this.windowMillis = windowMillis;
+        this.bits = ((int) m + 63) & ~63;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        long now = clock.getAsLong();
+        this.previous = new Generation(bits, now);
+        this.current = new Generation(bits, now);
+    }
+
+    /**
+     * 查询键是否出现过，未出现时记录
+     *
+     * @param key 键，应已充分混合，各位分布均匀
+     * @return 是否首次出现，出现过或误判时返回false
+     */
+    public boolean add(long key) {
+        queries.increment();
+        rotate();
+        Generation gen;
+        synchronized (locks[(int) (key >>> 58)]) {
+            // 在锁内重新读取两代：锁外取得的新一代可能已被轮转为旧一代，同一个键的上一次插入可能在任一代中；
+            // 先读新一代，其间发生轮转时两次读到同一代，只会漏看即将丢弃的那一代
+            gen = current;
+            Generation old = previous;
+            if (gen.contains(key, hashes) || old != gen && old.contains(key, hashes)) {
+                hits.increment();
+                return false;
+            }
+            gen.put(key, hashes);
+        }
+        gen.count.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 查询键是否出现过，不记录
+     *
+     * @param key 键
+     * @return 是否出现过，可能误判
+     */
+    public boolean contains(long key) {
+        return current.contains(key, hashes) || previous.contains(key, hashes);
+    }
+
+    /**
+     * 按两代位图的置位比例估算当前的误判率：每代为 (置位数/位数)^k，两代合计为 1 - (1 - p新)(1 - p旧)
+     *
+     * @return 一个从未出现过的键被判定为出现过的概率
+     */
+    public double falsePositiveRate() {
+        double p1 = current.falsePositiveRate(bits, hashes);
+        double p2 = previous.falsePositiveRate(bits, hashes);
+        return 1 - (1 - p1) * (1 - p2);
+    }
+
+    /**
+     * @return 位图占用的字节数（两代合计）
+     */
+    public long memoryBytes() {
+        return 2L * bits / 8;
+    }
+
+    /**
+     * @return 每个键置位的个数
+     */
+    public int hashes() {
+        return hashes;
+    }
+
+    /**
+     * @return 查询的键数
+     */
+    public long queries() {
+        return queries.sum();
+    }
+
+    /**
+     * @return 判定为已出现的键数
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 轮转次数
+     */
+    public long rotations() {
+        return rotations.sum();
+    }
+
+    /**
+     * 新一代到期或已满时轮转
+     */
+    private void rotate() {
+        Generation gen = current;
+        long now = clock.getAsLong();
+        if (now - gen.createdMillis < windowMillis && gen.count.get() < capacity) {
+            return;
+        }
+        synchronized (this) {
+            gen = current;
+            if (now - gen.createdMillis >= windowMillis || gen.count.get() >= capacity) {
+                // 先替换旧一代：并发的查询最多漏看即将丢弃的那一代
+                previous = gen;
+                current = new Generation(bits, now);
+                rotations.increment();
+            }
+        }
+    }
+
+    /**
+     * 一代位图
+     */
+    private static final class Generation {
+
+        // 位图
+        final long[] words;
+
+        // 创建时间（毫秒）
+        final long createdMillis;
+
+        // 插入的键数
+        final AtomicInteger count = new AtomicInteger();
+
+        // 已置位的个数
+        final LongAdder ones = new LongAdder();
+
+        Generation(int bits, long createdMillis) {
+            this.words = new long[bits >>> 6];
+            this.createdMillis = createdMillis;
+        }
+
+        /**
+         * 检查键的所有位是否都已置位
+         */
+        boolean contains(long key, int hashes) {
+            int h1 = (int) key;
+            int h2 = (int) (key >>> 32) | 1;
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(h1 + i * h2);
+                long word = (long) WORDS.getOpaque(words, bit >>> 6);
+                if ((word & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 置位键的所有位
+         */
+        void put(long key, int hashes) {
+            int h1 = (int) key;
+            int h2 = (int) (key >>> 32) | 1;
+            int set = 0;
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(h1 + i * h2);
+                long mask = 1L << bit;
+                // 位只会从0变为1，已置位时省去原子操作
+                if (((long) WORDS.getOpaque(words, bit >>> 6) & mask) == 0
+                        && ((long) WORDS.getAndBitwiseOr(words, bit >>> 6, mask) & mask) == 0) {
+                    set++;
+                }
+            }
+            ones.add(set);
+        }
+
+        /**
+         * 将32位哈希映射到[0, 位数)，乘法代替取模
+         */
+        private int index(int hash) {
+            return (int) (((hash & 0xFFFFFFFFL) * ((long) words.length << 6)) >>> 32);
+        }
+
+        /**
+         * 按置位比例估算本代的误判率
+         */
+        double falsePositiveRate(int bits, int hashes) {
+            return Math.pow((double) ones.sum() / bits, hashes);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.rain.danmu.journal;
+
+import com.rain.danmu.enums.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写日志
+ * 由若干内存映射的分段文件组成，记录只追加不修改：
+ * 1. 偏移量为分段起始偏移量加记录在分段内的位置，跨分段连续递增
+ * 2. 当前分段写满后封存并创建新分段，按数量和时间清理旧分段
+ * 3. 按{@link FsyncPolicy}刷盘，ALWAYS策略下并发追加合并为一次刷盘
+ * 4. 重新打开时校验最后一个分段的CRC，丢弃崩溃时写了一半的记录
+ * 通过{@link #reader(long)}从任意偏移量开始读取并追踪新记录
+ */
+public class Journal implements AutoCloseable {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(Journal.class);
+
+    // 所有日志共享的后台刷盘线程
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "danmu-journal-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 日志目录
+    private final Path dir;
+
+    // 配置
+    private final JournalConfig config;
+
+    // 所有分段，按偏移量排列，整体替换
+    private volatile Segment[] segments;
+
+    // 追加锁
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 刷盘锁，组提交时后到的写者等待先到的写者完成刷盘；持锁期间有磁盘I/O，不使用synchronized以免占住虚拟线程的载体线程
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // 追加使用的CRC，仅在持有追加锁时使用
+    private final CRC32 crc = new CRC32();
+
+    // 下一条记录的偏移量
+    private volatile long endOffset;
+
+    // 已刷盘的偏移量
+    private volatile long durableOffset;
+
+    // 定时刷盘任务
+    private final ScheduledFuture<?> flushTask;
+
+    // 是否已关闭
+    private volatile boolean closed;
+
+    private Journal(Path dir, JournalConfig config, Segment[] segments) {
+        this.dir = dir;
+        this.config = config;
+        this.segments = segments;
+        Segment active = segments[segments.length - 1];
+        this.endOffset = active.baseOffset + active.end;
+        this.durableOffset = endOffset;
+        this.flushTask = config.fsyncPolicy == FsyncPolicy.INTERVAL
+                ? FLUSHER.scheduleWithFixedDelay(this::flushQuietly, config.flushIntervalMillis, config.flushIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * 打开或创建日志
+     *
+     * @param dir    日志目录，不存在时创建
+     * @param config 配置
+     * @return 日志
+     */
+    public static Journal open(Path dir, JournalConfig config) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(Segment.SUFFIX)).sorted().toList();
+        }
+        List<Segment> segments = new ArrayList<>(files.size() + 1);
+        for (int i = 0; i < files.size(); i++) {
+            segments.add(Segment.open(files.get(i), i == files.size() - 1));
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.create(dir, 0, config.segmentBytes));
+        }
+        return new Journal(dir, config, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param src    数据所在的缓冲区，不改变其position
+     * @param offset 数据起始位置
+     * @param length 数据长度
+     * @return 记录的偏移量
+     */
+    public long append(ByteBuffer src, int offset, int length) {
+        if (length <= 0 || length > config.segmentBytes - Segment.HEADER) {
+            throw new IllegalArgumentException("记录长度非法: " + length);
+        }
+        long recordOffset;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("日志已关闭");
+            }
+            Segment active = segments[segments.length - 1];
+            int position = active.end;
+            if (position + Segment.HEADER + length > active.capacity()) {
+                active = roll(active);
+                position = 0;
+            }
+            crc.reset();
+            if (src.hasArray()) {
+                crc.update(src.array(), src.arrayOffset() + offset, length);
+            } else {
+                crc.update(src.duplicate().limit(offset + length).position(offset));
+            }
+            active.buffer.put(position + Segment.HEADER, src, offset, length);
+            active.buffer.putInt(position + 4, (int) crc.getValue());
+            active.buffer.putInt(position, length);
+            active.end = position + Segment.HEADER + length;
+            recordOffset = active.baseOffset + position;
+            endOffset = active.baseOffset + active.end;
+        } finally {
+            lock.unlock();
+        }
+        if (config.fsyncPolicy == FsyncPolicy.ALWAYS) {
+            flushTo(endOffset);
+        }
+        return recordOffset;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param record 记录内容
+     * @return 记录的偏移量
+     */
+    public long append(byte[] record) {
+        return append(ByteBuffer.wrap(record), 0, record.length);
+    }
+
+    /**
+     * 立即刷盘
+     */
+    public void flush() {
+        flushTo(endOffset);
+    }
+
+    /**
+     * 创建从指定偏移量开始的读取器
+     * 偏移量早于最早的分段时从最早的记录开始
+     *
+     * @param offset 起始偏移量，通常为上次处理到的{@link JournalReader#position()}
+     * @return 读取器
+     */
+    public JournalReader reader(long offset) {
+        return new JournalReader(this, offset);
+    }
+
+    /**
+     * @return 最早一条可读记录的偏移量
+     */
+    public long startOffset() {
+        return segments[0].baseOffset;
+    }
+
+    /**
+     * @return 下一条记录的偏移量
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return 已刷盘的偏移量
+     */
+    public long durableOffset() {
+        return durableOffset;
+    }
+
+    /**
+     * 当前所有分段
+     */
+    Segment[] segments() {
+        return segments;
+    }
+
+    /**
+     * 刷盘并关闭
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (flushTask != null) {
+                flushTask.cancel(false);
+            }
+            if (config.fsyncPolicy != FsyncPolicy.NONE) {
+                flushTo(endOffset);
+            }
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前分段并创建新分段，需持有追加锁
+     */
+    private Segment roll(Segment active) {
+        if (config.fsyncPolicy != FsyncPolicy.NONE) {
+            active.force();
+        }
+        try {
+            Segment next = Segment.create(dir, active.baseOffset + active.end, config.segmentBytes);
+            Segment[] current = segments;
+            Segment[] rolled = Arrays.copyOf(current, current.length + 1);
+            rolled[current.length] = next;
+            segments = retain(rolled);
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按数量和时间清理已封存的分段，当前分段始终保留
+     */
+    private Segment[] retain(Segment[] all) {
+        int drop = 0;
+        if (config.maxSegments > 0 && all.length > config.maxSegments) {
+            drop = all.length - config.maxSegments;
+        }
+        if (config.retentionMillis > 0) {
+            long deadline = System.currentTimeMillis() - config.retentionMillis;
+            while (drop < all.length - 1 && lastModified(all[drop]) < deadline) {
+                drop++;
+            }
+        }
+        for (int i = 0; i < drop; i++) {
+            try {
+                all[i].delete();
+            } catch (IOException e) {
+                LOGGER.warn("删除分段失败: {}", all[i].path, e);
+            }
+        }
+        return drop == 0 ? all : Arrays.copyOfRange(all, drop, all.length);
+    }
+
+    /**
+     * 分段文件的修改时间
+     */
+    private static long lastModified(Segment segment) {
+        try {
+            return Files.getLastModifiedTime(segment.path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 刷盘直到target，已有其他线程完成时直接返回
+     */
+    private void flushTo(long target) {
+        if (durableOffset >= target) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (durableOffset >= target) {
+                return;
+            }
+            // 先读偏移量再刷盘，已封存的分段在封存时已刷盘
+            long end = endOffset;
+            Segment[] current = segments;
+            current[current.length - 1].force();
+            durableOffset = end;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 定时刷盘，异常只记录日志
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.warn("日志刷盘失败: {}", dir, e);
+        }
+    }
+}
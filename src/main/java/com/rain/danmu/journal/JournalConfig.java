@@ -0,0 +1,49 @@
+package com.rain.danmu.journal;
+
+import com.rain.danmu.enums.FsyncPolicy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志配置
+ */
+public class JournalConfig {
+
+    /**
+     * 默认配置：64MB分段，每秒刷盘，最多保留16个分段或7天
+     */
+    public static final JournalConfig DEFAULT = new JournalConfig(64 * 1024 * 1024, FsyncPolicy.INTERVAL, 1000, 16, TimeUnit.DAYS.toMillis(7));
+
+    // 单个分段文件的大小（字节）
+    public final int segmentBytes;
+
+    // 刷盘策略
+    public final FsyncPolicy fsyncPolicy;
+
+    // INTERVAL策略的刷盘间隔（毫秒）
+    public final long flushIntervalMillis;
+
+    // 最多保留的分段数，0表示不限制
+    public final int maxSegments;
+
+    // 已封存分段的最长保留时间（毫秒），0表示不限制
+    public final long retentionMillis;
+
+    /**
+     * @param segmentBytes        单个分段文件的大小（字节）
+     * @param fsyncPolicy         刷盘策略
+     * @param flushIntervalMillis INTERVAL策略的刷盘间隔（毫秒）
+     * @param maxSegments         最多保留的分段数，0表示不限制
+     * @param retentionMillis     已封存分段的最长保留时间（毫秒），0表示不限制
+     */
+    public JournalConfig(int segmentBytes, FsyncPolicy fsyncPolicy, long flushIntervalMillis, int maxSegments, long retentionMillis) {
+        if (segmentBytes < 4096 || flushIntervalMillis <= 0 || maxSegments < 0 || retentionMillis < 0) {
+            throw new IllegalArgumentException("参数非法");
+        }
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxSegments = maxSegments;
+        this.retentionMillis = retentionMillis;
+    }
+}
@@ -0,0 +1,106 @@
+package com.rain.danmu.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 日志读取器
+ * 从指定偏移量开始按顺序读取记录，读到末尾后再次调用{@link #poll(RecordHandler, int)}即可读取新追加的记录
+ * 单个读取器只能在一个线程中使用，多个读取器之间互不影响
+ */
+public class JournalReader {
+
+    // 所属日志
+    private final Journal journal;
+
+    // 当前分段
+    private Segment segment;
+
+    // 当前分段的只读视图
+    private ByteBuffer view;
+
+    // 在当前分段内的位置
+    private int position;
+
+    JournalReader(Journal journal, long offset) {
+        this.journal = journal;
+        seek(offset);
+    }
+
+    /**
+     * 读取记录
+     *
+     * @param handler 记录处理函数，缓冲区仅在回调期间有效
+     * @param max     最多读取的记录数
+     * @return 实际读取的记录数，0表示暂无新记录
+     */
+    public int poll(RecordHandler handler, int max) {
+        int count = 0;
+        while (count < max) {
+            int end = segment.end;
+            if (position < end) {
+                int length = view.getInt(position);
+                handler.onRecord(segment.baseOffset + position, view, position + Segment.HEADER, length);
+                position += Segment.HEADER + length;
+                count++;
+            } else if (!next()) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 下一条待读记录的偏移量，可保存后用于恢复读取
+     */
+    public long position() {
+        return segment.baseOffset + position;
+    }
+
+    /**
+     * 定位到指定偏移量，偏移量必须是记录起始位置
+     *
+     * @param offset 偏移量
+     */
+    public void seek(long offset) {
+        Segment[] segments = journal.segments();
+        Segment target = segments[0];
+        for (Segment candidate : segments) {
+            if (candidate.baseOffset <= offset) {
+                target = candidate;
+            }
+        }
+        open(target, (int) Math.min(Math.max(offset - target.baseOffset, 0), target.end));
+    }
+
+    /**
+     * 当前分段已封存时切换到下一个分段
+     */
+    private boolean next() {
+        Segment[] segments = journal.segments();
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (segments[i] == segment) {
+                // 封存后end不再变化，再次确认没有遗漏的记录
+                if (position < segment.end) {
+                    return true;
+                }
+                open(segments[i + 1], 0);
+                return true;
+            }
+        }
+        // 当前分段已被清理，从最早的分段继续
+        if (segments[0].baseOffset > segment.baseOffset) {
+            open(segments[0], 0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 切换分段
+     */
+    private void open(Segment segment, int position) {
+        this.segment = segment;
+        this.view = segment.buffer.asReadOnlyBuffer();
+        this.position = position;
+    }
+}
@@ -0,0 +1,125 @@
+package com.rain.danmu.journal;
+
+import com.rain.danmu.client.Command;
+import com.rain.danmu.client.HandlerRegistry;
+import com.rain.danmu.codec.EventCodec;
+import com.rain.danmu.model.LiveEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按房间划分的日志集合
+ * 每个房间一个目录：root/房间号，首次写入时打开
+ */
+public class JournalStore implements AutoCloseable {
+
+    // 事件编码使用的线程独占编解码器和缓冲区，带类型的处理函数可能在分发器线程上执行
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    // 根目录
+    private final Path root;
+
+    // 配置
+    private final JournalConfig config;
+
+    // 房间号 -> 日志
+    private final Map<Long, Journal> journals = new ConcurrentHashMap<>();
+
+    public JournalStore(Path root) {
+        this(root, JournalConfig.DEFAULT);
+    }
+
+    public JournalStore(Path root, JournalConfig config) {
+        this.root = root;
+        this.config = config;
+    }
+
+    /**
+     * 获取房间的日志，不存在时打开或创建
+     *
+     * @param roomId 房间号
+     * @return 日志
+     */
+    public Journal journal(long roomId) {
+        Journal journal = journals.get(roomId);
+        if (journal != null) {
+            return journal;
+        }
+        return journals.computeIfAbsent(roomId, key -> {
+            try {
+                return Journal.open(root.resolve(String.valueOf(key)), config);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 将指定命令的原始消息体写入对应房间的日志
+     * 原始处理函数在带类型的处理函数之前执行，写入发生在业务回调之前
+     *
+     * @param registry 处理函数注册表
+     * @param cmds     要记录的命令字
+     * @return 注册表
+     */
+    public HandlerRegistry recordOn(HandlerRegistry registry, String... cmds) {
+        for (String cmd : cmds) {
+            registry.onRaw(cmd, message -> journal(message.roomId()).append(message.buffer(), message.offset(), message.length()));
+        }
+        return registry;
+    }
+
+    /**
+     * 将指定命令的事件以{@link EventCodec}二进制格式写入对应房间的日志
+     * 读取时在{@link RecordHandler}中调用{@link EventCodec#decode(ByteBuffer, int, int, LiveEvent)}还原事件
+     *
+     * @param registry 处理函数注册表
+     * @param commands 要记录的命令
+     * @return 注册表
+     */
+    public HandlerRegistry recordOn(HandlerRegistry registry, Command<?>... commands) {
+        for (Command<?> command : commands) {
+            registry.on(command, this::append);
+        }
+        return registry;
+    }
+
+    /**
+     * 编码事件并写入对应房间的日志
+     *
+     * @param event 事件
+     * @return 记录的偏移量
+     */
+    public long append(LiveEvent event) {
+        Encoder encoder = ENCODER.get();
+        encoder.buffer.clear();
+        int length = encoder.codec.encode(event, encoder.buffer);
+        return journal(event.roomId).append(encoder.buffer, 0, length);
+    }
+
+    /**
+     * 关闭所有日志
+     */
+    @Override
+    public void close() {
+        journals.values().forEach(Journal::close);
+        journals.clear();
+    }
+
+    /**
+     * 线程独占的编码器
+     */
+    private static final class Encoder {
+
+        // 编解码器
+        final EventCodec codec = new EventCodec();
+
+        // 编码缓冲区
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    }
+}
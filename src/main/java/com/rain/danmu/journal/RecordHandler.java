@@ -0,0 +1,21 @@
+package com.rain.danmu.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 日志记录回调
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+    /**
+     * 读取到一条记录
+     * 缓冲区为只读视图，请使用绝对位置读取，视图仅在回调期间有效
+     *
+     * @param offset   记录的偏移量
+     * @param buffer   记录所在的缓冲区
+     * @param position 记录内容的起始位置
+     * @param length   记录内容的长度
+     */
+    void onRecord(long offset, ByteBuffer buffer, int position, int length);
+}
@@ -0,0 +1,147 @@
+package com.rain.danmu.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 日志分段
+ * 固定大小的内存映射文件，文件名为分段起始偏移量
+ * 记录格式：内容长度（4字节）、内容CRC32（4字节）、内容
+ */
+final class Segment {
+
+    // 记录头部长度
+    static final int HEADER = 8;
+
+    // 分段文件后缀
+    static final String SUFFIX = ".seg";
+
+    // 起始偏移量
+    final long baseOffset;
+
+    // 文件路径
+    final Path path;
+
+    // 文件通道
+    private final FileChannel channel;
+
+    // 映射缓冲区
+    final MappedByteBuffer buffer;
+
+    // 已写入的位置，写入完成后才更新，读者不会读到半条记录
+    volatile int end;
+
+    // 已刷盘的位置，持有刷盘锁时访问
+    private int forced;
+
+    // 刷盘锁，持锁期间有磁盘I/O，不使用synchronized以免占住虚拟线程的载体线程
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 创建新的分段文件
+     */
+    static Segment create(Path dir, long baseOffset, int size) throws IOException {
+        Path path = dir.resolve(fileName(baseOffset));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(baseOffset, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    /**
+     * 打开已有的分段文件并恢复写入位置
+     *
+     * @param verify 是否校验CRC，最后一个分段可能在崩溃时写了半条记录，需要校验
+     */
+    static Segment open(Path path, boolean verify) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(baseOffset, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.end = segment.recover(verify);
+        segment.forced = segment.end;
+        return segment;
+    }
+
+    /**
+     * 从头扫描记录，返回最后一条完整记录之后的位置
+     */
+    private int recover(boolean verify) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER + length > buffer.capacity()) {
+                break;
+            }
+            if (verify) {
+                crc.reset();
+                crc.update(view.limit(position + HEADER + length).position(position + HEADER));
+                view.clear();
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    break;
+                }
+            }
+            position += HEADER + length;
+        }
+        return position;
+    }
+
+    /**
+     * @return 分段容量
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 将已写入但未刷盘的部分写回磁盘
+     */
+    void force() {
+        forceLock.lock();
+        try {
+            int current = end;
+            if (current > forced) {
+                buffer.force(forced, current - forced);
+                forced = current;
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭文件通道，映射在缓冲区被回收后释放
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 删除分段文件
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * 分段文件名，按偏移量补零便于排序
+     */
+    static String fileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, SUFFIX);
+    }
+}
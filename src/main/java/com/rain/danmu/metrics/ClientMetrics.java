@@ -0,0 +1,102 @@
+package com.rain.danmu.metrics;
+
+/**
+ * 客户端监控埋点
+ * 由读线程在热路径上调用，实现必须线程安全且开销足够低
+ * 所有方法默认为空操作，可只实现关心的部分
+ */
+public interface ClientMetrics {
+
+    /**
+     * 空实现，不采集任何指标
+     */
+    ClientMetrics NOOP = new ClientMetrics() {
+    };
+
+    /**
+     * 收到一条WebSocket二进制消息
+     *
+     * @param bytes 消息字节数
+     */
+    default void onFrame(int bytes) {
+    }
+
+    /**
+     * 解压了压缩包
+     *
+     * @param compressedBytes 解压前字节数
+     * @param rawBytes        解压后字节数
+     */
+    default void onDecompress(long compressedBytes, long rawBytes) {
+    }
+
+    /**
+     * 解码出一个数据包
+     *
+     * @param operation 操作码
+     */
+    default void onPacket(int operation) {
+    }
+
+    /**
+     * 收到一条已订阅命令的消息
+     *
+     * @param cmd 命令字
+     */
+    default void onMessage(String cmd) {
+    }
+
+    /**
+     * 收到一条未订阅命令的消息，命令字不做解析
+     */
+    default void onUnsubscribed() {
+    }
+
+    /**
+     * 一条WebSocket消息的解码耗时，不含回调耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    default void onDecode(long nanos) {
+    }
+
+    /**
+     * 一次回调的耗时，包含JSON解析
+     *
+     * @param cmd   命令字
+     * @param nanos 耗时（纳秒）
+     */
+    default void onCallback(String cmd, long nanos) {
+    }
+
+    /**
+     * 心跳往返耗时（HEARTBEAT到HEARTBEAT_REPLY）
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    default void onHeartbeatRtt(long nanos) {
+    }
+
+    /**
+     * 发起一次重连
+     */
+    default void onReconnect() {
+    }
+
+    /**
+     * 消息解析或回调出错
+     *
+     * @param cmd   命令字
+     * @param error 异常
+     */
+    default void onParseFailure(String cmd, Throwable error) {
+    }
+
+    /**
+     * 连接出错
+     *
+     * @param error 异常
+     */
+    default void onError(Throwable error) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.rain.danmu.metrics;
+
+import com.rain.danmu.enums.Operation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 默认的监控指标实现
+ * 计数使用LongAdder，耗时使用{@link Histogram}，可被多个客户端共享以得到汇总指标
+ * 通过{@link #writePrometheus(StringBuilder)}输出Prometheus文本格式
+ */
+public class DanmuMetrics implements ClientMetrics {
+
+    // 指标名前缀
+    private static final String PREFIX = "danmu_";
+
+    // 按操作码统计的数据包数，超出范围的操作码计入最后一个位置
+    private static final int OPERATIONS = 16;
+
+    // WebSocket消息数
+    private final LongAdder frames = new LongAdder();
+
+    // WebSocket消息字节数
+    private final LongAdder bytes = new LongAdder();
+
+    // 解压前字节数
+    private final LongAdder compressedBytes = new LongAdder();
+
+    // 解压后字节数
+    private final LongAdder rawBytes = new LongAdder();
+
+    // 按操作码统计的数据包数
+    private final AtomicLongArray packets = new AtomicLongArray(OPERATIONS + 1);
+
+    // 按命令字统计的消息数
+    private final Map<String, LongAdder> messages = new ConcurrentHashMap<>();
+
+    // 未订阅命令的消息数
+    private final LongAdder unsubscribed = new LongAdder();
+
+    // 解析失败数
+    private final LongAdder parseFailures = new LongAdder();
+
+    // 连接错误数
+    private final LongAdder errors = new LongAdder();
+
+    // 重连次数
+    private final LongAdder reconnects = new LongAdder();
+
+    // 解码耗时
+    private final Histogram decode = new Histogram();
+
+    // 回调耗时
+    private final Histogram callback = new Histogram();
+
+    // 心跳往返耗时
+    private final Histogram heartbeatRtt = new Histogram();
+
+    // 附加的瞬时值指标，如分发队列深度
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    // 附加的计数器，由其他组件自行计数，如用户缓存命中次数
+    private final Map<String, External> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void onFrame(int bytes) {
+        frames.increment();
+        this.bytes.add(bytes);
+    }
+
+    @Override
+    public void onDecompress(long compressedBytes, long rawBytes) {
+        this.compressedBytes.add(compressedBytes);
+        this.rawBytes.add(rawBytes);
+    }
+
+    @Override
+    public void onPacket(int operation) {
+        packets.incrementAndGet(operation >= 0 && operation < OPERATIONS ? operation : OPERATIONS);
+    }
+
+    @Override
+    public void onMessage(String cmd) {
+        LongAdder counter = messages.get(cmd);
+        if (counter == null) {
+            counter = messages.computeIfAbsent(cmd, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void onUnsubscribed() {
+        unsubscribed.increment();
+    }
+
+    @Override
+    public void onDecode(long nanos) {
+        decode.record(nanos);
+    }
+
+    @Override
+    public void onCallback(String cmd, long nanos) {
+        callback.record(nanos);
+    }
+
+    @Override
+    public void onHeartbeatRtt(long nanos) {
+        heartbeatRtt.record(nanos);
+    }
+
+    @Override
+    public void onReconnect() {
+        reconnects.increment();
+    }
+
+    @Override
+    public void onParseFailure(String cmd, Throwable error) {
+        parseFailures.increment();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        errors.increment();
+    }
+
+    /**
+     * 注册瞬时值指标
+     *
+     * @param name  指标名（不含前缀）
+     * @param value 取值函数
+     * @return 当前实例
+     */
+    public DanmuMetrics gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+        return this;
+    }
+
+    /**
+     * 注册由其他组件维护的计数器
+     *
+     * @param name  指标名（不含前缀）
+     * @param help  说明
+     * @param value 取值函数，返回值应单调递增
+     * @return 当前实例
+     */
+    public DanmuMetrics counter(String name, String help, LongSupplier value) {
+        counters.put(name, new External(help, value));
+        return this;
+    }
+
+    /**
+     * @return 解码耗时直方图（纳秒）
+     */
+    public Histogram decodeNanos() {
+        return decode;
+    }
+
+    /**
+     * @return 回调耗时直方图（纳秒）
+     */
+    public Histogram callbackNanos() {
+        return callback;
+    }
+
+    /**
+     * @return 心跳往返耗时直方图（纳秒）
+     */
+    public Histogram heartbeatRttNanos() {
+        return heartbeatRtt;
+    }
+
+    /**
+     * @return 解析失败数
+     */
+    public long parseFailures() {
+        return parseFailures.sum();
+    }
+
+    /**
+     * @param cmd 命令字
+     * @return 该命令的消息数
+     */
+    public long messages(String cmd) {
+        LongAdder counter = messages.get(cmd);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 以Prometheus文本格式输出全部指标
+     *
+     * @param out 输出
+     */
+    public void writePrometheus(StringBuilder out) {
+        counter(out, "frames_total", "WebSocket二进制消息数", frames.sum());
+        counter(out, "bytes_total", "WebSocket二进制消息字节数", bytes.sum());
+        counter(out, "compressed_bytes_total", "压缩包解压前字节数", compressedBytes.sum());
+        counter(out, "decompressed_bytes_total", "压缩包解压后字节数", rawBytes.sum());
+
+        header(out, "packets_total", "counter", "按操作码统计的数据包数");
+        for (int i = 0; i <= OPERATIONS; i++) {
+            long value = packets.get(i);
+            if (value > 0) {
+                out.append(PREFIX).append("packets_total{op=\"").append(operationName(i)).append("\"} ").append(value).append('\n');
+            }
+        }
+
+        header(out, "messages_total", "counter", "按命令字统计的消息数");
+        new TreeMap<>(messages).forEach((cmd, value) ->
+                out.append(PREFIX).append("messages_total{cmd=\"").append(escape(cmd)).append("\"} ").append(value.sum()).append('\n'));
+        out.append(PREFIX).append("messages_total{cmd=\"_unsubscribed\"} ").append(unsubscribed.sum()).append('\n');
+
+        counter(out, "parse_failures_total", "消息解析或回调失败数", parseFailures.sum());
+        counter(out, "errors_total", "连接错误数", errors.sum());
+        counter(out, "reconnects_total", "重连次数", reconnects.sum());
+
+        summary(out, "decode_seconds", "单条WebSocket消息的解码耗时（不含回调）", decode);
+        summary(out, "callback_seconds", "单次回调耗时（含JSON解析）", callback);
+        summary(out, "heartbeat_rtt_seconds", "心跳往返耗时", heartbeatRtt);
+
+        new TreeMap<>(counters).forEach((name, external) -> counter(out, name, external.help, external.value.getAsLong()));
+
+        new TreeMap<>(gauges).forEach((name, value) -> {
+            header(out, name, "gauge", name);
+            out.append(PREFIX).append(name).append(' ').append(value.getAsLong()).append('\n');
+        });
+    }
+
+    /**
+     * 输出计数器
+     */
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * 以摘要形式输出直方图，单位转换为秒
+     */
+    private static void summary(StringBuilder out, String name, String help, Histogram histogram) {
+        header(out, name, "summary", help);
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append(PREFIX).append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.quantile(quantile) / 1e9).append('\n');
+        }
+        out.append(PREFIX).append(name).append("_sum ").append(histogram.sum() / 1e9).append('\n');
+        out.append(PREFIX).append(name).append("_count ").append(histogram.count()).append('\n');
+    }
+
+    /**
+     * 输出HELP和TYPE行
+     */
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * 操作码名称
+     */
+    private static String operationName(int code) {
+        for (Operation operation : Operation.values()) {
+            if (operation.code == code) {
+                return operation.name();
+            }
+        }
+        return code == OPERATIONS ? "OTHER" : String.valueOf(code);
+    }
+
+    /**
+     * 转义标签值
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 附加的计数器
+     */
+    private static final class External {
+
+        // 说明
+        final String help;
+
+        // 取值函数
+        final LongSupplier value;
+
+        External(String help, LongSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
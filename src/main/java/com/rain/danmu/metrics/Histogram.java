@@ -0,0 +1,121 @@
+package com.rain.danmu.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数线性直方图
+ * 参考HdrHistogram的分桶方式：每个2的幂区间再均分为16个子桶，相对误差不超过1/16
+ * 桶数固定，记录时只做一次原子自增，不分配对象
+ */
+public final class Histogram {
+
+    // 子桶位数
+    private static final int SUB_BITS = 4;
+
+    // 每个2的幂区间的子桶数
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // 桶计数
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+    // 记录次数
+    private final LongAdder count = new LongAdder();
+
+    // 记录值之和
+    private final LongAdder sum = new LongAdder();
+
+    // 最大值
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按0处理
+     *
+     * @param value 值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    /**
+     * @return 记录次数
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return 记录值之和
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return 最大值
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * 计算分位数，返回所在桶的上界
+     *
+     * @param quantile 分位（0~1）
+     * @return 分位数，没有记录时返回0
+     */
+    public long quantile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * 值所在的桶
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long bound = ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        // 最高的桶上界溢出
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+}
@@ -0,0 +1,64 @@
+package com.rain.danmu.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prometheus文本格式导出器
+ * 使用JDK自带的HttpServer，在/metrics路径上提供抓取接口，不引入额外依赖
+ */
+public class PrometheusExporter implements AutoCloseable {
+
+    // 内置HTTP服务器
+    private final HttpServer server;
+
+    /**
+     * 启动导出器
+     *
+     * @param address 监听地址
+     * @param metrics 要导出的指标，多个客户端共享同一实例即可得到汇总值
+     */
+    public PrometheusExporter(InetSocketAddress address, DanmuMetrics metrics) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/metrics", exchange -> {
+            byte[] body = scrape(metrics).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+    }
+
+    /**
+     * 生成Prometheus文本
+     *
+     * @param metrics 要导出的指标
+     * @return 文本
+     */
+    public static String scrape(DanmuMetrics metrics) {
+        StringBuilder out = new StringBuilder(4096);
+        metrics.writePrometheus(out);
+        return out.toString();
+    }
+
+    /**
+     * @return 实际监听端口
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 停止导出器
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
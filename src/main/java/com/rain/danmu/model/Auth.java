@@ -2,18 +2,29 @@ package com.rain.danmu.model;
 
 import com.rain.danmu.util.HttpUtil;
 import com.rain.danmu.util.WbiSignUtil;
+import com.rain.danmu.util.WbiSigner;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * B站弹幕服务器认证信息类
  */
 public class Auth {
 
+    // 协议版本：zlib压缩，默认值，解压使用线程复用的Inflater
+    public static final int PROTOVER_ZLIB = 2;
+
+    // 协议版本：brotli压缩，压缩率更高，但每个数据包都要新建brotli解码器
+    public static final int PROTOVER_BROTLI = 3;
+
     // 用户ID
     public final long uid;
 
@@ -26,6 +37,15 @@ public class Auth {
     // 连接弹幕服务器的密钥
     public final String key;
 
+    // 请求的协议版本（2：zlib，3：brotli）
+    public final int protover;
+
+    // 弹幕服务器地址列表（wss），为空时使用客户端默认地址
+    public final List<String> hosts;
+
+    // 认证信息获取时间（毫秒）
+    public final long createdAt;
+
     /**
      * @param roomid 直播间房间号
      * @param uid    用户ID
@@ -33,10 +53,46 @@ public class Auth {
      * @param key    连接密钥
      */
     public Auth(long roomid, long uid, String buvid, String key) {
+        this(roomid, uid, buvid, key, PROTOVER_ZLIB);
+    }
+
+    /**
+     * @param roomid   直播间房间号
+     * @param uid      用户ID
+     * @param buvid    设备标识符
+     * @param key      连接密钥
+     * @param protover 协议版本
+     */
+    public Auth(long roomid, long uid, String buvid, String key, int protover) {
+        this(roomid, uid, buvid, key, protover, List.of());
+    }
+
+    /**
+     * @param roomid   直播间房间号
+     * @param uid      用户ID
+     * @param buvid    设备标识符
+     * @param key      连接密钥
+     * @param protover 协议版本
+     * @param hosts    弹幕服务器地址列表
+     */
+    public Auth(long roomid, long uid, String buvid, String key, int protover, List<String> hosts) {
         this.roomid = roomid;
         this.uid = uid;
         this.buvid = buvid;
         this.key = key;
+        this.protover = protover;
+        this.hosts = List.copyOf(hosts);
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 判断认证信息是否仍在有效期内
+     *
+     * @param ttlMillis 有效期（毫秒）
+     * @return 是否有效
+     */
+    public boolean isFresh(long ttlMillis) {
+        return System.currentTimeMillis() - createdAt < ttlMillis;
     }
 
     /**
@@ -48,7 +104,22 @@ public class Auth {
      */
     public static Auth create(long roomid, String cookie) {
         try {
-            String key = getKey(roomid, cookie),
+            return createAsync(roomid, cookie).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * 使用Cookie异步创建Auth认证对象
+     *
+     * @param roomid 直播间房间号
+     * @param cookie B站登录Cookie
+     * @return Auth认证对象
+     */
+    public static CompletableFuture<Auth> createAsync(long roomid, String cookie) {
+        return getDanmuInfo(roomid, cookie).thenApply(info -> {
+            String key = info.getString("token"),
                     buvid = extractCookieValue("buvid3", cookie);
             long uid = 0;
             try {
@@ -60,36 +131,48 @@ public class Auth {
             } catch (Exception e) {
                 // 忽略解析错误，使用默认值0
             }
-            return new Auth(roomid, uid, buvid, key);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+            return new Auth(roomid, uid, buvid, key, PROTOVER_ZLIB, parseHosts(info));
+        });
     }
 
     /**
-     * 获取弹幕服务器认证密钥
-     * 通过调用B站API获取连接弹幕服务器所需的token
+     * 获取弹幕服务器信息
+     * 通过调用B站API获取连接弹幕服务器所需的token和服务器地址列表
      *
      * @param roomId 直播间房间号
      * @param cookie Cookie
-     * @return 弹幕服务器认证密钥
+     * @return 接口返回的data部分
      */
-    private static String getKey(long roomId, String cookie) throws IOException {
+    private static CompletableFuture<JSONObject> getDanmuInfo(long roomId, String cookie) {
         // 使用WBI签名参数
-        String signed;
-        try {
-            signed = WbiSignUtil.wbiSign(new HashMap<>() {{
-                put("id", roomId);
-                put("type", "0");
-            }});
-        } catch (Exception e) {
-            throw new IOException("Failed to sign WBI parameters", e);
-        }
-        String res = HttpUtil.get("https://api.live.bilibili.com/xlive/web-room/v1/index/getDanmuInfo?" + signed
+        return WbiSignUtil.signerAsync()
+                .thenApply(signer -> signer.sign(WbiSigner.params().put("id", roomId).put("type", 0)))
+                .exceptionally(e -> {
+            throw new CompletionException(new IOException("Failed to sign WBI parameters", e));
+        }).thenCompose(signed -> HttpUtil.getAsync("https://api.live.bilibili.com/xlive/web-room/v1/index/getDanmuInfo?" + signed
                 , Map.of("Accept", "*/*",
                         "Cookie", cookie,
-                        "User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36"));
-        return new JSONObject(res).getJSONObject("data").getString("token");
+                        "User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36"))
+        ).thenApply(res -> new JSONObject(res).getJSONObject("data"));
+    }
+
+    /**
+     * 解析弹幕服务器地址列表
+     *
+     * @param info 接口返回的data部分
+     * @return wss地址列表
+     */
+    private static List<String> parseHosts(JSONObject info) {
+        JSONArray hostList = info.optJSONArray("host_list");
+        if (hostList == null) {
+            return List.of();
+        }
+        List<String> hosts = new ArrayList<>(hostList.length());
+        for (int i = 0; i < hostList.length(); i++) {
+            JSONObject host = hostList.getJSONObject(i);
+            hosts.add("wss://" + host.getString("host") + ":" + host.optInt("wss_port", 443) + "/sub");
+        }
+        return hosts;
     }
 
     /**
@@ -1,13 +1,38 @@
 package com.rain.danmu.model;
 
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONArray;
+
 /**
  * 弹幕实体
+ * 对应命令DANMU_MSG
  */
-public class Danmu {
+public class Danmu extends LiveEvent {
 
     // 发送弹幕的用户信息
-    public User user = new User();
+    public User user;
 
     // 弹幕内容
     public String body;
-}
\ No newline at end of file
+
+    // 发送时间戳（毫秒）
+    public long timestamp;
+
+    /**
+     * 从消息的info部分解析弹幕
+     *
+     * @param info 消息信息部分
+     * @return 弹幕实体
+     */
+    public static Danmu parse(JSONArray info) {
+        Danmu danmu = new Danmu();
+        JSONArray userInfo = info.getJSONArray(2);
+        danmu.user = UserCache.SHARED.intern(userInfo.optLong(0), userInfo.get(1).toString());
+        danmu.body = info.getString(1);
+        JSONArray meta = info.optJSONArray(0);
+        if (meta != null) {
+            danmu.timestamp = meta.optLong(4);
+        }
+        return danmu;
+    }
+}
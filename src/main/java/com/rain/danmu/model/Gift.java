@@ -0,0 +1,54 @@
+package com.rain.danmu.model;
+
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONObject;
+
+/**
+ * 礼物实体
+ * 对应命令SEND_GIFT
+ */
+public class Gift extends LiveEvent {
+
+    // 送礼用户信息
+    public User user;
+
+    // 礼物ID
+    public long giftId;
+
+    // 礼物名称
+    public String giftName;
+
+    // 礼物数量
+    public int num;
+
+    // 礼物单价（金瓜子为1/1000元，银瓜子无价值）
+    public long price;
+
+    // 货币类型（gold：金瓜子，silver：银瓜子）
+    public String coinType;
+
+    // 动作描述，如“投喂”
+    public String action;
+
+    // 送礼时间戳（秒）
+    public long timestamp;
+
+    /**
+     * 从消息的data部分解析礼物
+     *
+     * @param data 消息数据部分
+     * @return 礼物实体
+     */
+    public static Gift parse(JSONObject data) {
+        Gift gift = new Gift();
+        gift.user = UserCache.SHARED.intern(data.optLong("uid"), data.optString("uname", null));
+        gift.giftId = data.optLong("giftId");
+        gift.giftName = data.optString("giftName", null);
+        gift.num = data.optInt("num");
+        gift.price = data.optLong("price");
+        gift.coinType = data.optString("coin_type", null);
+        gift.action = data.optString("action", null);
+        gift.timestamp = data.optLong("timestamp");
+        return gift;
+    }
+}
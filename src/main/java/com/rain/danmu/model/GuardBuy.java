@@ -0,0 +1,46 @@
+package com.rain.danmu.model;
+
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONObject;
+
+/**
+ * 上舰实体
+ * 对应命令GUARD_BUY
+ */
+public class GuardBuy extends LiveEvent {
+
+    // 购买用户信息
+    public User user;
+
+    // 大航海等级（1：总督，2：提督，3：舰长）
+    public int guardLevel;
+
+    // 购买数量（月）
+    public int num;
+
+    // 单价（金瓜子）
+    public long price;
+
+    // 礼物名称
+    public String giftName;
+
+    // 开始时间戳（秒）
+    public long startTime;
+
+    /**
+     * 从消息的data部分解析上舰信息
+     *
+     * @param data 消息数据部分
+     * @return 上舰实体
+     */
+    public static GuardBuy parse(JSONObject data) {
+        GuardBuy guardBuy = new GuardBuy();
+        guardBuy.user = UserCache.SHARED.intern(data.optLong("uid"), data.optString("username", null));
+        guardBuy.guardLevel = data.optInt("guard_level");
+        guardBuy.num = data.optInt("num");
+        guardBuy.price = data.optLong("price");
+        guardBuy.giftName = data.optString("gift_name", null);
+        guardBuy.startTime = data.optLong("start_time");
+        return guardBuy;
+    }
+}
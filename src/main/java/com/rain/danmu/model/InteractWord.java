@@ -0,0 +1,41 @@
+package com.rain.danmu.model;
+
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONObject;
+
+/**
+ * 用户互动实体（进入直播间、关注、分享）
+ * 对应命令INTERACT_WORD
+ */
+public class InteractWord extends LiveEvent {
+
+    // 互动用户信息
+    public User user;
+
+    /**
+     * 互动类型
+     * 1：进入直播间
+     * 2：关注
+     * 3：分享
+     * 4：特别关注
+     * 5：互相关注
+     */
+    public int msgType;
+
+    // 互动时间戳（秒）
+    public long timestamp;
+
+    /**
+     * 从消息的data部分解析互动信息
+     *
+     * @param data 消息数据部分
+     * @return 互动实体
+     */
+    public static InteractWord parse(JSONObject data) {
+        InteractWord interactWord = new InteractWord();
+        interactWord.user = UserCache.SHARED.intern(data.optLong("uid"), data.optString("uname", null));
+        interactWord.msgType = data.optInt("msg_type");
+        interactWord.timestamp = data.optLong("timestamp");
+        return interactWord;
+    }
+}
@@ -0,0 +1,30 @@
+package com.rain.danmu.model;
+
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONObject;
+
+/**
+ * 点赞实体
+ * 对应命令LIKE_INFO_V3_CLICK
+ */
+public class LikeClick extends LiveEvent {
+
+    // 点赞用户信息
+    public User user;
+
+    // 点赞提示文字
+    public String likeText;
+
+    /**
+     * 从消息的data部分解析点赞信息
+     *
+     * @param data 消息数据部分
+     * @return 点赞实体
+     */
+    public static LikeClick parse(JSONObject data) {
+        LikeClick likeClick = new LikeClick();
+        likeClick.user = UserCache.SHARED.intern(data.optLong("uid"), data.optString("uname", null));
+        likeClick.likeText = data.optString("like_text", null);
+        return likeClick;
+    }
+}
@@ -0,0 +1,25 @@
+package com.rain.danmu.model;
+
+import org.json.JSONObject;
+
+/**
+ * 点赞总数更新实体
+ * 对应命令LIKE_INFO_V3_UPDATE
+ */
+public class LikeUpdate extends LiveEvent {
+
+    // 累计点赞数
+    public long clickCount;
+
+    /**
+     * 从消息的data部分解析点赞总数
+     *
+     * @param data 消息数据部分
+     * @return 点赞总数更新实体
+     */
+    public static LikeUpdate parse(JSONObject data) {
+        LikeUpdate likeUpdate = new LikeUpdate();
+        likeUpdate.clickCount = data.optLong("click_count");
+        return likeUpdate;
+    }
+}
@@ -0,0 +1,10 @@
+package com.rain.danmu.model;
+
+/**
+ * 直播间事件基类
+ */
+public abstract class LiveEvent {
+
+    // 事件所在的直播间房间号
+    public long roomId;
+}
@@ -0,0 +1,29 @@
+package com.rain.danmu.model;
+
+import org.json.JSONObject;
+
+/**
+ * 高能用户数更新实体
+ * 对应命令ONLINE_RANK_COUNT
+ */
+public class OnlineRankCount extends LiveEvent {
+
+    // 高能用户数
+    public long count;
+
+    // 在线人数
+    public long onlineCount;
+
+    /**
+     * 从消息的data部分解析高能用户数
+     *
+     * @param data 消息数据部分
+     * @return 高能用户数更新实体
+     */
+    public static OnlineRankCount parse(JSONObject data) {
+        OnlineRankCount onlineRankCount = new OnlineRankCount();
+        onlineRankCount.count = data.optLong("count");
+        onlineRankCount.onlineCount = data.optLong("online_count");
+        return onlineRankCount;
+    }
+}
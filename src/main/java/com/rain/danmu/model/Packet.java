@@ -1,14 +1,15 @@
 package com.rain.danmu.model;
 
+import com.rain.danmu.codec.Decompressor;
+import com.rain.danmu.codec.PacketDecoder;
+import com.rain.danmu.codec.PacketEncoder;
 import com.rain.danmu.enums.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.zip.InflaterInputStream;
 
 /**
  * B站弹幕协议数据包类
@@ -43,6 +44,7 @@ public class Packet {
      * 协议版本
      * 0：Body中就是实际发送的数据
      * 2：Body中是经过压缩后的数据，请使用zlib解压，然后解析
+     * 3：Body中是经过压缩后的数据，请使用brotli解压，然后解析
      */
     public final short version = 0;
 
@@ -59,6 +61,7 @@ public class Packet {
 
     /**
      * 将数据包打包成ByteBuffer格式
+     * 每次都会分配新的缓冲区，发送心跳、认证等数据包请直接使用{@link PacketEncoder}
      *
      * @return 打包后的ByteBuffer
      */
@@ -83,6 +86,7 @@ public class Packet {
 
     /**
      * 解包ByteBuffer数据
+     * 每个数据包都会复制出独立的数据体，热路径请直接使用{@link PacketDecoder}
      *
      * @param buffer 待解包的ByteBuffer
      * @return 解包后的数据包列表
@@ -90,55 +94,22 @@ public class Packet {
     public static ArrayList<Packet> unPack(ByteBuffer buffer) {
         // 创建用于存储解析结果的列表
         ArrayList<Packet> packs = new ArrayList<>();
-        // 初始化偏移量和数据长度
-        int offset = 0;
-        int len = buffer.limit();
-        // 循环解析数据包，直到剩余数据不足一个包头长度
-        while (offset + HEADER_LENGTH <= len) {
-            // 从包头中读取数据体长度
-            int bodyLen = buffer.getInt(offset) - HEADER_LENGTH;
-            try {
-                // 读取协议版本（偏移量6处的2字节）
-                short ver = buffer.getShort(offset + 6);
-                // 读取操作码（偏移量8处的4字节）
-                Operation op = Operation.parse(buffer.getInt(8));
-                // 创建数据体字节数组
-                byte[] body = new byte[bodyLen];
-                // 从缓冲区中提取数据体内容
-                buffer.get(offset + HEADER_LENGTH, body, 0, bodyLen);
-                // 判断协议版本
-                if (ver == 2) {
-                    // 版本2表示数据体是压缩的，需要解压
-                    try {
-                        body = decompress(body);
-                        // 递归解析解压后的数据
-                        packs.addAll(unPack(ByteBuffer.wrap(body)));
-                    } catch (IOException e) {
-                        LOGGER.error("解压失败", e);
-                    }
-                    // 跳过后续处理，继续下一个包
-                    continue;
-                }
-                // 将解析出的数据包添加到列表中
-                packs.add(new Packet(op, body));
-            } finally {
-                // 更新偏移量，指向下个数据包的开始位置
-                offset += bodyLen + HEADER_LENGTH;
-            }
-        }
+        new PacketDecoder().decode(buffer, packet -> packs.add(packet.toPacket()));
         return packs;
     }
 
     /**
-     * 解压数据
+     * 解压数据（zlib）
      *
      * @param data 待解压的数据
      * @return 解压后的数据
      * @throws IOException IO异常
      */
     public static byte[] decompress(byte[] data) throws IOException {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
-        InflaterInputStream iis = new InflaterInputStream(inputStream);
-        return iis.readAllBytes();
+        ByteBuffer out = Decompressor.local()
+                .decompress(Decompressor.VERSION_ZLIB, ByteBuffer.wrap(data), 0, data.length, 0);
+        byte[] result = new byte[out.remaining()];
+        out.get(result);
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.rain.danmu.model;
+
+import com.rain.danmu.codec.UserCache;
+import org.json.JSONObject;
+
+/**
+ * 醒目留言实体
+ * 对应命令SUPER_CHAT_MESSAGE
+ */
+public class SuperChat extends LiveEvent {
+
+    // 留言ID
+    public long id;
+
+    // 发送用户信息
+    public User user;
+
+    // 留言内容
+    public String message;
+
+    // 金额（元）
+    public int price;
+
+    // 开始时间戳（秒）
+    public long startTime;
+
+    // 持续时间（秒）
+    public int duration;
+
+    /**
+     * 从消息的data部分解析醒目留言
+     *
+     * @param data 消息数据部分
+     * @return 醒目留言实体
+     */
+    public static SuperChat parse(JSONObject data) {
+        SuperChat superChat = new SuperChat();
+        superChat.id = data.optLong("id");
+        JSONObject userInfo = data.optJSONObject("user_info");
+        superChat.user = UserCache.SHARED.intern(data.optLong("uid"), userInfo == null ? null : userInfo.optString("uname", null));
+        superChat.message = data.optString("message", null);
+        superChat.price = data.optInt("price");
+        superChat.startTime = data.optLong("start_time");
+        superChat.duration = data.optInt("time");
+        return superChat;
+    }
+}
@@ -2,12 +2,29 @@ package com.rain.danmu.model;
 
 /**
  * 用户信息实体
+ * 解析得到的用户对象来自{@link com.rain.danmu.codec.UserCache}，会被多条消息共享，不应修改
  */
 public class User {
 
     // 用户ID
-    public String uid;
+    public long uid;
 
     // 用户昵称
     public String name;
-}
\ No newline at end of file
+
+    /**
+     * 默认构造函数
+     */
+    public User() {}
+
+    /**
+     * 构造函数
+     *
+     * @param uid  用户ID
+     * @param name 用户昵称
+     */
+    public User(long uid, String name) {
+        this.uid = uid;
+        this.name = name;
+    }
+}
@@ -0,0 +1,29 @@
+package com.rain.danmu.model;
+
+import org.json.JSONObject;
+
+/**
+ * 看过人数更新实体
+ * 对应命令WATCHED_CHANGE
+ */
+public class WatchedChange extends LiveEvent {
+
+    // 看过人数
+    public long num;
+
+    // 展示文字，如“1.2万人看过”
+    public String text;
+
+    /**
+     * 从消息的data部分解析看过人数
+     *
+     * @param data 消息数据部分
+     * @return 看过人数更新实体
+     */
+    public static WatchedChange parse(JSONObject data) {
+        WatchedChange watchedChange = new WatchedChange();
+        watchedChange.num = data.optLong("num");
+        watchedChange.text = data.optString("text_large", null);
+        return watchedChange;
+    }
+}
@@ -0,0 +1,60 @@
+package com.rain.danmu.util;
+
+/**
+ * 哈希工具类
+ * 去重、刷屏检测、分片和聚合共用的64位哈希：
+ * 1. {@link #mix(long)}：MurmurHash3的64位终结函数，把有规律的键（连续的房间号、用户ID）打散为均匀分布
+ * 2. {@link #fnv1a}：字节或字符序列的FNV-1a哈希，速度快但低位分布一般，用作散列下标前应再经过mix
+ */
+public final class HashUtil {
+
+    // FNV-1a的初始值
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    // FNV-1a的乘数
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private HashUtil() {
+    }
+
+    /**
+     * MurmurHash3的64位终结函数
+     *
+     * @param h 输入
+     * @return 各位分布均匀的64位哈希
+     */
+    public static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * 字节的64位FNV-1a哈希
+     *
+     * @param bytes  数据
+     * @param length 长度，从下标0开始
+     * @return 哈希值
+     */
+    public static long fnv1a(byte[] bytes, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * 字符序列的64位FNV-1a哈希，按UTF-16字符计算
+     *
+     * @param text 字符序列
+     * @return 哈希值
+     */
+    public static long fnv1a(CharSequence text) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -1,62 +1,118 @@
 package com.rain.danmu.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * HTTP工具类
+ * 基于共享的{@link HttpClient}，复用连接池并优先使用HTTP/2，支持gzip压缩响应
  */
 public final class HttpUtil {
 
-    private static final int BUFFER_SIZE = 8192;
     private static final String DEFAULT_ACCEPT_HEADER = "application/json";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    // 共享客户端，内部维护连接池，所有请求复用；支持虚拟线程时异步回调在虚拟线程上执行
+    private static final HttpClient CLIENT = client();
 
     private HttpUtil() {
     }
 
+    /**
+     * 创建共享客户端
+     */
+    private static HttpClient client() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (VirtualThreads.isSupported()) {
+            builder.executor(VirtualThreads.executor());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 同步GET请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     * @return 响应体
+     */
     public static String get(String url, Map<String, String> headers) {
-        HttpURLConnection connection = null;
         try {
-            URL parsedUrl = new URL(url);
-            connection = (HttpURLConnection) parsedUrl.openConnection();
-            configureConnection(connection, headers);
-            try (InputStream in = connection.getInputStream()) {
-                return readStream(in);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (!Objects.isNull(connection)) {
-                connection.disconnect();
-            }
+            return getAsync(url, headers).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
         }
     }
 
-    private static String readStream(InputStream in) throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        StringBuilder response = new StringBuilder();
-        int bytesRead;
-        while ((bytesRead = in.read(buffer)) != -1) {
-            response.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
+    /**
+     * 异步GET请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     * @return 响应体
+     */
+    public static CompletableFuture<String> getAsync(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Accept", DEFAULT_ACCEPT_HEADER)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (!CollUtil.isEmpty(headers)) {
+            headers.forEach(builder::setHeader);
         }
-        return response.toString();
+        return CLIENT.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(HttpUtil::decodeBody);
     }
 
-    private static void configureConnection(HttpURLConnection conn, Map<String, String> headers) throws IOException {
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(10000);
-        conn.setReadTimeout(10000);
-        conn.setUseCaches(true);
-        conn.setInstanceFollowRedirects(true);
-        if (!CollUtil.isEmpty(headers)) {
-            headers.forEach(conn::setRequestProperty);
+    /**
+     * 解压并整体解码响应体，避免多字节字符被分块截断
+     */
+    private static String decodeBody(HttpResponse<byte[]> response) {
+        if (response.statusCode() >= 400) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode() + ": " + response.uri()));
+        }
+        byte[] body = response.body();
+        if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new String(body, charset(response));
+    }
+
+    /**
+     * 从Content-Type中解析字符集，缺省UTF-8
+     */
+    private static Charset charset(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(contentType.substring(index + 8).split(";")[0].trim().replace("\"", ""));
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
         }
     }
 
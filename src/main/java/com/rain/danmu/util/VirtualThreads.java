@@ -0,0 +1,136 @@
+package com.rain.danmu.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 虚拟线程支持
+ * 项目以JDK 17编译，运行在JDK 21及以上时通过反射创建虚拟线程，否则退回平台守护线程，调用方无需区分：
+ * 1. 连接执行器：{@link #newExecutor(String)}，每个任务一个线程，用于连接读循环、重连和获取认证信息
+ * 2. 线程工厂：{@link #factory(String)}，可传给{@link com.rain.danmu.dispatch.Dispatcher}、
+ * {@link com.rain.danmu.client.AuthProvider}等需要固定数量线程的组件
+ * 3. 共享执行器：{@link #executor()}，进程内共用，供单房间客户端使用
+ * 虚拟线程在synchronized块内阻塞会占住载体线程，本项目中涉及I/O的临界区均使用{@link java.util.concurrent.locks.ReentrantLock}
+ * 虚拟线程只承担会阻塞的工作：心跳由时间轮线程发送（非阻塞），默认的NIO传输层在选择器线程上读取、解码和回调，
+ * 只有Java-WebSocket传输层的读循环会运行在传入的执行器上
+ */
+public final class VirtualThreads {
+
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    // Thread.ofVirtual()
+    private static final Method OF_VIRTUAL;
+
+    // Thread.Builder.name(String, long)
+    private static final Method NAME;
+
+    // Thread.Builder.factory()
+    private static final Method FACTORY;
+
+    // Executors.newThreadPerTaskExecutor(ThreadFactory)
+    private static final Method THREAD_PER_TASK;
+
+    // 当前JDK是否支持虚拟线程
+    private static final boolean SUPPORTED;
+
+    // 进程内共享的执行器，首次使用时创建
+    private static volatile ExecutorService shared;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, threadPerTask = null;
+        boolean supported = false;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            threadPerTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // JDK 19、20未开启预览特性时方法存在但调用失败，实际创建一次确认可用
+            ((ThreadFactory) factory.invoke(ofVirtual.invoke(null))).newThread(() -> {
+            });
+            supported = true;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOGGER.debug("当前JDK不支持虚拟线程，使用平台线程", e);
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        THREAD_PER_TASK = threadPerTask;
+        SUPPORTED = supported;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * 创建线程工厂，线程依次命名为prefix1、prefix2……
+     *
+     * @param prefix 线程名前缀
+     * @return 支持时创建虚拟线程，否则创建平台守护线程
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (SUPPORTED) {
+            try {
+                return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("创建虚拟线程工厂失败", e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 创建每个任务一个线程的执行器
+     *
+     * @param prefix 线程名前缀
+     * @return 支持时每个任务一个虚拟线程，否则为平台守护线程的缓存线程池
+     */
+    public static ExecutorService newExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        if (SUPPORTED) {
+            try {
+                return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("创建虚拟线程执行器失败", e);
+            }
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * 获取进程内共享的执行器，不需要关闭
+     *
+     * @return 共享执行器，线程名前缀为danmu-vt-
+     */
+    public static ExecutorService executor() {
+        ExecutorService executor = shared;
+        if (executor == null) {
+            synchronized (VirtualThreads.class) {
+                executor = shared;
+                if (executor == null) {
+                    shared = executor = newExecutor("danmu-vt-");
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -1,128 +1,173 @@
 package com.rain.danmu.util;
 
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * B站WBI签名工具类
+ * 密钥以不可变快照缓存，读取无锁；到期前在后台刷新，刷新失败时继续使用旧密钥
  */
 public class WbiSignUtil {
 
-    // WBI密钥混淆表，用于生成Mixin Key
-    private static final int[] MIXIN_KEY_ENC_TAB = {46, 47, 18, 2, 53, 8, 23, 32, 15, 50, 10, 31, 58, 3, 45, 35, 27, 43, 5, 49, 33, 9, 42, 19, 29, 28, 14, 39, 12, 38, 41, 13, 37, 48, 7, 16, 24, 55, 40, 61, 26, 17, 0, 1, 60, 51, 30, 4, 22, 25, 54, 21, 56, 59, 6, 63, 57, 62, 11, 36, 20, 34, 44, 52};
+    // 日志记录器
+    static final Logger LOGGER = LoggerFactory.getLogger(WbiSignUtil.class);
 
-    // 缓存的WBI密钥
-    private static volatile Map<String, String> cachedKeys = new ConcurrentHashMap<>(10);
+    // 密钥缓存有效期（毫秒）
+    private static final long CACHE_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(10);
 
-    // 上次更新密钥的时间
-    private static volatile LocalDateTime lastUpdate = LocalDateTime.now().minusDays(1);
+    // 到达有效期的该比例时在后台提前刷新
+    private static final double REFRESH_AHEAD_RATIO = 0.8;
 
-    // 密钥缓存有效期（分钟）
-    private static final long CACHE_DURATION_MINUTES = 10;
+    // 刷新失败后的重试间隔（毫秒）
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // 当前密钥快照，不可变，整体替换
+    private static final AtomicReference<WbiKeys> snapshot = new AtomicReference<>();
+
+    // 进行中的刷新请求，同一时间只有一个
+    private static final AtomicReference<CompletableFuture<WbiKeys>> inflight = new AtomicReference<>();
+
+    // 下一次后台刷新任务
+    private static volatile ScheduledFuture<?> nextRefresh;
+
+    // 后台刷新线程
+    private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "danmu-wbi-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
-     * 根据原始字符串生成Mixin Key
+     * 执行WBI签名，参数Map不会被修改
      */
-    private static String getMixinKey(String orig) {
-        StringBuilder sb = new StringBuilder();
-        for (int index : MIXIN_KEY_ENC_TAB) {
-            if (index < orig.length()) {
-                sb.append(orig.charAt(index));
-            }
-        }
-        return sb.substring(0, 32);
+    public static String encWbi(Map<String, Object> p, String imgKey, String subKey) {
+        return new WbiSigner(imgKey, subKey).sign(p);
     }
 
     /**
-     * MD5哈希函数
+     * 获取WBI密钥，带缓存机制
+     * 缓存过期后仍返回旧密钥并在后台刷新，仅首次获取时阻塞
+     *
+     * @return 包含img_key和sub_key的映射
      */
-    private static String md5(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not found", e);
-        }
+    public static Map<String, String> getWbiKeys() {
+        return currentKeys().join().asMap;
+    }
+
+    /**
+     * 异步获取WBI密钥，缓存有效时直接返回
+     *
+     * @return 包含img_key和sub_key的映射
+     */
+    public static CompletableFuture<Map<String, String>> getWbiKeysAsync() {
+        return currentKeys().thenApply(keys -> keys.asMap);
     }
 
     /**
-     * 执行WBI签名
+     * 获取当前密钥对应的签名器，可缓存并复用于多次签名
+     *
+     * @return 签名器
      */
-    public static String encWbi(Map<String, Object> p, String imgKey, String subKey) {
-        String mixinKey = getMixinKey(imgKey + subKey);
-        long currTime = System.currentTimeMillis() / 1000;
-        p.put("wts", currTime);
-        Map<String, String> encodedParams = new TreeMap<>();
-        p.forEach((k, v)
-                -> encodedParams.put(HttpUtil.encodeParam(k), HttpUtil.encodeParam(v.toString())));
-        String q = HttpUtil.toQueryStr(encodedParams);
-        // 添加签名参数
-        return q + "&w_rid=" + md5(q + mixinKey);
+    public static WbiSigner signer() {
+        return currentKeys().join().signer;
     }
 
     /**
-     * 获取WBI密钥，带缓存机制
+     * 异步获取当前密钥对应的签名器
      *
-     * @return 包含img_key和sub_key的映射
+     * @return 签名器
      */
-    public static Map<String, String> getWbiKeys() {
-        // 检查缓存是否有效
-        if (isCacheValid()) {
-            return cachedKeys;
+    public static CompletableFuture<WbiSigner> signerAsync() {
+        return currentKeys().thenApply(keys -> keys.signer);
+    }
+
+    /**
+     * 获取当前密钥快照
+     * 1. 快照有效时直接返回
+     * 2. 快照过期时返回旧快照并触发刷新
+     * 3. 没有快照时等待刷新完成
+     */
+    private static CompletableFuture<WbiKeys> currentKeys() {
+        WbiKeys keys = snapshot.get();
+        if (keys == null) {
+            return refresh();
         }
-        synchronized (WbiSignUtil.class) {
-            try {
-                if (isCacheValid()) {
-                    return cachedKeys;
-                }
-                String res = HttpUtil.get("https://api.bilibili.com/x/web-interface/nav"
-                        , Map.of("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36", "Referer", "https://www.bilibili.com"));
-                JSONObject root = new JSONObject(res),
-                        wbiImg = root.getJSONObject("data").getJSONObject("wbi_img");
-                String imgUrl = wbiImg.getString("img_url"),
-                        subUrl = wbiImg.getString("sub_url");
-                Map<String, String> result = new HashMap<>() {{
-                    put("img_key", extractKeyFromUrl(imgUrl));
-                    put("sub_key", extractKeyFromUrl(subUrl));
-                }};
-                if (200 == root.getInt("code")) {
-                    // 临时缓存
-                    cachedKeys = result;
-                    lastUpdate = LocalDateTime.now();
-                }
-                return result;
-            } catch (Exception e) {
+        if (System.currentTimeMillis() - keys.fetchedAt >= CACHE_DURATION_MILLIS) {
+            refresh();
+        }
+        return CompletableFuture.completedFuture(keys);
+    }
+
+    /**
+     * 发起或复用进行中的刷新请求
+     * 成功后替换快照并安排下一次提前刷新，失败时保留旧快照并稍后重试
+     */
+    private static CompletableFuture<WbiKeys> refresh() {
+        CompletableFuture<WbiKeys> current = inflight.get();
+        if (current != null) {
+            return current;
+        }
+        CompletableFuture<WbiKeys> future = new CompletableFuture<>();
+        if (!inflight.compareAndSet(null, future)) {
+            return inflight.get();
+        }
+        fetchWbiKeys().whenComplete((keys, e) -> {
+            inflight.set(null);
+            if (e == null) {
+                snapshot.set(keys);
+                schedule((long) (CACHE_DURATION_MILLIS * REFRESH_AHEAD_RATIO));
+                future.complete(keys);
+                return;
+            }
+            schedule(RETRY_DELAY_MILLIS);
+            WbiKeys stale = snapshot.get();
+            if (stale != null) {
                 // 如果获取失败但有缓存，使用旧缓存
-                if (!cachedKeys.isEmpty()) {
-                    System.err.println("Failed to fetch new WBI keys, using cached keys: " + e.getMessage());
-                    return cachedKeys;
-                }
-                throw e;
+                LOGGER.warn("获取WBI密钥失败，继续使用旧的密钥", e);
+                future.complete(stale);
+            } else {
+                future.completeExceptionally(e);
             }
+        });
+        return future;
+    }
+
+    /**
+     * 安排下一次后台刷新，取代尚未执行的刷新任务
+     */
+    private static void schedule(long delayMillis) {
+        ScheduledFuture<?> previous = nextRefresh;
+        if (previous != null) {
+            previous.cancel(false);
         }
+        nextRefresh = REFRESHER.schedule(WbiSignUtil::refresh, delayMillis, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * 检查缓存是否有效
+     * 请求nav接口获取WBI密钥
+     * 未登录时接口返回code -101，但data中仍包含wbi_img，因此以wbi_img是否存在为准
      *
-     * @return 如果缓存有效返回true，否则返回false
+     * @return 密钥快照
      */
-    private static boolean isCacheValid() {
-        return !cachedKeys.isEmpty() &&
-                LocalDateTime.now().isBefore(lastUpdate.plusMinutes(CACHE_DURATION_MINUTES));
+    private static CompletableFuture<WbiKeys> fetchWbiKeys() {
+        return HttpUtil.getAsync("https://api.bilibili.com/x/web-interface/nav"
+                , Map.of("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36", "Referer", "https://www.bilibili.com")
+        ).thenApply(res -> {
+            JSONObject root = new JSONObject(res),
+                    wbiImg = root.getJSONObject("data").getJSONObject("wbi_img");
+            String imgUrl = wbiImg.getString("img_url"),
+                    subUrl = wbiImg.getString("sub_url");
+            return new WbiKeys(extractKeyFromUrl(imgUrl), extractKeyFromUrl(subUrl));
+        });
     }
 
     /**
@@ -144,7 +189,37 @@ public class WbiSignUtil {
      * @return 签名后的查询字符串
      */
     public static String wbiSign(Map<String, Object> params) {
-        Map<String, String> keys = getWbiKeys();
-        return encWbi(params, keys.get("img_key"), keys.get("sub_key"));
+        return currentKeys().join().signer.sign(params);
+    }
+
+    /**
+     * 异步WBI签名入口方法
+     *
+     * @param params 请求参数
+     * @return 签名后的查询字符串
+     */
+    public static CompletableFuture<String> wbiSignAsync(Map<String, Object> params) {
+        return currentKeys().thenApply(keys -> keys.signer.sign(params));
+    }
+
+    /**
+     * WBI密钥快照
+     */
+    private static final class WbiKeys {
+
+        // 包含img_key和sub_key的只读映射
+        final Map<String, String> asMap;
+
+        // 持有预先计算的Mixin Key的签名器
+        final WbiSigner signer;
+
+        // 获取时间（毫秒）
+        final long fetchedAt;
+
+        WbiKeys(String imgKey, String subKey) {
+            this.asMap = Map.of("img_key", imgKey, "sub_key", subKey);
+            this.signer = new WbiSigner(imgKey, subKey);
+            this.fetchedAt = System.currentTimeMillis();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,388 @@
+package com.rain.danmu.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 可复用的WBI签名器
+ * 持有预先计算的Mixin Key，签名过程不再创建TreeMap和中间字符串：
+ * 1. 参数在放入时按键排序，签名时直接按序写出
+ * 2. URL编码、MD5和十六进制编码都在线程本地缓冲区中完成
+ * 3. 每次签名只分配最终返回的字符串
+ * 签名器不可变，可在多线程间共享
+ */
+public final class WbiSigner {
+
+    // WBI密钥混淆表，用于生成Mixin Key
+    private static final int[] MIXIN_KEY_ENC_TAB = {46, 47, 18, 2, 53, 8, 23, 32, 15, 50, 10, 31, 58, 3, 45, 35, 27, 43, 5, 49, 33, 9, 42, 19, 29, 28, 14, 39, 12, 38, 41, 13, 37, 48, 7, 16, 24, 55, 40, 61, 26, 17, 0, 1, 60, 51, 30, 4, 22, 25, 54, 21, 56, 59, 6, 63, 57, 62, 11, 36, 20, 34, 44, 52};
+
+    // 小写十六进制字符表，用于w_rid
+    private static final byte[] HEX_LOWER = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // 大写十六进制字符表，用于URL编码，与URLEncoder一致
+    private static final byte[] HEX_UPPER = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    // 时间戳参数名
+    private static final String WTS = "wts";
+
+    // 签名参数前缀
+    private static final byte[] W_RID = "&w_rid=".getBytes(StandardCharsets.US_ASCII);
+
+    // 每个线程的编码缓冲区和MD5实例
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // Mixin Key的ASCII字节
+    private final byte[] mixinKey;
+
+    /**
+     * 构造函数
+     *
+     * @param imgKey img_key
+     * @param subKey sub_key
+     */
+    public WbiSigner(String imgKey, String subKey) {
+        this.mixinKey = mixinKey(imgKey + subKey).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 根据原始字符串生成Mixin Key
+     *
+     * @param orig img_key与sub_key拼接的字符串
+     * @return 32位Mixin Key
+     */
+    public static String mixinKey(String orig) {
+        StringBuilder sb = new StringBuilder(MIXIN_KEY_ENC_TAB.length);
+        for (int index : MIXIN_KEY_ENC_TAB) {
+            if (index < orig.length()) {
+                sb.append(orig.charAt(index));
+            }
+        }
+        return sb.substring(0, 32);
+    }
+
+    /**
+     * 创建空的参数表，参数表可通过{@link Params#clear()}复用
+     *
+     * @return 参数表
+     */
+    public static Params params() {
+        return new Params();
+    }
+
+    /**
+     * 使用当前时间签名
+     *
+     * @param params 参数表，签名不会修改参数表
+     * @return 签名后的查询字符串
+     */
+    public String sign(Params params) {
+        return sign(params, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * 签名Map形式的参数，Map不会被修改
+     *
+     * @param params 请求参数
+     * @return 签名后的查询字符串
+     */
+    public String sign(Map<String, Object> params) {
+        Params sorted = new Params();
+        params.forEach((k, v) -> sorted.put(k, v.toString()));
+        return sign(sorted);
+    }
+
+    /**
+     * 使用指定时间戳签名
+     *
+     * @param params 参数表，签名不会修改参数表
+     * @param wts    时间戳（秒），参数表中已有的wts会被忽略
+     * @return 签名后的查询字符串
+     */
+    public String sign(Params params, long wts) {
+        Scratch scratch = SCRATCH.get();
+        scratch.size = 0;
+        boolean wtsWritten = false;
+        for (int i = 0; i < params.size; i++) {
+            String key = params.keys[i];
+            int cmp = key.compareTo(WTS);
+            if (cmp == 0) {
+                continue;
+            }
+            if (cmp > 0 && !wtsWritten) {
+                writeWts(scratch, wts);
+                wtsWritten = true;
+            }
+            if (scratch.size > 0) {
+                scratch.write('&');
+            }
+            // 键在放入时已编码
+            scratch.writeAscii(key);
+            scratch.write('=');
+            if (params.values[i] != null) {
+                scratch.writeEncoded(params.values[i]);
+            } else {
+                scratch.writeLong(params.numbers[i]);
+            }
+        }
+        if (!wtsWritten) {
+            writeWts(scratch, wts);
+        }
+        int queryLength = scratch.size;
+        MessageDigest md5 = scratch.md5;
+        md5.update(scratch.bytes, 0, queryLength);
+        md5.update(mixinKey);
+        byte[] digest = scratch.digest;
+        try {
+            md5.digest(digest, 0, digest.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        scratch.write(W_RID);
+        scratch.ensure(digest.length * 2);
+        for (byte b : digest) {
+            scratch.bytes[scratch.size++] = HEX_LOWER[(b >> 4) & 0xF];
+            scratch.bytes[scratch.size++] = HEX_LOWER[b & 0xF];
+        }
+        return new String(scratch.bytes, 0, scratch.size, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 写出时间戳参数
+     */
+    private static void writeWts(Scratch scratch, long wts) {
+        if (scratch.size > 0) {
+            scratch.write('&');
+        }
+        scratch.writeAscii(WTS);
+        scratch.write('=');
+        scratch.writeLong(wts);
+    }
+
+    /**
+     * 是否为URLEncoder不编码的字符
+     */
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * 按键有序的签名参数表
+     */
+    public static final class Params {
+
+        // 编码后的参数名，按字典序排列
+        private String[] keys = new String[8];
+
+        // 字符串参数值，为空时使用numbers中的数值
+        private String[] values = new String[8];
+
+        // 数值参数值
+        private long[] numbers = new long[8];
+
+        // 参数个数
+        private int size;
+
+        private Params() {
+        }
+
+        /**
+         * 放入字符串参数，同名参数会被覆盖
+         *
+         * @param key   参数名
+         * @param value 参数值
+         * @return 当前参数表
+         */
+        public Params put(String key, String value) {
+            int index = slot(key);
+            values[index] = value;
+            numbers[index] = 0;
+            return this;
+        }
+
+        /**
+         * 放入数值参数，同名参数会被覆盖
+         *
+         * @param key   参数名
+         * @param value 参数值
+         * @return 当前参数表
+         */
+        public Params put(String key, long value) {
+            int index = slot(key);
+            values[index] = null;
+            numbers[index] = value;
+            return this;
+        }
+
+        /**
+         * 清空参数，保留已分配的空间
+         *
+         * @return 当前参数表
+         */
+        public Params clear() {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+            return this;
+        }
+
+        /**
+         * 查找或按序插入参数名，返回其位置
+         */
+        private int slot(String key) {
+            String encoded = encodeKey(key);
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = keys[mid].compareTo(encoded);
+                if (cmp == 0) {
+                    return mid;
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            System.arraycopy(keys, low, keys, low + 1, size - low);
+            System.arraycopy(values, low, values, low + 1, size - low);
+            System.arraycopy(numbers, low, numbers, low + 1, size - low);
+            keys[low] = encoded;
+            size++;
+            return low;
+        }
+
+        /**
+         * 参数名通常无需编码，仅在包含特殊字符时编码
+         */
+        private static String encodeKey(String key) {
+            for (int i = 0; i < key.length(); i++) {
+                if (!isUnreserved(key.charAt(i))) {
+                    return HttpUtil.encodeParam(key);
+                }
+            }
+            return key;
+        }
+    }
+
+    /**
+     * 线程本地的编码缓冲区
+     */
+    private static final class Scratch {
+
+        // 查询字符串字节
+        byte[] bytes = new byte[256];
+
+        // 已写入的长度
+        int size;
+
+        // MD5实例
+        final MessageDigest md5;
+
+        // MD5结果
+        final byte[] digest = new byte[16];
+
+        Scratch() {
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("MD5 algorithm not found", e);
+            }
+        }
+
+        void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] src) {
+            ensure(src.length);
+            System.arraycopy(src, 0, bytes, size, src.length);
+            size += src.length;
+        }
+
+        void writeAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[size++] = (byte) s.charAt(i);
+            }
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // 反转数字
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte t = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = t;
+            }
+        }
+
+        /**
+         * 按URLEncoder规则写出UTF-8编码的值
+         */
+        void writeEncoded(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (isUnreserved(c)) {
+                    write(c);
+                } else if (c == ' ') {
+                    write('+');
+                } else if (c < 0x80) {
+                    writePercent(c);
+                } else if (c < 0x800) {
+                    writePercent(0xC0 | (c >> 6));
+                    writePercent(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    writePercent(0xF0 | (cp >> 18));
+                    writePercent(0x80 | ((cp >> 12) & 0x3F));
+                    writePercent(0x80 | ((cp >> 6) & 0x3F));
+                    writePercent(0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符按URLEncoder的处理替换为'?'
+                    writePercent('?');
+                } else {
+                    writePercent(0xE0 | (c >> 12));
+                    writePercent(0x80 | ((c >> 6) & 0x3F));
+                    writePercent(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void writePercent(int b) {
+            ensure(3);
+            bytes[size++] = '%';
+            bytes[size++] = HEX_UPPER[(b >> 4) & 0xF];
+            bytes[size++] = HEX_UPPER[b & 0xF];
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.rain.danmu.cluster;
+
+import com.rain.danmu.client.AuthProvider;
+import com.rain.danmu.client.SimpleDanmuClient;
+import com.rain.danmu.codec.PacketEncoder;
+import com.rain.danmu.enums.Operation;
+import com.rain.danmu.model.Auth;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 房间分片交接测试
+ * 两个节点通过{@link InMemoryMembership}组成集群，连接到本地的弹幕服务器：
+ * 新节点加入和节点离开时房间在两个节点之间迁移，服务器一侧每个房间始终至少有一条已认证的连接，结束后没有房间被两个节点同时持有
+ */
+class ShardedDanmuClientTest {
+
+    // 重新分配的周期（毫秒）
+    private static final long PERIOD_MILLIS = 100;
+
+    // 所有节点共同负责的房间
+    private static final Set<Long> ROOMS = LongStream.rangeClosed(1, 12).boxed().collect(Collectors.toSet());
+
+    // 只回复认证包的弹幕服务器
+    private AuthServer server;
+
+    // 认证信息提供者
+    private AuthProvider authProvider;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        server = new AuthServer();
+        server.start();
+        assertTrue(server.started.await(10, TimeUnit.SECONDS));
+        List<String> hosts = List.of("ws://127.0.0.1:" + server.getPort() + "/sub");
+        authProvider = new AuthProvider(roomId -> new Auth(roomId, 0, "test", "test", Auth.PROTOVER_ZLIB, hosts),
+                2, 60_000, 0.8);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        authProvider.close();
+        server.stop(1000);
+    }
+
+    @Test
+    void roomsAreHandedOverWithoutGaps() throws InterruptedException {
+        InMemoryMembership membership = new InMemoryMembership(2_000);
+        ShardedDanmuClient a = node("a", membership);
+        ShardedDanmuClient b = node("b", membership);
+        try {
+            a.start();
+            awaitTrue(() -> a.ownedRooms().equals(ROOMS) && server.coveredRooms().equals(ROOMS));
+
+            // 从此刻起每个房间在服务器一侧都不应出现没有连接的时刻
+            GapMonitor monitor = new GapMonitor();
+            monitor.start();
+
+            b.start();
+            awaitTrue(() -> !b.ownedRooms().isEmpty() && disjointCover(a, b) && server.connections.size() == ROOMS.size());
+            Set<Long> moved = new HashSet<>(b.ownedRooms());
+            assertFalse(moved.isEmpty());
+            assertTrue(moved.size() < ROOMS.size());
+
+            // 节点离开时，其房间由剩下的节点接管后才断开
+            b.close();
+            awaitTrue(() -> a.ownedRooms().equals(ROOMS) && server.connections.size() == ROOMS.size());
+            assertTrue(b.ownedRooms().isEmpty());
+
+            monitor.stop();
+            assertEquals(Set.of(), monitor.gaps, "交接期间出现没有连接的房间");
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    private ShardedDanmuClient node(String id, Membership membership) {
+        ShardedDanmuClient node = new ShardedDanmuClient(id, membership,
+                roomId -> SimpleDanmuClient.with(danmu -> {
+                }), authProvider, PERIOD_MILLIS, 1.25);
+        return node.addRooms(ROOMS);
+    }
+
+    /**
+     * 两个节点持有的房间互不重叠且覆盖全部房间
+     */
+    private static boolean disjointCover(ShardedDanmuClient a, ShardedDanmuClient b) {
+        Set<Long> union = new HashSet<>(a.ownedRooms());
+        for (long roomId : b.ownedRooms()) {
+            if (!union.add(roomId)) {
+                return false;
+            }
+        }
+        return union.equals(ROOMS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    /**
+     * 周期检查服务器一侧是否有房间没有已认证的连接
+     */
+    private final class GapMonitor implements Runnable {
+
+        // 出现过没有连接的房间
+        final Set<Long> gaps = ConcurrentHashMap.newKeySet();
+
+        // 检查线程
+        private final Thread thread = new Thread(this, "gap-monitor");
+
+        // 是否继续检查
+        private volatile boolean running = true;
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Set<Long> covered = server.coveredRooms();
+                for (long roomId : ROOMS) {
+                    if (!covered.contains(roomId)) {
+                        gaps.add(roomId);
+                    }
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 收到认证包时回复认证成功，记录每条连接认证的房间
+     */
+    private static final class AuthServer extends WebSocketServer {
+
+        // 认证成功的回复
+        private static final ByteBuffer AUTH_REPLY = PacketEncoder.constant(Operation.AUTH_REPLY,
+                "{\"code\":0}".getBytes(StandardCharsets.UTF_8));
+
+        // 已认证的连接及其房间号
+        final Map<WebSocket, Long> connections = new ConcurrentHashMap<>();
+
+        // 每个房间已认证的连接数，新连接先计入、旧连接后减去，单个房间的计数不会因遍历时机误判为0
+        private final Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        // 服务器已启动
+        final CountDownLatch started = new CountDownLatch(1);
+
+        AuthServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+        }
+
+        /**
+         * @return 至少有一条已认证连接的房间
+         */
+        Set<Long> coveredRooms() {
+            Set<Long> covered = new HashSet<>();
+            counts.forEach((roomId, count) -> {
+                if (count.get() > 0) {
+                    covered.add(roomId);
+                }
+            });
+            return covered;
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, ByteBuffer message) {
+            int headerLength = message.getShort(message.position() + 4);
+            int operation = message.getInt(message.position() + 8);
+            if (operation != Operation.AUTH.code) {
+                return;
+            }
+            byte[] body = new byte[message.remaining() - headerLength];
+            message.get(message.position() + headerLength, body);
+            // 先记录再回复：客户端收到回复后才会上报已覆盖，旧节点随后才会断开
+            long roomId = new JSONObject(new String(body, StandardCharsets.UTF_8)).getLong("roomid");
+            counts.computeIfAbsent(roomId, key -> new AtomicInteger()).incrementAndGet();
+            connections.put(conn, roomId);
+            conn.send(AUTH_REPLY.duplicate());
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            Long roomId = connections.remove(conn);
+            if (roomId != null) {
+                counts.get(roomId).decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.rain.danmu.codec;
+
+import com.rain.danmu.model.Danmu;
+import com.rain.danmu.model.Gift;
+import com.rain.danmu.model.GuardBuy;
+import com.rain.danmu.model.InteractWord;
+import com.rain.danmu.model.LikeClick;
+import com.rain.danmu.model.LikeUpdate;
+import com.rain.danmu.model.LiveEvent;
+import com.rain.danmu.model.OnlineRankCount;
+import com.rain.danmu.model.SuperChat;
+import com.rain.danmu.model.User;
+import com.rain.danmu.model.WatchedChange;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 事件编解码器测试
+ * 1. 各类事件编码后解码得到相同的字段
+ * 2. 版本兼容：旧解码器跳过字段区末尾追加的字段，新解码器对缺少的尾部字段取默认值，未知类型整体跳过
+ */
+class EventCodecTest {
+
+    // 独立的用户缓存，不受其他测试影响
+    private final EventCodec codec = new EventCodec(256, new UserCache(1024));
+
+    @Test
+    void roundTripsEveryEventType() {
+        List<LiveEvent> events = List.of(danmu(1), gift(), superChat(), guardBuy(), interactWord(), likeClick(),
+                likeUpdate(), onlineRankCount(), watchedChange());
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (LiveEvent event : events) {
+            codec.encode(event, buffer);
+        }
+        buffer.flip();
+        for (LiveEvent event : events) {
+            assertFieldsEqual(event, codec.decode(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void roundTripsMissingAndNegativeUsers() {
+        Danmu anonymous = danmu(2);
+        anonymous.user = null;
+        anonymous.body = null;
+        Danmu negative = danmu(3);
+        negative.user = new User(-42, "负数用户");
+        Danmu longBody = danmu(4);
+        // 字段区超过127字节，长度占2字节
+        longBody.body = "很长的弹幕".repeat(40);
+
+        for (Danmu danmu : List.of(anonymous, negative, longBody)) {
+            assertFieldsEqual(danmu, decode(encode(danmu)));
+        }
+    }
+
+    @Test
+    void decodesIntoReusedEventOfSameType() {
+        Danmu reuse = new Danmu();
+        byte[] record = encode(danmu(5));
+        Danmu decoded = codec.decode(ByteBuffer.wrap(record), 0, record.length, reuse);
+        assertSame(reuse, decoded);
+        assertFieldsEqual(danmu(5), decoded);
+    }
+
+    @Test
+    void olderReaderSkipsAppendedFields() {
+        byte[] record = encode(danmu(6));
+        // 模拟新版本在字段区末尾追加了一个整数和一个字符串
+        byte[] extra = {(byte) 0xAC, 0x02, 4, 'n', 'e', 'w'};
+        byte[] extended = withBody(record, concat(body(record), extra));
+        byte[] next = encode(gift());
+
+        ByteBuffer buffer = ByteBuffer.wrap(concat(extended, next));
+        assertFieldsEqual(danmu(6), codec.decode(buffer));
+        // 追加的字段被整体跳过，后一条记录从正确的位置开始
+        assertEquals(extended.length, buffer.position());
+        assertFieldsEqual(gift(), codec.decode(buffer));
+    }
+
+    @Test
+    void newerReaderDefaultsMissingTrailingFields() {
+        Danmu danmu = danmu(7);
+        danmu.timestamp = 5;
+        byte[] record = encode(danmu);
+        // 模拟旧版本的记录没有最后的时间戳字段（1字节）
+        byte[] body = body(record);
+        Danmu decoded = decode(withBody(record, Arrays.copyOf(body, body.length - 1)));
+
+        assertEquals(0, decoded.timestamp);
+        assertEquals(danmu.body, decoded.body);
+        assertEquals(danmu.user.uid, decoded.user.uid);
+    }
+
+    @Test
+    void unknownTypeIsSkippedWhole() {
+        byte[] unknown = {15, 1, 3, 1, 2, 3};
+        byte[] next = encode(danmu(8));
+        ByteBuffer buffer = ByteBuffer.wrap(concat(unknown, next));
+
+        assertNull(codec.decode(buffer));
+        assertEquals(unknown.length, buffer.position());
+        assertFieldsEqual(danmu(8), codec.decode(buffer));
+    }
+
+    @Test
+    void overflowLeavesPositionUnchanged() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.position(2);
+        assertThrows(BufferOverflowException.class, () -> codec.encode(danmu(9), buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    private byte[] encode(LiveEvent event) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int length = codec.encode(event, buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    private <T extends LiveEvent> T decode(byte[] record) {
+        return codec.decode(ByteBuffer.wrap(record), 0, record.length, null);
+    }
+
+    /**
+     * 取出记录的字段区，测试记录的字段区长度都只占1字节
+     */
+    private static byte[] body(byte[] record) {
+        assertEquals(record.length - 3, record[2]);
+        return Arrays.copyOfRange(record, 3, record.length);
+    }
+
+    /**
+     * 以相同的类型码和版本号、新的字段区组成记录
+     */
+    private static byte[] withBody(byte[] record, byte[] body) {
+        assertEquals(0, body.length & ~0x7F);
+        return concat(new byte[]{record[0], record[1], (byte) body.length}, body);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * 逐个比较事件的公开字段，用户按ID和昵称比较
+     */
+    private static void assertFieldsEqual(LiveEvent expected, LiveEvent actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (Field field : expected.getClass().getFields()) {
+            try {
+                Object value = field.get(expected);
+                Object decoded = field.get(actual);
+                if (value instanceof User user) {
+                    User other = (User) decoded;
+                    assertEquals(user.uid, other.uid, field.getName());
+                    assertEquals(user.name, other.name, field.getName());
+                } else {
+                    assertEquals(value, decoded, field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static Danmu danmu(int i) {
+        Danmu danmu = new Danmu();
+        danmu.roomId = 21452505;
+        danmu.user = new User(123456789L + i, "观众" + i);
+        danmu.body = "第" + i + "条弹幕";
+        danmu.timestamp = 1700000000000L + i;
+        return danmu;
+    }
+
+    private static Gift gift() {
+        Gift gift = new Gift();
+        gift.roomId = 21452505;
+        gift.user = new User(10001, "送礼的观众");
+        gift.giftId = 31036;
+        gift.giftName = "小花花";
+        gift.num = 5;
+        gift.price = 100;
+        gift.coinType = "gold";
+        gift.action = "投喂";
+        gift.timestamp = 1700000000L;
+        return gift;
+    }
+
+    private static SuperChat superChat() {
+        SuperChat superChat = new SuperChat();
+        superChat.roomId = 1;
+        superChat.id = 8812345;
+        superChat.user = new User(10002, "留言的观众");
+        superChat.message = "主播辛苦了";
+        superChat.price = 30;
+        superChat.startTime = 1700000000L;
+        superChat.duration = 60;
+        return superChat;
+    }
+
+    private static GuardBuy guardBuy() {
+        GuardBuy guardBuy = new GuardBuy();
+        guardBuy.roomId = 1;
+        guardBuy.user = new User(10003, "舰长");
+        guardBuy.guardLevel = 3;
+        guardBuy.num = 1;
+        guardBuy.price = 198000;
+        guardBuy.giftName = "舰长";
+        guardBuy.startTime = 1700000000L;
+        return guardBuy;
+    }
+
+    private static InteractWord interactWord() {
+        InteractWord interactWord = new InteractWord();
+        interactWord.roomId = 1;
+        interactWord.user = new User(10004, "进场的观众");
+        interactWord.msgType = 1;
+        interactWord.timestamp = 1700000000L;
+        return interactWord;
+    }
+
+    private static LikeClick likeClick() {
+        LikeClick likeClick = new LikeClick();
+        likeClick.roomId = 1;
+        likeClick.user = new User(10005, "点赞的观众");
+        likeClick.likeText = "为主播点赞了";
+        return likeClick;
+    }
+
+    private static LikeUpdate likeUpdate() {
+        LikeUpdate likeUpdate = new LikeUpdate();
+        likeUpdate.roomId = 1;
+        likeUpdate.clickCount = 123456;
+        return likeUpdate;
+    }
+
+    private static OnlineRankCount onlineRankCount() {
+        OnlineRankCount onlineRankCount = new OnlineRankCount();
+        onlineRankCount.roomId = 1;
+        onlineRankCount.count = 321;
+        onlineRankCount.onlineCount = 4567;
+        return onlineRankCount;
+    }
+
+    private static WatchedChange watchedChange() {
+        WatchedChange watchedChange = new WatchedChange();
+        watchedChange.roomId = 1;
+        watchedChange.num = 98765;
+        watchedChange.text = "9.8万人看过";
+        return watchedChange;
+    }
+}
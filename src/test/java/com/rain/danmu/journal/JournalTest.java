@@ -0,0 +1,181 @@
+package com.rain.danmu.journal;
+
+import com.rain.danmu.enums.FsyncPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 追加写日志测试
+ * 1. 崩溃恢复：分段在记录中间被截断或尾部记录损坏时，重新打开后丢弃该记录并从其位置继续追加
+ * 2. 读取器跨分段读取时偏移量连续，旧分段被清理后从最早的分段继续
+ */
+class JournalTest {
+
+    // 最小的分段，每段约40条记录
+    private static final JournalConfig CONFIG = new JournalConfig(4096, FsyncPolicy.NONE, 1000, 0, 0);
+
+    @Test
+    void truncatedTailRecordIsDroppedOnReopen(@TempDir Path dir) throws IOException {
+        long torn;
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            journal.append(record(0));
+            journal.append(record(1));
+            torn = journal.append(record(2));
+        }
+        // 模拟崩溃：最后一条记录只写入了头部和3字节内容
+        try (FileChannel channel = FileChannel.open(onlySegment(dir), StandardOpenOption.WRITE)) {
+            channel.truncate(torn + Segment.HEADER + 3);
+        }
+
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            assertEquals(torn, journal.endOffset());
+            assertEquals(List.of(text(0), text(1)), new ArrayList<>(readAll(journal).values()));
+            // 截断后的分段放不下新记录，滚动到新分段，偏移量仍然连续
+            assertEquals(torn, journal.append(record(3)));
+        }
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            assertEquals(List.of(text(0), text(1), text(3)), new ArrayList<>(readAll(journal).values()));
+        }
+    }
+
+    @Test
+    void corruptedTailRecordIsDroppedOnReopen(@TempDir Path dir) throws IOException {
+        long corrupted;
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            journal.append(record(0));
+            corrupted = journal.append(record(1));
+        }
+        // 模拟崩溃：长度已写入，内容只写入了一部分
+        try (FileChannel channel = FileChannel.open(onlySegment(dir), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'?'}), corrupted + Segment.HEADER + 1);
+        }
+
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            assertEquals(corrupted, journal.endOffset());
+            assertEquals(List.of(text(0)), new ArrayList<>(readAll(journal).values()));
+            assertEquals(corrupted, journal.append(record(2)));
+            assertEquals(List.of(text(0), text(2)), new ArrayList<>(readAll(journal).values()));
+        }
+    }
+
+    @Test
+    void readerIsContinuousAcrossRolls(@TempDir Path dir) throws IOException {
+        try (Journal journal = Journal.open(dir, CONFIG)) {
+            JournalReader reader = journal.reader(0);
+            Map<Long, String> appended = new LinkedHashMap<>();
+            Map<Long, String> read = new LinkedHashMap<>();
+            for (int i = 0; i < 500; i++) {
+                appended.put(journal.append(record(i)), text(i));
+                // 边写边读，读取器经常停在分段末尾等待新分段
+                if (i % 7 == 0) {
+                    reader.poll((offset, buffer, position, length) -> read.put(offset, string(buffer, position, length)), 3);
+                }
+            }
+            while (reader.poll((offset, buffer, position, length) -> read.put(offset, string(buffer, position, length)), 100) > 0) {
+            }
+
+            assertTrue(segments(dir).size() > 5);
+            assertEquals(appended, read);
+            assertEquals(journal.endOffset(), reader.position());
+            assertContiguous(read, journal.endOffset());
+        }
+    }
+
+    @Test
+    void readerSkipsToEarliestSegmentAfterRetention(@TempDir Path dir) throws IOException {
+        JournalConfig config = new JournalConfig(4096, FsyncPolicy.NONE, 1000, 3, 0);
+        try (Journal journal = Journal.open(dir, config)) {
+            JournalReader lagging = journal.reader(0);
+            Map<Long, String> appended = new LinkedHashMap<>();
+            for (int i = 0; i < 500; i++) {
+                appended.put(journal.append(record(i)), text(i));
+            }
+            assertEquals(3, segments(dir).size());
+            long start = journal.startOffset();
+            assertTrue(start > 0);
+
+            // 落后的读取器读完手上已被清理的分段后，跳到最早的分段继续
+            Map<Long, String> read = new LinkedHashMap<>();
+            while (lagging.poll((offset, buffer, position, length) -> read.put(offset, string(buffer, position, length)), 100) > 0) {
+            }
+            read.forEach((offset, text) -> assertEquals(appended.get(offset), text));
+            assertEquals(journal.endOffset(), lagging.position());
+            Map<Long, String> retained = new LinkedHashMap<>(read);
+            retained.keySet().removeIf(offset -> offset < start);
+            assertEquals(start, retained.keySet().iterator().next());
+            assertContiguous(retained, journal.endOffset());
+
+            // 新的读取器从早于最早分段的偏移量开始时，从最早的记录开始
+            JournalReader fresh = journal.reader(0);
+            assertEquals(start, fresh.position());
+            Map<Long, String> all = new LinkedHashMap<>();
+            while (fresh.poll((offset, buffer, position, length) -> all.put(offset, string(buffer, position, length)), 100) > 0) {
+            }
+            assertEquals(retained, all);
+        }
+    }
+
+    /**
+     * 检查偏移量从第一条记录开始首尾相接，直到end
+     */
+    private static void assertContiguous(Map<Long, String> records, long end) {
+        long expected = records.keySet().iterator().next();
+        for (Map.Entry<Long, String> entry : records.entrySet()) {
+            // 新分段的起始偏移量为上一分段的写入位置，分段剩余空间不占用偏移量
+            assertEquals(expected, entry.getKey());
+            expected = entry.getKey() + Segment.HEADER + entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertEquals(end, expected);
+    }
+
+    private static Map<Long, String> readAll(Journal journal) {
+        Map<Long, String> records = new LinkedHashMap<>();
+        journal.reader(0).poll((offset, buffer, position, length) -> records.put(offset, string(buffer, position, length)), Integer.MAX_VALUE);
+        return records;
+    }
+
+    private static Path onlySegment(Path dir) throws IOException {
+        List<Path> segments = segments(dir);
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(path -> path.toString().endsWith(Segment.SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 长度不一的记录，使分段边界落在不同位置
+     */
+    private static String text(int i) {
+        return "record-" + i + "-" + "弹幕".repeat(i % 13);
+    }
+
+    private static byte[] record(int i) {
+        return text(i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package com.rain.danmu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 虚拟线程支持测试
+ * JDK 21及以上走反射创建虚拟线程的路径，更早的JDK走平台守护线程的退回路径，两条路径按当前JDK分别断言
+ */
+class VirtualThreadsTest {
+
+    // 当前JDK是否应支持虚拟线程
+    private static final boolean EXPECTED = Runtime.version().feature() >= 21;
+
+    @Test
+    void supportMatchesRuntimeVersion() {
+        assertEquals(EXPECTED, VirtualThreads.isSupported());
+    }
+
+    @Test
+    void factoryCreatesNamedThreadsOfExpectedKind() throws Exception {
+        ThreadFactory factory = VirtualThreads.factory("test-vt-");
+        Thread first = factory.newThread(() -> {
+        });
+        Thread second = factory.newThread(() -> {
+        });
+
+        assertEquals("test-vt-1", first.getName());
+        assertEquals("test-vt-2", second.getName());
+        assertEquals(EXPECTED, isVirtual(first));
+        // 虚拟线程总是守护线程，退回的平台线程也必须是守护线程
+        assertTrue(first.isDaemon());
+    }
+
+    @Test
+    void executorRunsTasksOnExpectedThreads() throws Exception {
+        ExecutorService executor = VirtualThreads.newExecutor("test-exec-");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+            assertTrue(thread.getName().startsWith("test-exec-"));
+            assertEquals(EXPECTED, isVirtual(thread));
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sharedExecutorIsSingleton() {
+        ExecutorService shared = VirtualThreads.executor();
+        assertSame(shared, VirtualThreads.executor());
+        assertFalse(shared.isShutdown());
+    }
+
+    /**
+     * Thread.isVirtual()，JDK 21之前不存在该方法，均为平台线程
+     */
+    private static boolean isVirtual(Thread thread) throws Exception {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}